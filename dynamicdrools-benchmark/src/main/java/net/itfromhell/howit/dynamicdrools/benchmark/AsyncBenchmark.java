@@ -0,0 +1,166 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.runtime.AsyncEvaluator;
+import net.itfromhell.howit.dynamicdrools.runtime.EvaluationResult;
+import net.itfromhell.howit.dynamicdrools.runtime.SessionPool;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of many concurrent single-fact evaluations.<br>
+ * Each invocation submits <i>concurrency</i> evaluations at once and waits for all of them, as a burst of requests
+ * would. {@link AsyncEvaluator} with virtual threads and with its bounded pool are compared with a platform thread
+ * blocked on each evaluation. Virtual threads are only used on Java 21 or later, the bounded pool is measured instead
+ * on older runtimes.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AsyncBenchmark
+{
+	/**
+	 * Evaluations submitted at once, the queue of the bounded pool holds all of them so none is rejected.
+	 */
+	@Param({"256"})
+	public int concurrency;
+	
+	@Param({"100"})
+	public int ruleCount;
+	
+	private List<Product> products;
+	private AsyncEvaluator virtual;
+	private AsyncEvaluator bounded;
+	private ExecutorService platform;
+	private SessionPool sessions;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 1L);
+		products = ProductGenerator.generate(concurrency, 2L);
+		KieBase base = new DroolsUtility().loadKieBase(rules, Benchmarks.TEMPLATE);
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		
+		virtual = new AsyncEvaluator(base, parallelism, concurrency, true, null);
+		bounded = new AsyncEvaluator(base, parallelism, concurrency, false, null);
+		platform = Executors.newFixedThreadPool(concurrency);
+		sessions = new SessionPool(base, concurrency);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		virtual.shutdown();
+		bounded.shutdown();
+		platform.shutdown();
+	}
+	
+	private int burst(AsyncEvaluator evaluator)
+	{
+		List<CompletableFuture<EvaluationResult<Product>>> evaluations = new ArrayList<CompletableFuture<EvaluationResult<Product>>>(products.size());
+		for (Product product : products)
+		{
+			evaluations.add(evaluator.evaluate(product));
+		}
+		
+		int fired = 0;
+		for (CompletableFuture<EvaluationResult<Product>> evaluation : evaluations)
+		{
+			fired += evaluation.join().getFired();
+		}
+		
+		return fired;
+	}
+	
+	@Benchmark
+	public int virtualThreads()
+	{
+		return burst(virtual);
+	}
+	
+	@Benchmark
+	public int boundedPool()
+	{
+		return burst(bounded);
+	}
+	
+	@Benchmark
+	public int blockingPlatformThreads() throws Exception
+	{
+		List<Future<Integer>> evaluations = new ArrayList<Future<Integer>>(products.size());
+		for (final Product product : products)
+		{
+			evaluations.add(platform.submit(new Callable<Integer>()
+			{
+				@Override
+				public Integer call() throws Exception
+				{
+					StatelessKieSession session = sessions.acquire();
+					try
+					{
+						return DroolsUtility.execute(session, Collections.singletonList(product));
+					}
+					finally
+					{
+						sessions.release(session);
+					}
+				}
+			}));
+		}
+		
+		int fired = 0;
+		for (Future<Integer> evaluation : evaluations)
+		{
+			fired += evaluation.get();
+		}
+		
+		return fired;
+	}
+}
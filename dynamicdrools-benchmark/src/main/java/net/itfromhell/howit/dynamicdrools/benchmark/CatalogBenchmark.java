@@ -0,0 +1,123 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dummy.ProductCatalog;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Facts evaluated per second by the compiled rule engine over products on the heap and over the views of a product
+ * catalog, both receiving the discounts.<br>
+ * The catalog is evaluated through its {@link ProductCatalog#cursor() cursor}, a single view moved over the products.
+ * <br>
+ * Products and catalog are created again for each iteration, so the discounts of an iteration do not change the
+ * matches of the next. That setup is also counted by <i>-prof gc</i>, which hides the allocation of the evaluation.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class CatalogBenchmark
+{
+	/**
+	 * Number of products.
+	 */
+	private static final int FACTS = 1000000;
+	
+	@Param({"100"})
+	public int ruleCount;
+	
+	@Param({"MIXED"})
+	public RuleGenerator.Mix mix;
+	
+	private CompiledRuleEngine engine;
+	private List<Product> products;
+	private Path file;
+	private ProductCatalog catalog;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		engine = new CompiledRuleEngine(RuleGenerator.generate(ruleCount, mix, 1L), Benchmarks.TEMPLATE, "discount");
+		file = Files.createTempFile("catalog", ".bin");
+	}
+	
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws IOException
+	{
+		products = new ArrayList<Product>(FACTS);
+		for (Product product : ProductGenerator.generate(FACTS, 2L))
+		{
+			products.add(new Product(product.getName(), product.getPrice(), product.getDueDate()));
+		}
+		ProductCatalog.write(file, products);
+		catalog = ProductCatalog.open(file, true);
+	}
+	
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() throws IOException
+	{
+		catalog.close();
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(file);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FACTS)
+	public int heap()
+	{
+		return engine.evaluate(products);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FACTS)
+	public int catalog()
+	{
+		return engine.evaluate(catalog.cursor());
+	}
+}
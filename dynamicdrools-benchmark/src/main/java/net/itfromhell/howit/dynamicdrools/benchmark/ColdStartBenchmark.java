@@ -0,0 +1,99 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.cache.DiskKieBaseCache;
+import net.itfromhell.howit.dynamicdrools.cache.KieBaseCache;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to the first evaluation of a rule set unknown to the process.<br>
+ * Compiling the rules is compared with loading the rule base persisted by a previous process.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ColdStartBenchmark
+{
+	@Param({"100", "1000"})
+	public int ruleCount;
+	
+	private List<Rule> rules;
+	private Product product;
+	private DiskKieBaseCache disk;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		rules = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 1L);
+		product = ProductGenerator.generate(1, 2L).get(0);
+		disk = new DiskKieBaseCache(Files.createTempDirectory("dynamicdrools-benchmark"));
+		new DroolsUtility(new KieBaseCache(), disk).loadKieBase(rules, Benchmarks.TEMPLATE);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		File[] files = disk.getDirectory().toFile().listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		disk.getDirectory().toFile().delete();
+	}
+	
+	@Benchmark
+	public int coldCompile() throws Exception
+	{
+		return DroolsUtility.execute(new DroolsUtility().loadSession(rules, Benchmarks.TEMPLATE), Collections.singletonList(product));
+	}
+	
+	@Benchmark
+	public int diskHit() throws Exception
+	{
+		return DroolsUtility.execute(new DroolsUtility(new KieBaseCache(), disk).loadSession(rules, Benchmarks.TEMPLATE), Collections.singletonList(product));
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.columnar.ColumnarBatch;
+import net.itfromhell.howit.dynamicdrools.columnar.ColumnarRuleSet;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Facts matched per second by the columnar kernels, against testing the compiled predicates one fact at a time.<br>
+ * Every operation is a fact, so the scores are facts per second on the threads used, one by default. Building the
+ * batch from the products is measured apart, as a columnar source fills the columns without it.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ColumnarBenchmark
+{
+	/**
+	 * Number of facts of the batch.
+	 */
+	private static final int FACTS = 1000000;
+	
+	@Param({"10", "100"})
+	public int ruleCount;
+	
+	@Param({"NUMBER", "DATE", "TEXT", "MIXED"})
+	public RuleGenerator.Mix mix;
+	
+	private List<Product> products;
+	private ColumnarRuleSet columnar;
+	private ColumnarBatch batch;
+	private CompiledRule[] compiled;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, mix, 1L);
+		products = ProductGenerator.generate(FACTS, 2L);
+		
+		columnar = new ColumnarRuleSet(Product.class, rules);
+		batch = columnar.newBatch(products);
+		compiled = new CompiledRule[rules.size()];
+		for (int i = 0; i < compiled.length; i++)
+		{
+			compiled[i] = CompiledRule.compile(rules.get(i), "discount");
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FACTS)
+	public int columnar()
+	{
+		return columnar.evaluate(batch).getTotal();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FACTS)
+	public int perFact()
+	{
+		int matched = 0;
+		for (Product product : products)
+		{
+			for (CompiledRule rule : compiled)
+			{
+				if (rule.matches(product))
+				{
+					matched++;
+				}
+			}
+		}
+		
+		return matched;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FACTS)
+	public ColumnarBatch build()
+	{
+		return columnar.newBatch(products);
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import net.itfromhell.howit.dynamicdrools.optimizer.ConditionStatistics;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of rules evaluated with their conditions in the order written against the order chosen by
+ * {@link ConditionStatistics}.<br>
+ * Rules are written with a keyword of the name first and a narrow price range last, the statistics are refreshed
+ * once over the products evaluated before the rules are compiled again.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConditionOrderBenchmark
+{
+	@Param({"100", "1000"})
+	public int ruleCount;
+	
+	@Param({"1000"})
+	public int factCount;
+	
+	private List<Product> products;
+	private StatelessKieSession written;
+	private StatelessKieSession ordered;
+	private CompiledRuleEngine compiledWritten;
+	private CompiledRuleEngine compiledOrdered;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generateExpensiveFirst(ruleCount, 1L);
+		products = ProductGenerator.generate(factCount, 2L);
+		
+		DroolsUtility utility = new DroolsUtility();
+		written = utility.loadKieBase(rules, Benchmarks.TEMPLATE).newStatelessKieSession();
+		compiledWritten = new CompiledRuleEngine(rules, Benchmarks.TEMPLATE, "discount", utility);
+		
+		ConditionStatistics statistics = new ConditionStatistics();
+		statistics.register(rules);
+		statistics.offer(products);
+		statistics.refresh();
+		
+		DroolsUtility orderedUtility = new DroolsUtility();
+		orderedUtility.setStatistics(statistics);
+		ordered = orderedUtility.loadKieBase(rules, Benchmarks.TEMPLATE).newStatelessKieSession();
+		compiledOrdered = new CompiledRuleEngine(rules, Benchmarks.TEMPLATE, "discount", orderedUtility);
+	}
+	
+	@Benchmark
+	public int droolsWritten()
+	{
+		return DroolsUtility.execute(written, products);
+	}
+	
+	@Benchmark
+	public int droolsOrdered()
+	{
+		return DroolsUtility.execute(ordered, products);
+	}
+	
+	@Benchmark
+	public int compiledWritten()
+	{
+		return compiledWritten.evaluate(products);
+	}
+	
+	@Benchmark
+	public int compiledOrdered()
+	{
+		return compiledOrdered.evaluate(products);
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.drools.template.ObjectDataCompiler;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.StatelessKieSession;
+import org.kie.internal.utils.KieHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of date-heavy rule sets, comparing the epoch constants now rendered for date conditions with the former
+ * rendering, which parsed a formatted date with a new <b>SimpleDateFormat</b> at every evaluation.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DateConditionBenchmark
+{
+	/**
+	 * Template of the former rendering, importing <b>SimpleDateFormat</b>.
+	 */
+	private static final String LEGACY_TEMPLATE = "benchmark/LegacyProduct.drl";
+	
+	@Param({"100"})
+	public int ruleCount;
+	
+	@Param({"1000"})
+	public int factCount;
+	
+	private List<Product> products;
+	private StatelessKieSession epoch;
+	private StatelessKieSession legacy;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.DATE, 1L);
+		products = ProductGenerator.generate(factCount, 2L);
+		
+		epoch = new DroolsUtility().loadSession(rules, Benchmarks.TEMPLATE);
+		
+		List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(rules.size());
+		for (Rule rule : rules)
+		{
+			Map<String, Object> parameters = rule.asMap();
+			parameters.put(Rule.Attribute.CONDITIONAL.toString(), legacyConditionAsDRL(rule));
+			maps.add(parameters);
+		}
+		String drl = (new ObjectDataCompiler()).compile(maps, new ByteArrayInputStream(DroolsUtility.readTemplate(LEGACY_TEMPLATE)));
+		legacy = new KieHelper().addContent(drl, ResourceType.DRL).build().newStatelessKieSession();
+	}
+	
+	/**
+	 * Renders the date conditions of a rule as they were before epoch constants.
+	 */
+	private static String legacyConditionAsDRL(Rule rule)
+	{
+		StringBuilder drl = new StringBuilder();
+		for (Condition condition : rule.getConditions())
+		{
+			if (drl.length() > 0)
+			{
+				drl.append(" && ");
+			}
+			drl.append("(").append(condition.getProperty()).append(" ").append(condition.getOperator().getOperation());
+			drl.append(" (new SimpleDateFormat(\"dd/MM/yyyy HH:mm:ss\")).parse(\"").append((new SimpleDateFormat("dd/MM/yyyy HH:mm:ss")).format((Date)condition.getValue())).append("\"))");
+		}
+		
+		return drl.toString();
+	}
+	
+	@Benchmark
+	public int epochConstants()
+	{
+		return DroolsUtility.execute(epoch, products);
+	}
+	
+	@Benchmark
+	public int simpleDateFormat()
+	{
+		return DroolsUtility.execute(legacy, products);
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.EvaluationMode;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of firing every matched rule against firing only the first or the best one.<br>
+ * Rules are broad overlapping policies, so each product matches many of them. Drools still matches all rules and
+ * cancels the activations left once the first one fires, paying for each decision inserted in every rule guarded by
+ * it, while the compiled engine stops testing at the first match.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EvaluationModeBenchmark
+{
+	/**
+	 * Template firing only the first rule matched by each fact.
+	 */
+	private static final String EXCLUSIVE_TEMPLATE = "drools/templates/ProductExclusive.drl";
+	
+	@Param({"100", "1000"})
+	public int ruleCount;
+	
+	@Param({"1000"})
+	public int factCount;
+	
+	private List<Product> products;
+	private StatelessKieSession all;
+	private StatelessKieSession first;
+	private StatelessKieSession best;
+	private CompiledRuleEngine compiledAll;
+	private CompiledRuleEngine compiledFirst;
+	private CompiledRuleEngine compiledBest;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generateOverlapping(ruleCount, 1L);
+		products = ProductGenerator.generate(factCount, 2L);
+		
+		DroolsUtility utility = new DroolsUtility();
+		all = utility.loadKieBase(rules, Benchmarks.TEMPLATE).newStatelessKieSession();
+		first = utility.loadKieBase(rules, EXCLUSIVE_TEMPLATE, EvaluationMode.FIRST).newStatelessKieSession();
+		best = utility.loadKieBase(rules, EXCLUSIVE_TEMPLATE, EvaluationMode.BEST).newStatelessKieSession();
+		compiledAll = new CompiledRuleEngine(rules, Benchmarks.TEMPLATE, "discount", utility);
+		compiledFirst = new CompiledRuleEngine(rules, EXCLUSIVE_TEMPLATE, "discount", utility, EvaluationMode.FIRST);
+		compiledBest = new CompiledRuleEngine(rules, EXCLUSIVE_TEMPLATE, "discount", utility, EvaluationMode.BEST);
+	}
+	
+	@Benchmark
+	public int droolsAll()
+	{
+		return DroolsUtility.execute(all, products);
+	}
+	
+	@Benchmark
+	public int droolsFirst()
+	{
+		return DroolsUtility.execute(first, products);
+	}
+	
+	@Benchmark
+	public int droolsBest()
+	{
+		return DroolsUtility.execute(best, products);
+	}
+	
+	@Benchmark
+	public int compiledAll()
+	{
+		return compiledAll.evaluate(products);
+	}
+	
+	@Benchmark
+	public int compiledFirst()
+	{
+		return compiledFirst.evaluate(products);
+	}
+	
+	@Benchmark
+	public int compiledBest()
+	{
+		return compiledBest.evaluate(products);
+	}
+}
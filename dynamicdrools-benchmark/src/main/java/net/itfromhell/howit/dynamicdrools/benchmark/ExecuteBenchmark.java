@@ -0,0 +1,118 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import net.itfromhell.howit.dynamicdrools.runtime.ParallelEvaluator;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of evaluating facts against the number of facts and the mix of operators.<br>
+ * Compares the original per-fact execution with the batched, parallel and compiled paths over the same rules.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExecuteBenchmark
+{
+	@Param({"100"})
+	public int ruleCount;
+	
+	@Param({"1000", "10000"})
+	public int factCount;
+	
+	@Param({"NUMBER", "DATE", "TEXT", "MIXED"})
+	public RuleGenerator.Mix mix;
+	
+	private List<Product> products;
+	private StatelessKieSession session;
+	private ParallelEvaluator parallel;
+	private CompiledRuleEngine compiled;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, mix, 1L);
+		products = ProductGenerator.generate(factCount, 2L);
+		
+		DroolsUtility utility = new DroolsUtility();
+		KieBase base = utility.loadKieBase(rules, Benchmarks.TEMPLATE);
+		session = base.newStatelessKieSession();
+		parallel = new ParallelEvaluator(base);
+		compiled = new CompiledRuleEngine(rules, Benchmarks.TEMPLATE, "discount", utility);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		parallel.shutdown();
+	}
+	
+	@Benchmark
+	public int perFact()
+	{
+		for (Product product : products)
+		{
+			session.execute(product);
+		}
+		
+		return products.size();
+	}
+	
+	@Benchmark
+	public int batched()
+	{
+		return DroolsUtility.execute(session, products);
+	}
+	
+	@Benchmark
+	public int parallel()
+	{
+		return parallel.evaluate(products);
+	}
+	
+	@Benchmark
+	public int compiled()
+	{
+		return compiled.evaluate(products);
+	}
+}
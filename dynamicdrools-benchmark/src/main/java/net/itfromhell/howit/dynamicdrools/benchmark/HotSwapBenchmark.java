@@ -0,0 +1,116 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.runtime.VersionedRuleBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of single-fact evaluations while new versions of the rule base are published.<br>
+ * Evaluator threads evaluate products over {@link VersionedRuleBase} while one more thread publishes new versions
+ * back to back, alternating between two rule sets. Comparing the percentiles of <i>evaluate</i> with <i>swapping</i>
+ * on and off shows the pause caused by the swap itself, which should be none. On a single core the compilation of the
+ * new versions competes with the evaluations for the processor, which shows as a higher latency without any pause.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class HotSwapBenchmark
+{
+	@Param({"false", "true"})
+	public boolean swapping;
+	
+	@Param({"100"})
+	public int ruleCount;
+	
+	@Param({"1000"})
+	public int productCount;
+	
+	private List<Product> products;
+	private List<Rule> original;
+	private List<Rule> changed;
+	private VersionedRuleBase rules;
+	private final AtomicInteger next = new AtomicInteger();
+	private int updates;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		original = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 1L);
+		changed = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 3L);
+		products = ProductGenerator.generate(productCount, 2L);
+		rules = new VersionedRuleBase(original, Benchmarks.TEMPLATE);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		rules.shutdown();
+	}
+	
+	@Benchmark
+	@Group("hotSwap")
+	@GroupThreads(3)
+	public int evaluate()
+	{
+		Product product = products.get((next.getAndIncrement() & Integer.MAX_VALUE) % products.size());
+		
+		return rules.evaluate(new Product(product.getName(), product.getPrice(), product.getDueDate()));
+	}
+	
+	@Benchmark
+	@Group("hotSwap")
+	@GroupThreads(1)
+	public long swap() throws Exception
+	{
+		if (!swapping)
+		{
+			TimeUnit.MILLISECONDS.sleep(10L);
+			
+			return 0L;
+		}
+		
+		updates++;
+		
+		return rules.update(((updates & 1) == 0) ? original : changed).get().getNumber();
+	}
+}
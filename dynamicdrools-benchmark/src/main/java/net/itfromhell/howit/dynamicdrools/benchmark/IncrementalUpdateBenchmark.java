@@ -0,0 +1,102 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.runtime.RuleBaseManager;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of changing a single rule of a large rule base.<br>
+ * The incremental update of {@link RuleBaseManager} is compared with rebuilding the whole rule base, which is what a
+ * change costs through {@link DroolsUtility}.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IncrementalUpdateBenchmark
+{
+	@Param({"100", "1000"})
+	public int ruleCount;
+	
+	private List<Rule> rules;
+	private RuleBaseManager manager;
+	private int version;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		rules = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 1L);
+		manager = new RuleBaseManager(Benchmarks.TEMPLATE);
+		for (Rule rule : rules)
+		{
+			manager.addRule(rule);
+		}
+	}
+	
+	/**
+	 * Changes the threshold of the first rule, so every invocation deals with a different rule set.
+	 */
+	private Rule nextVersion()
+	{
+		Rule rule = new Rule(rules.get(0).getName());
+		rule.setDataObject(rules.get(0).getDataObject());
+		rule.addCondition("price", Condition.Operator.GREATER_THAN, Double.valueOf(++version));
+		rule.setAction("5");
+		rules.set(0, rule);
+		
+		return rule;
+	}
+	
+	@Benchmark
+	public KieBase incremental() throws Exception
+	{
+		manager.updateRule(nextVersion());
+		
+		return manager.getKieBase();
+	}
+	
+	@Benchmark
+	public KieBase rebuild() throws Exception
+	{
+		nextVersion();
+		
+		return new DroolsUtility().loadKieBase(rules, Benchmarks.TEMPLATE);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per fact of matching large keyword lists against the product name.<br>
+ * The keyword automaton of the compiled engine is compared with testing each keyword as the DRL does, upper casing
+ * the name for every keyword.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordBenchmark
+{
+	@Param({"100", "1000", "10000"})
+	public int keywordCount;
+	
+	private List<Product> products;
+	private CompiledRuleEngine engine;
+	private String[] keywords;
+	private int next;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generateKeywords(keywordCount, 1L);
+		products = ProductGenerator.generate(1024, 2L);
+		engine = new CompiledRuleEngine(rules, Benchmarks.TEMPLATE, "discount");
+		
+		keywords = new String[rules.size()];
+		for (int i = 0; i < keywords.length; i++)
+		{
+			keywords[i] = rules.get(i).getCondition().getValue().toString().toUpperCase();
+		}
+	}
+	
+	private Product nextProduct()
+	{
+		next = ((next + 1) & 1023);
+		
+		return products.get(next);
+	}
+	
+	@Benchmark
+	public int automaton()
+	{
+		return engine.evaluate(nextProduct());
+	}
+	
+	@Benchmark
+	public int naive()
+	{
+		Product product = nextProduct();
+		int found = 0;
+		for (String keyword : keywords)
+		{
+			if (product.getName().toUpperCase().contains(keyword))
+			{
+				found++;
+			}
+		}
+		
+		return found;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of {@link RuleMetrics} over batched evaluation.<br>
+ * A session without metrics is compared with sessions measured by disabled and by enabled metrics.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MetricsBenchmark
+{
+	@Param({"100"})
+	public int ruleCount;
+	
+	@Param({"1000"})
+	public int factCount;
+	
+	private List<Product> products;
+	private StatelessKieSession plain;
+	private StatelessKieSession disabled;
+	private StatelessKieSession enabled;
+	private RuleMetrics disabledMetrics;
+	private RuleMetrics enabledMetrics;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 1L);
+		products = ProductGenerator.generate(factCount, 2L);
+		KieBase base = new DroolsUtility().loadKieBase(rules, Benchmarks.TEMPLATE);
+		
+		plain = base.newStatelessKieSession();
+		
+		//Listeners are attached while enabled, so disabling measures the cost of the checks left behind
+		disabledMetrics = new RuleMetrics();
+		disabled = base.newStatelessKieSession();
+		disabledMetrics.attach(disabled);
+		disabledMetrics.setEnabled(false);
+		
+		enabledMetrics = new RuleMetrics();
+		enabled = base.newStatelessKieSession();
+		enabledMetrics.attach(enabled);
+	}
+	
+	@Benchmark
+	public int withoutMetrics()
+	{
+		return DroolsUtility.execute(plain, products);
+	}
+	
+	@Benchmark
+	public int disabledMetrics()
+	{
+		return DroolsUtility.execute(disabled, products, DroolsUtility.DEFAULT_BATCH_SIZE, disabledMetrics);
+	}
+	
+	@Benchmark
+	public int enabledMetrics()
+	{
+		return DroolsUtility.execute(enabled, products, DroolsUtility.DEFAULT_BATCH_SIZE, enabledMetrics);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.cache.OutcomeCache;
+import net.itfromhell.howit.dynamicdrools.runtime.MemoizedEvaluator;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Hit ratio and time saved by a {@link MemoizedEvaluator} over nightly runs of a catalog.<br>
+ * Each night the price of part of the products changes and the whole catalog is evaluated again, both by batched
+ * executions of Drools and by the memoized evaluator. The first night fills the cache and is not reported, the
+ * others are averaged. The time saved is the estimate of the evaluator, from the evaluation time recorded with each
+ * outcome replayed. Arguments are the percentages of products changed each night, 1, 10 and 50 by default.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class OutcomeCacheReport
+{
+	/**
+	 * Nights reported, after the one filling the cache.
+	 */
+	private static final int NIGHTS = 5;
+	
+	public static void main(String args[]) throws Exception
+	{
+		String[] percents = ((args.length == 0) ? new String[] {"1", "10", "50"} : args);
+		List<Rule> rules = RuleGenerator.generate(100, RuleGenerator.Mix.MIXED, 1L);
+		List<Product> products = ProductGenerator.generate(10000, 2L);
+		//Both paths share the same rule base, warmed up so the time recorded with the outcomes is not the one of a cold start
+		DroolsUtility utility = new DroolsUtility();
+		StatelessKieSession session = utility.loadKieBase(rules, Benchmarks.TEMPLATE).newStatelessKieSession();
+		for (int i = 0; i < (2 * NIGHTS); i++)
+		{
+			DroolsUtility.execute(session, products);
+		}
+		
+		System.out.println(String.format("%8s %14s %14s %10s %11s", "changed", "drools (ms)", "memoized (ms)", "hit ratio", "saved (ms)"));
+		for (String percent : percents)
+		{
+			Random random = new Random(3L);
+			int changed = ((products.size() * Integer.parseInt(percent)) / 100);
+			MemoizedEvaluator evaluator = new MemoizedEvaluator(rules, Benchmarks.TEMPLATE, "discount", new OutcomeCache(), utility);
+			evaluator.evaluate(products);
+			
+			long drools = 0L;
+			long memoized = 0L;
+			long hits = evaluator.getCache().getHits();
+			long misses = evaluator.getCache().getMisses();
+			long saved = evaluator.getCache().getSavedNanos();
+			for (int night = 0; night < NIGHTS; night++)
+			{
+				for (int i = 0; i < changed; i++)
+				{
+					Product product = products.get(random.nextInt(products.size()));
+					product.setPrice(Math.round(product.getPrice() * (0.9 + (random.nextDouble() * 0.2)) * 100.0) / 100.0);
+				}
+				
+				long start = System.nanoTime();
+				DroolsUtility.execute(session, products);
+				drools += (System.nanoTime() - start);
+				
+				start = System.nanoTime();
+				evaluator.evaluate(products);
+				memoized += (System.nanoTime() - start);
+			}
+			
+			hits = (evaluator.getCache().getHits() - hits);
+			misses = (evaluator.getCache().getMisses() - misses);
+			saved = (evaluator.getCache().getSavedNanos() - saved);
+			System.out.println(String.format("%7s%% %14.1f %14.1f %10.3f %11.1f", percent, drools / (NIGHTS * 1000000.0), memoized / (NIGHTS * 1000000.0), ((double)hits / (hits + misses)), saved / (NIGHTS * 1000000.0)));
+		}
+	}
+}
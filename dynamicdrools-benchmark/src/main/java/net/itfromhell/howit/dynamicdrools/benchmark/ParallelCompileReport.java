@@ -0,0 +1,106 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+
+/**
+ * Wall-clock time to compile large rule sets from scratch against the number of compile threads of
+ * {@link DroolsUtility}.<br>
+ * Each line is a single build by a new utility, so the rules are always compiled: rendering, compiling the partitions
+ * and assembling the network of the rule base, which runs on the calling thread whatever the number of threads.
+ * Thread counts are the powers of two up to the available processors, and the processors themselves. Run it with a
+ * large fixed heap, e.g. <i>-Xms8g -Xmx8g</i>, a rule base of 200000 rules alone takes a few gigabytes.<br>
+ * Arguments are the rule counts, 10000, 50000, 100000 and 200000 by default.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ParallelCompileReport
+{
+	public static void main(String args[]) throws Exception
+	{
+		String[] counts = ((args.length == 0) ? new String[] {"10000", "50000", "100000", "200000"} : args);
+		List<Integer> threads = threads(Runtime.getRuntime().availableProcessors());
+		
+		//Warms all thread counts up, so the first line does not pay for class loading
+		List<Rule> warmUp = RuleGenerator.generate(4000, RuleGenerator.Mix.MIXED, 2L);
+		for (int thread : threads)
+		{
+			build(warmUp, thread);
+		}
+		
+		System.out.println(String.format("%8s %8s %12s %8s", "rules", "threads", "build (ms)", "speedup"));
+		for (String count : counts)
+		{
+			List<Rule> rules = RuleGenerator.generate(Integer.parseInt(count), RuleGenerator.Mix.MIXED, 1L);
+			long single = 0L;
+			for (int thread : threads)
+			{
+				System.gc();
+				long elapsed = build(rules, thread);
+				if (thread == 1)
+				{
+					single = elapsed;
+				}
+				
+				System.out.println(String.format("%8s %8d %12d %8.2f", count, thread, elapsed / 1000000L, (double)single / elapsed));
+			}
+		}
+	}
+	
+	/**
+	 * @return Powers of two lower than the available processors, followed by the processors.
+	 */
+	private static List<Integer> threads(int processors)
+	{
+		List<Integer> threads = new ArrayList<Integer>();
+		for (int thread = 1; thread < processors; thread *= 2)
+		{
+			threads.add(thread);
+		}
+		threads.add(processors);
+		
+		return threads;
+	}
+	
+	/**
+	 * Compiles the rules with a new utility, so nothing is taken from a cache.
+	 * 
+	 * @return Elapsed time in nanoseconds.
+	 */
+	private static long build(List<Rule> rules, int threads) throws Exception
+	{
+		DroolsUtility utility = new DroolsUtility();
+		utility.setCompileThreads(threads);
+		
+		long start = System.nanoTime();
+		KieBase base = utility.loadKieBase(rules, Benchmarks.TEMPLATE);
+		long elapsed = System.nanoTime() - start;
+		if (base.getKiePackages().isEmpty())
+		{
+			throw new IllegalStateException("The rule base of " + rules.size() + " rules is empty.");
+		}
+		
+		return elapsed;
+	}
+}
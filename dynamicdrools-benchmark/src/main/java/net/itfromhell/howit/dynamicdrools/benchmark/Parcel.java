@@ -0,0 +1,61 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+/**
+ * Second kind of fact, sharing the rule template of products through its own <i>discount</i> action.<br>
+ * Like {@link StableProduct}, the freight is kept when discounted.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class Parcel
+{
+	private final double weight;
+	private final double freight;
+	/**
+	 * Sum of all discounts received.
+	 */
+	private double discounts;
+	
+	public Parcel(double weight, double freight)
+	{
+		this.weight = weight;
+		this.freight = freight;
+	}
+	
+	public void discount(double percent)
+	{
+		discounts += percent;
+	}
+	
+	public double getWeight()
+	{
+		return weight;
+	}
+	
+	public double getFreight()
+	{
+		return freight;
+	}
+	
+	public double getDiscounts()
+	{
+		return discounts;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import net.itfromhell.howit.dummy.Product;
+
+/**
+ * Generator of synthetic products.<br>
+ * Names combine a quality and a kind of product, prices spread from $0.00 to $100.00 and due dates spread over a year
+ * around the reference date. The same seed always generates the same products.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ProductGenerator
+{
+	/**
+	 * Qualities used in product names.
+	 */
+	static final String[] QUALITIES = {"Black", "White", "Red", "Organic", "Premium", "Fresh", "Frozen", "Dried", "Light", "Whole"};
+	/**
+	 * Kinds used in product names.
+	 */
+	static final String[] KINDS = {"Beans", "Rice", "Milk", "Coffee", "Bread", "Cheese", "Apples", "Pasta", "Butter", "Tea", "Corn", "Oats"};
+	/**
+	 * Reference date, from which due dates are spread.
+	 */
+	static final long REFERENCE = 1508889600000L;
+	/**
+	 * Milliseconds of a day.
+	 */
+	static final long DAY = 24L * 60L * 60L * 1000L;
+	/**
+	 * Highest price generated.
+	 */
+	static final double MAX_PRICE = 100.0;
+	
+	private ProductGenerator()
+	{
+	}
+	
+	/**
+	 * Generates products which keep their prices when discounted.
+	 * 
+	 * @param size Number of products.
+	 * @param seed Seed of the random values.
+	 * @return Products generated.
+	 */
+	public static List<Product> generate(int size, long seed)
+	{
+		Random random = new Random(seed);
+		List<Product> products = new ArrayList<Product>(size);
+		for (int i = 0; i < size; i++)
+		{
+			products.add(new StableProduct(name(random), price(random), dueDate(random)));
+		}
+		
+		return products;
+	}
+	
+	/**
+	 * Copies products into ordinary ones, which are discounted by the rules.
+	 * 
+	 * @param products Products to be copied.
+	 * @return Copies of the products.
+	 */
+	public static List<Product> copy(List<Product> products)
+	{
+		List<Product> copies = new ArrayList<Product>(products.size());
+		for (Product product : products)
+		{
+			copies.add(new Product(product.getName(), product.getPrice(), product.getDueDate()));
+		}
+		
+		return copies;
+	}
+	
+	static String name(Random random)
+	{
+		return QUALITIES[random.nextInt(QUALITIES.length)] + " " + KINDS[random.nextInt(KINDS.length)];
+	}
+	
+	static double price(Random random)
+	{
+		return Math.round(random.nextDouble() * MAX_PRICE * 100) / 100.0;
+	}
+	
+	static Date dueDate(Random random)
+	{
+		return new Date(REFERENCE + (random.nextInt(365) - 182) * DAY);
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.runtime.RuleBaseRouter;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of evaluating products when the rule set also holds rules of another class.<br>
+ * A single rule base with all rules is compared with {@link RuleBaseRouter}, whose cost should not depend on the
+ * number of parcel rules.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RouterBenchmark
+{
+	@Param({"100"})
+	public int productRules;
+	
+	@Param({"0", "1000", "5000"})
+	public int parcelRules;
+	
+	@Param({"1000"})
+	public int factCount;
+	
+	private List<Product> products;
+	private StatelessKieSession single;
+	private RuleBaseRouter router;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = new ArrayList<Rule>(RuleGenerator.generate(productRules, RuleGenerator.Mix.MIXED, 1L));
+		rules.addAll(RuleGenerator.generateParcels(parcelRules, 3L));
+		products = ProductGenerator.generate(factCount, 2L);
+		
+		DroolsUtility utility = new DroolsUtility();
+		single = utility.loadSession(rules, Benchmarks.TEMPLATE);
+		router = new RuleBaseRouter(rules, Benchmarks.TEMPLATE, utility);
+	}
+	
+	@Benchmark
+	public int singleBase()
+	{
+		return DroolsUtility.execute(single, products);
+	}
+	
+	@Benchmark
+	public int routed()
+	{
+		return router.evaluate(products);
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Generator of synthetic discount rules over products.<br>
+ * The kind of conditions generated is chosen by a {@link Mix}, values are taken from the same ranges used by
+ * {@link ProductGenerator}. The same seed always generates the same rules.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleGenerator
+{
+	/**
+	 * Kind of conditions generated.
+	 */
+	public enum Mix
+	{
+		/**
+		 * Price ranges.
+		 */
+		NUMBER,
+		/**
+		 * Due date ranges.
+		 */
+		DATE,
+		/**
+		 * Name equality and keywords.
+		 */
+		TEXT,
+		/**
+		 * Any of the others, sometimes combined.
+		 */
+		MIXED
+	}
+	
+	private RuleGenerator()
+	{
+	}
+	
+	/**
+	 * Generates rules.
+	 * 
+	 * @param size Number of rules.
+	 * @param mix Kind of conditions.
+	 * @param seed Seed of the random values.
+	 * @return Rules generated.
+	 */
+	public static List<Rule> generate(int size, Mix mix, long seed)
+	{
+		Random random = new Random(seed);
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; i++)
+		{
+			Rule rule = new Rule("Generated rule " + i);
+			rule.setDataObject(Product.class.getName());
+			switch (mix)
+			{
+				case NUMBER:
+					addPriceRange(rule, random);
+					break;
+				case DATE:
+					addDueDateRange(rule, random);
+					break;
+				case TEXT:
+					addName(rule, random);
+					break;
+				default:
+					switch (random.nextInt(4))
+					{
+						case 0:
+							addPriceRange(rule, random);
+							break;
+						case 1:
+							addDueDateRange(rule, random);
+							break;
+						case 2:
+							addName(rule, random);
+							break;
+						default:
+							addName(rule, random);
+							addPriceRange(rule, random);
+							break;
+					}
+					break;
+			}
+			rule.setAction(Integer.toString(1 + random.nextInt(15)));
+			rules.add(rule);
+		}
+		
+		return rules;
+	}
+	
+	/**
+	 * Generates rules with a single keyword condition over the product name.
+	 * 
+	 * @param size Number of rules.
+	 * @param seed Seed of the random values.
+	 * @return Rules generated.
+	 */
+	public static List<Rule> generateKeywords(int size, long seed)
+	{
+		Random random = new Random(seed);
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; i++)
+		{
+			Rule rule = new Rule("Keyword rule " + i);
+			rule.setDataObject(Product.class.getName());
+			//Most keywords are not found, as happens with large keyword lists
+			String keyword = ((random.nextInt(10) == 0) ? ProductGenerator.KINDS[random.nextInt(ProductGenerator.KINDS.length)] : ProductGenerator.KINDS[random.nextInt(ProductGenerator.KINDS.length)] + i);
+			rule.addCondition("name", Condition.Operator.CONTAINS, keyword);
+			rule.setAction(Integer.toString(1 + random.nextInt(15)));
+			rules.add(rule);
+		}
+		
+		return rules;
+	}
+	
+	/**
+	 * Generates rules over the weight of parcels.
+	 * 
+	 * @param size Number of rules.
+	 * @param seed Seed of the random values.
+	 * @return Rules generated.
+	 */
+	public static List<Rule> generateParcels(int size, long seed)
+	{
+		Random random = new Random(seed);
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; i++)
+		{
+			Rule rule = new Rule("Parcel rule " + i);
+			rule.setDataObject(Parcel.class.getName());
+			double low = random.nextInt(1000) / 10.0;
+			rule.addCondition("weight", Condition.Operator.GREATER_THAN_OR_EQUAL_TO, low);
+			rule.addCondition("weight", Condition.Operator.LESS_THAN, low + 0.5 + random.nextInt(5));
+			rule.setAction(Integer.toString(1 + random.nextInt(15)));
+			rules.add(rule);
+		}
+		
+		return rules;
+	}
+	
+	/**
+	 * Generates rules as authored by hand over time, with redundant bounds, some repeated rules and some contradictory
+	 * ones.
+	 * 
+	 * @param size Number of rules.
+	 * @param seed Seed of the random values.
+	 * @return Rules generated.
+	 */
+	public static List<Rule> generateRedundant(int size, long seed)
+	{
+		Random random = new Random(seed);
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; i++)
+		{
+			Rule rule = new Rule("Redundant rule " + i);
+			rule.setDataObject(Product.class.getName());
+			int kind = random.nextInt(10);
+			if ((kind == 0) && !rules.isEmpty())
+			{
+				//Repeats a previous rule under a new name
+				Rule repeated = rules.get(random.nextInt(rules.size()));
+				rule.setConditions(new ArrayList<Condition>(repeated.getConditions()));
+				rule.setAction(repeated.getAction());
+				rules.add(rule);
+				continue;
+			}
+			
+			double low = ProductGenerator.price(random);
+			double high = low + 0.5 + random.nextInt(5);
+			rule.addCondition("price", Condition.Operator.GREATER_THAN, low - 1 - random.nextInt(3));
+			rule.addCondition("price", Condition.Operator.GREATER_THAN_OR_EQUAL_TO, low);
+			rule.addCondition("price", Condition.Operator.LESS_THAN, high);
+			rule.addCondition("price", Condition.Operator.LESS_THAN_OR_EQUAL_TO, high + random.nextInt(3));
+			
+			Date from = ProductGenerator.dueDate(random);
+			rule.addCondition("dueDate", Condition.Operator.GREATER_THAN, new Date(from.getTime() - random.nextInt(30) * ProductGenerator.DAY));
+			rule.addCondition("dueDate", Condition.Operator.GREATER_THAN, from);
+			if (kind == 1)
+			{
+				//Contradicts the range of due dates
+				rule.addCondition("dueDate", Condition.Operator.LESS_THAN, new Date(from.getTime() - ProductGenerator.DAY));
+			}
+			rule.setAction(Integer.toString(1 + random.nextInt(15)));
+			rules.add(rule);
+		}
+		
+		return rules;
+	}
+	
+	/**
+	 * Generates broad policies of which each product matches many, with random priorities and scores.<br>
+	 * Each policy is a lower bound of price, a lower bound of due date or a keyword of the name, the score is its
+	 * discount.
+	 * 
+	 * @param size Number of rules.
+	 * @param seed Seed of the random values.
+	 * @return Rules generated.
+	 */
+	public static List<Rule> generateOverlapping(int size, long seed)
+	{
+		Random random = new Random(seed);
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; i++)
+		{
+			Rule rule = new Rule("Policy " + i);
+			rule.setDataObject(Product.class.getName());
+			switch (random.nextInt(3))
+			{
+				case 0:
+					rule.addCondition("price", Condition.Operator.GREATER_THAN_OR_EQUAL_TO, ProductGenerator.price(random) / 2);
+					break;
+				case 1:
+					rule.addCondition("dueDate", Condition.Operator.GREATER_THAN, new Date(ProductGenerator.dueDate(random).getTime() - 30 * ProductGenerator.DAY));
+					break;
+				default:
+					rule.addCondition("name", Condition.Operator.CONTAINS, ProductGenerator.KINDS[random.nextInt(ProductGenerator.KINDS.length)]);
+					break;
+			}
+			int discount = 1 + random.nextInt(15);
+			rule.setAction(Integer.toString(discount));
+			rule.setPriority(random.nextInt(size));
+			rule.setScore(discount);
+			rules.add(rule);
+		}
+		
+		return rules;
+	}
+	
+	/**
+	 * Generates rules whose conditions are written from the most expensive and least selective to the cheapest and
+	 * most selective: a keyword of the name, a broad lower bound of due date and a narrow price range.
+	 * 
+	 * @param size Number of rules.
+	 * @param seed Seed of the random values.
+	 * @return Rules generated.
+	 */
+	public static List<Rule> generateExpensiveFirst(int size, long seed)
+	{
+		Random random = new Random(seed);
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; i++)
+		{
+			Rule rule = new Rule("Generated rule " + i);
+			rule.setDataObject(Product.class.getName());
+			rule.addCondition("name", Condition.Operator.CONTAINS, ProductGenerator.KINDS[random.nextInt(ProductGenerator.KINDS.length)]);
+			rule.addCondition("dueDate", Condition.Operator.GREATER_THAN, new Date(ProductGenerator.REFERENCE - (120 + random.nextInt(60)) * ProductGenerator.DAY));
+			addPriceRange(rule, random);
+			rule.setAction(Integer.toString(1 + random.nextInt(15)));
+			rules.add(rule);
+		}
+		
+		return rules;
+	}
+	
+	private static void addPriceRange(Rule rule, Random random)
+	{
+		double low = ProductGenerator.price(random);
+		rule.addCondition("price", Condition.Operator.GREATER_THAN_OR_EQUAL_TO, low);
+		rule.addCondition("price", Condition.Operator.LESS_THAN, low + 0.5 + random.nextInt(5));
+	}
+	
+	private static void addDueDateRange(Rule rule, Random random)
+	{
+		Date from = ProductGenerator.dueDate(random);
+		rule.addCondition("dueDate", Condition.Operator.GREATER_THAN, from);
+		rule.addCondition("dueDate", Condition.Operator.LESS_THAN, new Date(from.getTime() + (1 + random.nextInt(7)) * ProductGenerator.DAY));
+	}
+	
+	private static void addName(Rule rule, Random random)
+	{
+		if (random.nextBoolean())
+		{
+			rule.addCondition("name", Condition.Operator.EQUAL_TO, ProductGenerator.name(random));
+		}
+		else
+		{
+			rule.addCondition("name", Condition.Operator.CONTAINS, ProductGenerator.KINDS[random.nextInt(ProductGenerator.KINDS.length)]);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per fact of the compiled engine against the number of rules.<br>
+ * The indexed engine is compared with testing every compiled rule, which grows linearly with the rule set.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleIndexBenchmark
+{
+	@Param({"1000", "10000", "100000"})
+	public int ruleCount;
+	
+	@Param({"NUMBER", "MIXED"})
+	public RuleGenerator.Mix mix;
+	
+	private List<Product> products;
+	private CompiledRuleEngine engine;
+	private CompiledRule[] compiled;
+	private int next;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, mix, 1L);
+		products = ProductGenerator.generate(1024, 2L);
+		engine = new CompiledRuleEngine(rules, Benchmarks.TEMPLATE, "discount");
+		
+		List<CompiledRule> all = new ArrayList<CompiledRule>(rules.size());
+		for (Rule rule : rules)
+		{
+			all.add(CompiledRule.compile(rule, "discount"));
+		}
+		compiled = all.toArray(new CompiledRule[all.size()]);
+	}
+	
+	private Product nextProduct()
+	{
+		next = ((next + 1) & 1023);
+		
+		return products.get(next);
+	}
+	
+	@Benchmark
+	public int indexed()
+	{
+		return engine.evaluate(nextProduct());
+	}
+	
+	@Benchmark
+	public int scan()
+	{
+		Product product = nextProduct();
+		int fired = 0;
+		for (CompiledRule rule : compiled)
+		{
+			if (rule.matches(product))
+			{
+				rule.apply(product);
+				fired++;
+			}
+		}
+		
+		return fired;
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Rules written as JSON lines, one object per rule such as
+ * <i>{"name": "Rule 1", "dataObject": "Product", "action": "10", "priority": 0, "score": 0.0, "conditions":
+ * [["price", "GREATER_THAN", "Double", 10.5]]}</i>.<br>
+ * Each condition is its property, its operator, the type of its value and its value, dates in milliseconds. Only the
+ * values generated by {@link RuleGenerator} are supported, it stands for a rule repository kept as JSON.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+class RuleJson
+{
+	/**
+	 * Line being parsed.
+	 */
+	private String line;
+	/**
+	 * Position of the next character to be parsed.
+	 */
+	private int position;
+	
+	static String write(Rule rule)
+	{
+		StringBuilder json = new StringBuilder("{\"name\": ");
+		string(json, rule.getName());
+		json.append(", \"dataObject\": ");
+		string(json, rule.getDataObject());
+		json.append(", \"action\": ");
+		string(json, rule.getAction());
+		json.append(", \"priority\": ").append(rule.getPriority());
+		json.append(", \"score\": ").append(rule.getScore());
+		json.append(", \"conditions\": [");
+		for (int i = 0; i < rule.getConditions().size(); i++)
+		{
+			Condition condition = rule.getConditions().get(i);
+			Object value = condition.getValue();
+			json.append((i == 0) ? "[" : ", [");
+			string(json, condition.getProperty());
+			json.append(", \"").append(condition.getOperator().name()).append("\", \"").append(value.getClass().getSimpleName()).append("\", ");
+			if (value instanceof String)
+			{
+				string(json, (String)value);
+			}
+			else if (value instanceof Date)
+			{
+				json.append(((Date)value).getTime());
+			}
+			else
+			{
+				json.append(value);
+			}
+			json.append("]");
+		}
+		json.append("]}");
+		
+		return json.toString();
+	}
+	
+	private static void string(StringBuilder json, String value)
+	{
+		if (value == null)
+		{
+			json.append("null");
+			return;
+		}
+		
+		json.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if ((c == '"') || (c == '\\'))
+			{
+				json.append('\\');
+			}
+			json.append(c);
+		}
+		json.append('"');
+	}
+	
+	Rule parse(String line)
+	{
+		this.line = line;
+		this.position = 0;
+		
+		String name = null;
+		String dataObject = null;
+		String action = null;
+		int priority = 0;
+		double score = 0;
+		List<Condition> conditions = new ArrayList<Condition>();
+		expect('{');
+		do
+		{
+			String member = (String)readValue();
+			expect(':');
+			if ("conditions".equals(member))
+			{
+				expect('[');
+				if (peek() == ']')
+				{
+					position++;
+				}
+				else
+				{
+					do
+					{
+						expect('[');
+						String property = (String)readValue();
+						expect(',');
+						Condition.Operator operator = Condition.Operator.valueOf((String)readValue());
+						expect(',');
+						String type = (String)readValue();
+						expect(',');
+						conditions.add(new Condition(property, operator, toValue(type, readValue())));
+						expect(']');
+					}
+					while (next(',', ']') == ',');
+				}
+				continue;
+			}
+			
+			Object value = readValue();
+			if ("name".equals(member))
+			{
+				name = (String)value;
+			}
+			else if ("dataObject".equals(member))
+			{
+				dataObject = (String)value;
+			}
+			else if ("action".equals(member))
+			{
+				action = (String)value;
+			}
+			else if ("priority".equals(member))
+			{
+				priority = ((Number)value).intValue();
+			}
+			else if ("score".equals(member))
+			{
+				score = ((Number)value).doubleValue();
+			}
+		}
+		while (next(',', '}') == ',');
+		
+		Rule rule = new Rule(name);
+		rule.setDataObject(dataObject);
+		rule.setAction(action);
+		rule.setPriority(priority);
+		rule.setScore(score);
+		rule.setConditions(conditions);
+		
+		return rule;
+	}
+	
+	private Object toValue(String type, Object value)
+	{
+		if ("String".equals(type))
+		{
+			return value;
+		}
+		if ("Date".equals(type))
+		{
+			return new Date(((Number)value).longValue());
+		}
+		if ("Double".equals(type))
+		{
+			return ((Number)value).doubleValue();
+		}
+		if ("Long".equals(type))
+		{
+			return ((Number)value).longValue();
+		}
+		if ("Integer".equals(type))
+		{
+			return ((Number)value).intValue();
+		}
+		
+		throw new IllegalArgumentException("The type " + type + " of value is not supported.");
+	}
+	
+	/**
+	 * Reads a string, number or null value.
+	 */
+	private Object readValue()
+	{
+		char c = peek();
+		if (c == '"')
+		{
+			position++;
+			StringBuilder value = new StringBuilder();
+			while ((c = line.charAt(position++)) != '"')
+			{
+				value.append((c == '\\') ? line.charAt(position++) : c);
+			}
+			
+			return value.toString();
+		}
+		if (line.startsWith("null", position))
+		{
+			position += 4;
+			return null;
+		}
+		
+		int start = position;
+		while ((position < line.length()) && (("+-.eE".indexOf(line.charAt(position)) >= 0) || Character.isDigit(line.charAt(position))))
+		{
+			position++;
+		}
+		String number = line.substring(start, position);
+		if ((number.indexOf('.') < 0) && (number.indexOf('E') < 0) && (number.indexOf('e') < 0))
+		{
+			return Long.valueOf(number);
+		}
+		
+		return Double.valueOf(number);
+	}
+	
+	private void expect(char expected)
+	{
+		if (peek() != expected)
+		{
+			throw new IllegalArgumentException("Expected " + expected + " at " + position + " of " + line);
+		}
+		position++;
+	}
+	
+	private char next(char first, char second)
+	{
+		char c = peek();
+		if ((c != first) && (c != second))
+		{
+			throw new IllegalArgumentException("Expected " + first + " or " + second + " at " + position + " of " + line);
+		}
+		position++;
+		
+		return c;
+	}
+	
+	/**
+	 * Skips blanks, returning the next character, or 0 at the end of the line.
+	 */
+	private char peek()
+	{
+		while ((position < line.length()) && Character.isWhitespace(line.charAt(position)))
+		{
+			position++;
+		}
+		
+		return ((position < line.length()) ? line.charAt(position) : 0);
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.repository.RuleRepository;
+
+/**
+ * Size, load time and heap of large rule sets kept as JSON lines and as a binary {@link RuleRepository}.<br>
+ * Loads are: parsing the JSON lines into rules, opening the repository and building all its rules, and opening the
+ * repository without building any, the rules being built on request. The last line is a pass building each rule
+ * of the opened repository once without keeping it, as done when streaming the rules into the compilation.
+ * Retained heap is the heap in use after the load, holding what was loaded, peaks are taken from the heap pools.
+ * Run it with a fixed heap, e.g. <i>-Xms2g -Xmx2g</i>. Arguments are the rule counts, 200000 by default.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleRepositoryReport
+{
+	/**
+	 * Collections run before taking the heap in use.
+	 */
+	private static final int COLLECTIONS = 5;
+	/**
+	 * What was loaded, held while the retained heap is measured so the compiler can not release it earlier.
+	 */
+	private static Object loaded;
+	
+	public static void main(String args[]) throws Exception
+	{
+		String[] counts = ((args.length == 0) ? new String[] {"200000"} : args);
+		Path directory = Files.createTempDirectory("rule-repository");
+		Path json = directory.resolve("rules.json");
+		Path binary = directory.resolve("rules.bin");
+		
+		//Warms all paths up, so the first line does not pay for class loading
+		write(10000, 2L, json, binary);
+		for (int i = 0; i < 3; i++)
+		{
+			readJson(json);
+			readBinary(binary);
+			pass(binary);
+		}
+		
+		System.out.println(String.format("%8s %12s %10s %10s %14s %12s", "rules", "format", "file (MB)", "load (ms)", "retained (MB)", "peak (MB)"));
+		try
+		{
+			for (String count : counts)
+			{
+				write(Integer.parseInt(count), 1L, json, binary);
+				for (String format : new String[] {"json", "binary", "lazy", "lazy pass"})
+				{
+					print(count, format, json, binary);
+				}
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(json);
+			Files.deleteIfExists(binary);
+			Files.deleteIfExists(directory);
+		}
+	}
+	
+	/**
+	 * Measures a load on its own frame, so nothing loaded before is still referenced by the caller.
+	 */
+	private static void print(String count, String format, Path json, Path binary) throws Exception
+	{
+		long baseline = resetPeak();
+		long start = System.nanoTime();
+		load(format, json, binary);
+		long elapsed = System.nanoTime() - start;
+		long peak = peak() - baseline;
+		long retained = resetPeak() - baseline;
+		if (loaded instanceof RuleRepository)
+		{
+			((RuleRepository)loaded).close();
+		}
+		loaded = null;
+		
+		long size = Files.size("json".equals(format) ? json : binary);
+		System.out.println(String.format("%8s %12s %10.1f %10d %14.1f %12.1f", count, format, size / (1024.0 * 1024.0), elapsed / 1000000L, retained / (1024.0 * 1024.0), peak / (1024.0 * 1024.0)));
+	}
+	
+	/**
+	 * Loads the rules in a format, keeping what was loaded in {@link #loaded}.
+	 */
+	private static void load(String format, Path json, Path binary) throws Exception
+	{
+		if ("json".equals(format))
+		{
+			loaded = readJson(json);
+		}
+		else if ("binary".equals(format))
+		{
+			loaded = readBinary(binary);
+		}
+		else if ("lazy".equals(format))
+		{
+			loaded = RuleRepository.open(binary);
+		}
+		else
+		{
+			loaded = pass(binary);
+		}
+	}
+	
+	/**
+	 * Generates the rules and writes them in both formats, so the caller holds none of them.
+	 */
+	private static void write(int count, long seed, Path json, Path binary) throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(count, RuleGenerator.Mix.MIXED, seed);
+		BufferedWriter writer = Files.newBufferedWriter(json, StandardCharsets.UTF_8);
+		try
+		{
+			for (Rule rule : rules)
+			{
+				writer.write(RuleJson.write(rule));
+				writer.newLine();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		
+		RuleRepository.write(binary, rules);
+	}
+	
+	private static List<Rule> readJson(Path json) throws Exception
+	{
+		List<Rule> rules = new ArrayList<Rule>();
+		RuleJson parser = new RuleJson();
+		BufferedReader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8);
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				rules.add(parser.parse(line));
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		return rules;
+	}
+	
+	private static List<Rule> readBinary(Path binary) throws Exception
+	{
+		RuleRepository repository = RuleRepository.open(binary);
+		try
+		{
+			return new ArrayList<Rule>(repository.asList());
+		}
+		finally
+		{
+			repository.close();
+		}
+	}
+	
+	/**
+	 * Builds each rule of the repository once, without keeping them.
+	 * 
+	 * @return Number of conditions built.
+	 */
+	private static Integer pass(Path binary) throws Exception
+	{
+		RuleRepository repository = RuleRepository.open(binary);
+		try
+		{
+			int conditions = 0;
+			for (Rule rule : repository)
+			{
+				conditions += rule.getConditions().size();
+			}
+			
+			return conditions;
+		}
+		finally
+		{
+			repository.close();
+		}
+	}
+	
+	/**
+	 * Collects the garbage over some rounds and restarts the peaks of the heap pools.<br>
+	 * Garbage may outlive a few collections right after being released, so a single collection is not enough.
+	 * 
+	 * @return Heap in use after the collections.
+	 */
+	private static long resetPeak() throws InterruptedException
+	{
+		for (int i = 0; i < COLLECTIONS; i++)
+		{
+			System.gc();
+			Thread.sleep(100L);
+		}
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				pool.resetPeakUsage();
+			}
+		}
+		
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+	
+	/**
+	 * @return Sum of the peaks of the heap pools since the last reset.
+	 */
+	private static long peak()
+	{
+		long peak = 0L;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		
+		return peak;
+	}
+}
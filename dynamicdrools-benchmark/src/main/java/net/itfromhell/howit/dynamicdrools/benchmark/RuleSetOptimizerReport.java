@@ -0,0 +1,80 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.List;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.optimizer.OptimizationReport;
+import net.itfromhell.howit.dynamicdrools.optimizer.RuleSetOptimizer;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Nodes of the rule network and evaluation time of redundant rule sets, before and after the {@link RuleSetOptimizer}.
+ * <br>
+ * Evaluation time is the average of batched executions over the same products, after some rounds of warm up.
+ * Arguments are the rule counts, 100, 500 and 1000 by default.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleSetOptimizerReport
+{
+	/**
+	 * Rounds of evaluation, either to warm up or to measure.
+	 */
+	private static final int ROUNDS = 10;
+	
+	public static void main(String args[]) throws Exception
+	{
+		String[] counts = ((args.length == 0) ? new String[] {"100", "500", "1000"} : args);
+		List<Product> products = ProductGenerator.generate(10000, 2L);
+		
+		System.out.println(String.format("%8s %10s %8s %11s %8s %17s", "rules", "rule set", "rules", "conditions", "nodes", "evaluation (ms)"));
+		for (String count : counts)
+		{
+			List<Rule> rules = RuleGenerator.generateRedundant(Integer.parseInt(count), 1L);
+			OptimizationReport report = new RuleSetOptimizer().optimize(rules);
+			
+			print(count, "original", rules, report.getOriginalConditions(), products);
+			print(count, "optimized", report.getRules(), report.getConditions(), products);
+		}
+	}
+	
+	private static void print(String count, String ruleSet, List<Rule> rules, int conditions, List<Product> products) throws Exception
+	{
+		KieBase base = new DroolsUtility().loadKieBase(rules, Benchmarks.TEMPLATE);
+		StatelessKieSession session = base.newStatelessKieSession();
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			DroolsUtility.execute(session, products);
+		}
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			DroolsUtility.execute(session, products);
+		}
+		double elapsed = (System.nanoTime() - start) / (ROUNDS * 1000000.0);
+		
+		System.out.println(String.format("%8s %10s %8d %11d %8d %17.1f", count, ruleSet, rules.size(), conditions, ((InternalKnowledgeBase)base).getNodeCount(), elapsed));
+	}
+}
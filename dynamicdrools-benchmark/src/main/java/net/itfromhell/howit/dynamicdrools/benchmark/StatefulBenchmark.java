@@ -0,0 +1,124 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.runtime.StatefulEvaluator;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of evaluating the price change of one product of a catalog.<br>
+ * The change is given as a delta to {@link StatefulEvaluator}, which holds the whole catalog in its working memory, and
+ * compared with re-evaluating statelessly the changed product alone and the whole catalog.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StatefulBenchmark
+{
+	@Param({"100"})
+	public int ruleCount;
+	
+	@Param({"1000", "10000"})
+	public int productCount;
+	
+	private List<Product> products;
+	private double[] prices;
+	private StatefulEvaluator stateful;
+	private StatelessKieSession session;
+	private int next;
+	
+	@Setup
+	public void setUp() throws Exception
+	{
+		List<Rule> rules = RuleGenerator.generate(ruleCount, RuleGenerator.Mix.MIXED, 1L);
+		products = ProductGenerator.generate(productCount, 2L);
+		prices = new double[products.size()];
+		for (int i = 0; i < prices.length; i++)
+		{
+			prices[i] = products.get(i).getPrice();
+		}
+		
+		KieBase base = new DroolsUtility().loadKieBase(rules, Benchmarks.TEMPLATE);
+		session = base.newStatelessKieSession();
+		stateful = new StatefulEvaluator(base);
+		stateful.insert(products);
+	}
+	
+	@TearDown
+	public void tearDown()
+	{
+		stateful.close();
+	}
+	
+	/**
+	 * Changes the price of the next product back to its generated value.
+	 */
+	private Product change()
+	{
+		next = ((next + 1) % products.size());
+		Product product = products.get(next);
+		product.setPrice(prices[next]);
+		
+		return product;
+	}
+	
+	@Benchmark
+	public int statefulUpdate()
+	{
+		return stateful.update(change());
+	}
+	
+	@Benchmark
+	public int statelessProduct()
+	{
+		return DroolsUtility.execute(session, Collections.singletonList(change()));
+	}
+	
+	@Benchmark
+	public int statelessCatalog()
+	{
+		change();
+		
+		return DroolsUtility.execute(session, products);
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import net.itfromhell.howit.dynamicdrools.util.ParsedTemplate;
+import org.drools.template.ObjectDataCompiler;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieFileSystem;
+
+/**
+ * Peak heap and time spent generating the DRL of large rule sets into a <b>KieFileSystem</b>.<br>
+ * Compares the single string rendered by <b>ObjectDataCompiler</b> with the chunks rendered by {@link ParsedTemplate},
+ * as compiled by {@link DroolsUtility}. Only the generation is measured, building a rule base with a million rules
+ * is out of reach of most heaps. Peaks are taken from the heap pools and do not count the rules themselves, run it
+ * with a fixed heap, e.g. <i>-Xms4g -Xmx4g</i>, so collections do not hide the difference.<br>
+ * Arguments are the rule counts, 10000, 100000 and 1000000 by default.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class TemplateGenerationReport
+{
+	public static void main(String args[]) throws Exception
+	{
+		String[] counts = ((args.length == 0) ? new String[] {"10000", "100000", "1000000"} : args);
+		
+		//Warms both paths up, so the first line does not pay for class loading
+		List<Map<String, Object>> warmUp = asMaps(RuleGenerator.generate(1000, RuleGenerator.Mix.MIXED, 2L));
+		single(warmUp);
+		chunked(warmUp);
+		
+		System.out.println(String.format("%10s %10s %12s %14s", "rules", "method", "time (ms)", "peak heap (MB)"));
+		for (String count : counts)
+		{
+			List<Map<String, Object>> maps = asMaps(RuleGenerator.generate(Integer.parseInt(count), RuleGenerator.Mix.MIXED, 1L));
+			for (String method : new String[] {"single", "chunked"})
+			{
+				long baseline = resetPeak();
+				long start = System.nanoTime();
+				KieFileSystem system = ("single".equals(method) ? single(maps) : chunked(maps));
+				long elapsed = System.nanoTime() - start;
+				long peak = peak() - baseline;
+				
+				System.out.println(String.format("%10s %10s %12d %14d", count, method, elapsed / 1000000L, peak / (1024L * 1024L)));
+			}
+		}
+	}
+	
+	private static List<Map<String, Object>> asMaps(List<Rule> rules)
+	{
+		List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(rules.size());
+		for (Rule rule : rules)
+		{
+			maps.add(rule.asMap());
+		}
+		
+		return maps;
+	}
+	
+	/**
+	 * Generates the DRL as a single string, as done before the template was parsed once.
+	 */
+	private static KieFileSystem single(List<Map<String, Object>> maps) throws Exception
+	{
+		String drl = (new ObjectDataCompiler()).compile(maps, new ByteArrayInputStream(DroolsUtility.readTemplate(Benchmarks.TEMPLATE)));
+		KieFileSystem system = KieServices.Factory.get().newKieFileSystem();
+		system.write("src/main/resources/drools/templates/rule.drl", drl);
+		
+		return system;
+	}
+	
+	/**
+	 * Generates the DRL in chunks, as done by {@link DroolsUtility}.
+	 */
+	private static KieFileSystem chunked(List<Map<String, Object>> maps) throws Exception
+	{
+		ParsedTemplate template = ParsedTemplate.load(Benchmarks.TEMPLATE);
+		KieFileSystem system = KieServices.Factory.get().newKieFileSystem();
+		for (int first = 0; first < maps.size(); first += DroolsUtility.RENDER_CHUNK_SIZE)
+		{
+			String drl = template.render(maps.subList(first, Math.min(first + DroolsUtility.RENDER_CHUNK_SIZE, maps.size())), first);
+			system.write("src/main/resources/drools/templates/rule-" + (first / DroolsUtility.RENDER_CHUNK_SIZE) + ".drl", drl);
+		}
+		
+		return system;
+	}
+	
+	/**
+	 * Collects the garbage and restarts the peaks of the heap pools.
+	 * 
+	 * @return Heap in use after the collection.
+	 */
+	private static long resetPeak()
+	{
+		System.gc();
+		long used = 0L;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				pool.resetPeakUsage();
+				used += pool.getUsage().getUsed();
+			}
+		}
+		
+		return used;
+	}
+	
+	/**
+	 * @return Sum of the peaks of the heap pools since the last reset.
+	 */
+	private static long peak()
+	{
+		long peak = 0L;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		
+		return peak;
+	}
+}
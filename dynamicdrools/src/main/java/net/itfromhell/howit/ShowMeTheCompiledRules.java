@@ -0,0 +1,182 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Implementation comparing the compiled rule engine with Drools.<br>
+ * The same random rules are evaluated by both engines over copies of the same random products, any product ending
+ * with a different price is reported and fails the comparison. Rules and products cover where both engines may
+ * differ: products without a due date, <i>NOT_EQUAL_TO</i> over texts, dates and numbers, <b>Float</b> and
+ * <b>Integer</b> values compared with a <b>double</b> property, <b>BigDecimal</b> and <b>Byte</b> values the compiled
+ * engine leaves to Drools and <i>CONTAINS</i> keywords in mixed case, some with letters whose upper case depends on
+ * the locale or is longer than the letter.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ShowMeTheCompiledRules
+{
+	private static final String[] NAMES = {"Black Beans", "Cannellini Beans", "Kidney Beans", "Rice", "Milk", "Brown Rice", "Soy Milk", "Coffee", "Weißbier", "Kırmızı Biber"};
+	private static final long DAY = 24L * 60L * 60L * 1000L;
+	
+	public static void main(String args[]) throws Exception
+	{
+		int ruleCount = ((args.length > 0) ? Integer.parseInt(args[0]) : 200);
+		int productCount = ((args.length > 1) ? Integer.parseInt(args[1]) : 2000);
+		Random random = new Random(2017);
+		long today = System.currentTimeMillis();
+		
+		List<Rule> rules = new ArrayList<Rule>(ruleCount);
+		for (int i = 0; i < ruleCount; i++)
+		{
+			rules.add(createRule(i, random, today));
+		}
+		//An action which is not a number is left to Drools
+		Rule complex = new Rule("Discount computed by an expression");
+		complex.setDataObject(Product.class.getName());
+		complex.addCondition("price", Condition.Operator.GREATER_THAN, 8.0);
+		complex.setAction("Math.min(3, 5)");
+		rules.add(complex);
+		
+		List<Product> byDrools = new ArrayList<Product>(productCount);
+		List<Product> byCompiled = new ArrayList<Product>(productCount);
+		for (int i = 0; i < productCount; i++)
+		{
+			String name = NAMES[random.nextInt(NAMES.length)];
+			double price = Math.round(random.nextDouble() * 1000) / 100.0;
+			//Some products have no due date, the others are on the same days the rules compare with
+			Date dueDate = ((random.nextInt(8) == 0) ? null : new Date(today + (random.nextInt(60) - 30) * DAY));
+			byDrools.add(new Product(name, price, dueDate));
+			byCompiled.add(new Product(name, price, dueDate));
+		}
+		
+		DroolsUtility utility = new DroolsUtility();
+		StatelessKieSession session = utility.loadSession(rules, "drools/templates/Product.drl");
+		CompiledRuleEngine engine = new CompiledRuleEngine(rules, "drools/templates/Product.drl", "discount", utility);
+		System.out.println(engine.getCompiledCount() + " rules compiled, " + engine.getFallbackRules().size() + " left to Drools");
+		
+		long start = System.nanoTime();
+		int firedByDrools = DroolsUtility.execute(session, byDrools);
+		long droolsTime = System.nanoTime() - start;
+		
+		start = System.nanoTime();
+		int firedByCompiled = engine.evaluate(byCompiled);
+		long compiledTime = System.nanoTime() - start;
+		
+		int differences = 0;
+		for (int i = 0; i < productCount; i++)
+		{
+			//Discounts may be applied in different order, so only rounding differences are accepted
+			if (Math.abs(byDrools.get(i).getPrice() - byCompiled.get(i).getPrice()) > 1e-9)
+			{
+				differences++;
+				System.out.println("Different outcome: " + byDrools.get(i) + " x " + byCompiled.get(i));
+			}
+		}
+		
+		System.out.println("Drools fired " + firedByDrools + " rules in " + (droolsTime / 1000000) + "ms");
+		System.out.println("Compiled engine fired " + firedByCompiled + " rules in " + (compiledTime / 1000000) + "ms");
+		System.out.println(differences + " products with different outcome");
+		if (differences > 0)
+		{
+			throw new IllegalStateException(differences + " products had a different outcome in the compiled rule engine.");
+		}
+	}
+	
+	/**
+	 * Creates a random rule combining conditions over all properties of product.
+	 */
+	private static Rule createRule(int index, Random random, long today)
+	{
+		Rule rule = new Rule("Random rule " + index);
+		rule.setDataObject(Product.class.getName());
+		
+		switch (random.nextInt(5))
+		{
+			case 0:
+				rule.addCondition("name", Condition.Operator.CONTAINS, mixCase(NAMES[random.nextInt(NAMES.length)].split(" ")[0], random));
+				break;
+			case 1:
+				rule.addCondition("name", (random.nextBoolean() ? Condition.Operator.EQUAL_TO : Condition.Operator.NOT_EQUAL_TO), NAMES[random.nextInt(NAMES.length)]);
+				break;
+			case 2:
+				rule.addCondition("dueDate", Condition.Operator.GREATER_THAN, new Date(today + (random.nextInt(60) - 30) * DAY + random.nextInt(1000)));
+				rule.addCondition("dueDate", Condition.Operator.LESS_THAN_OR_EQUAL_TO, new Date(today + random.nextInt(30) * DAY));
+				break;
+			case 3:
+				rule.addCondition("dueDate", (random.nextBoolean() ? Condition.Operator.EQUAL_TO : Condition.Operator.NOT_EQUAL_TO), new Date(today + (random.nextInt(60) - 30) * DAY));
+				break;
+			default:
+				break;
+		}
+		
+		Condition.Operator[] operators = {Condition.Operator.GREATER_THAN, Condition.Operator.GREATER_THAN_OR_EQUAL_TO, Condition.Operator.LESS_THAN, Condition.Operator.LESS_THAN_OR_EQUAL_TO, Condition.Operator.EQUAL_TO, Condition.Operator.NOT_EQUAL_TO};
+		int cents = random.nextInt(1000);
+		Object price;
+		switch (random.nextInt(5))
+		{
+			case 0:
+				price = Float.valueOf(cents / 100.0f);
+				break;
+			case 1:
+				price = Integer.valueOf(cents / 100);
+				break;
+			case 2:
+				//Left to Drools by the compiled engine, not being listed by the operators
+				price = BigDecimal.valueOf(cents, 2);
+				break;
+			case 3:
+				price = Byte.valueOf((byte)(cents / 100));
+				break;
+			default:
+				price = Double.valueOf(cents / 100.0);
+				break;
+		}
+		rule.addCondition("price", operators[random.nextInt(operators.length)], price);
+		rule.setAction(Integer.toString(1 + random.nextInt(20)));
+		
+		return rule;
+	}
+	
+	/**
+	 * Changes the case of random letters of a keyword.
+	 */
+	private static String mixCase(String keyword, Random random)
+	{
+		StringBuilder mixed = new StringBuilder(keyword.length());
+		for (int i = 0; i < keyword.length(); i++)
+		{
+			char letter = keyword.charAt(i);
+			mixed.append(random.nextBoolean() ? Character.toUpperCase(letter) : Character.toLowerCase(letter));
+		}
+		
+		return mixed.toString();
+	}
+}
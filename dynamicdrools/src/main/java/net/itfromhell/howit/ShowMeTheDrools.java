@@ -20,11 +20,14 @@ package net.itfromhell.howit;
 
 import net.itfromhell.howit.dummy.Product;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import net.itfromhell.howit.dynamicdrools.Condition;
 import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
 import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
 import org.kie.api.runtime.StatelessKieSession;
 
@@ -44,8 +47,10 @@ public class ShowMeTheDrools
 		rules.add(createDiscountSoonDueDate());
 		rules.add(createDiscountBeans());
 		
-		//Create a session to operate Drools in memory
+		//Create a session to operate Drools in memory, measuring what happens over it
+		RuleMetrics metrics = new RuleMetrics();
 		DroolsUtility utility = new DroolsUtility();
+		utility.setMetrics(metrics);
 		StatelessKieSession session = utility.loadSession(rules, "drools/templates/Product.drl");
 		
 		//Define the products to be processed using our rules
@@ -60,29 +65,31 @@ public class ShowMeTheDrools
 		For each product to be processed, we have to face it over rules to get, or not, a discounted price.
 		*/
 		System.out.println("Applying over " + rice.getName() + " with price $" + rice.getPrice() + "...");
-		session.setGlobal("product", rice);
 		session.execute(rice);
 		System.out.println("...price after review: $" + rice.getPrice());
 		
 		System.out.println("Applying over " + blackBeans.getName() + " with price $" + blackBeans.getPrice() + "...");
-		session.setGlobal("product", blackBeans);
 		session.execute(blackBeans);
 		System.out.println("...price after review: $" + blackBeans.getPrice());
 		
-		System.out.println("Applying over " + milk.getName() + " with price $" + milk.getPrice() + "...");
-		session.setGlobal("product", milk);
-		session.execute(milk);
-		System.out.println("...price after review: $" + milk.getPrice());
-		
-		System.out.println("Applying over " + kidneyBeans.getName() + " with price $" + kidneyBeans.getPrice() + "...");
-		session.setGlobal("product", kidneyBeans);
-		session.execute(kidneyBeans);
-		System.out.println("...price after review: $" + kidneyBeans.getPrice());
-		
-		System.out.println("Applying over " + cannelliniBeans.getName() + " with price $" + cannelliniBeans.getPrice() + "...");
-		session.setGlobal("product", cannelliniBeans);
-		session.execute(cannelliniBeans);
-		System.out.println("...price after review: $" + cannelliniBeans.getPrice());
+		/*
+		When there are many products, all of them can be faced over rules at once.
+		Each batch is evaluated in a single execution of the session.
+		*/
+		List<Product> products = Arrays.asList(milk, kidneyBeans, cannelliniBeans);
+		int fired = DroolsUtility.execute(session, products, DroolsUtility.DEFAULT_BATCH_SIZE, metrics);
+		System.out.println(fired + " rules triggered over the remaining products:");
+		for (Product product : products)
+		{
+			System.out.println("..." + product.getName() + " price after review: $" + product.getPrice());
+		}
+		
+		//Every rule triggered was counted, the same numbers are published through JMX by metrics.register(name)
+		for (Map.Entry<String, Long> rule : metrics.getFiredRules().entrySet())
+		{
+			System.out.println("Rule '" + rule.getKey() + "' triggered " + rule.getValue() + " time(s)");
+		}
+		System.out.println(metrics.snapshot());
 	}
 	
 	/**
@@ -132,7 +139,8 @@ public class ShowMeTheDrools
 		Condition lessThan = new Condition();
 		lessThan.setProperty("dueDate");
 		lessThan.setOperator(Condition.Operator.LESS_THAN);
-		lessThan.setValue((new SimpleDateFormat("dd/MM/yyyy").parse("30/10/2017")));
+		//Dates from java.time are accepted as well
+		lessThan.setValue(LocalDate.of(2017, 10, 30));
 		
 		//You can define as many as necessary conditions to achieve your necessity
 		rule.setConditions(Arrays.asList(greaterThan, lessThan));
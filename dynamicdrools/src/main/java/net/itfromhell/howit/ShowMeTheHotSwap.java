@@ -0,0 +1,186 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.runtime.VersionedRuleBase;
+
+/**
+ * Implementation replacing the rules of a {@link VersionedRuleBase} while other threads keep evaluating products.<br>
+ * Each version discounts every product by its own number, so the price of an evaluated product tells the version
+ * which evaluated it. The replacement fails when an evaluation fails, when the products of a single evaluation were
+ * not all evaluated by the same version, when that version was not current at some point of the evaluation, or when a
+ * replaced version is not released shortly after being replaced.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ShowMeTheHotSwap
+{
+	private static final double PRICE = 100.0;
+	/**
+	 * Products evaluated together, by a single version.
+	 */
+	private static final int BATCH = 20;
+	/**
+	 * Rules never matched, so each version takes a while to compile.
+	 */
+	private static final int FILLER_RULES = 50;
+	
+	public static void main(String args[]) throws Exception
+	{
+		int updates = ((args.length > 0) ? Integer.parseInt(args[0]) : 30);
+		int threads = ((args.length > 1) ? Integer.parseInt(args[1]) : 3);
+		if (updates >= PRICE)
+		{
+			throw new IllegalArgumentException("Up to " + (int)(PRICE - 1) + " updates are accepted, each version discounts its number.");
+		}
+		
+		final VersionedRuleBase rules = new VersionedRuleBase(createRules(1), "drools/templates/Product.drl");
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicLong evaluations = new AtomicLong();
+		ExecutorService evaluators = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> running = new ArrayList<Future<Void>>(threads);
+		for (int i = 0; i < threads; i++)
+		{
+			running.add(evaluators.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					while (!stop.get())
+					{
+						evaluate(rules);
+						evaluations.incrementAndGet();
+					}
+					
+					return null;
+				}
+			}));
+		}
+		
+		int notReleased = 0;
+		try
+		{
+			for (int number = 2; number <= (updates + 1); number++)
+			{
+				VersionedRuleBase.Version replaced = rules.getCurrent();
+				//Warming up fires the real actions, so it runs over products nobody else uses
+				VersionedRuleBase.Version published = rules.update(createRules(number), createProducts()).get();
+				if (published.getNumber() != number)
+				{
+					throw new IllegalStateException("The version " + published.getNumber() + " was published instead of the version " + number + ".");
+				}
+				if (!replaced.awaitRelease(10, TimeUnit.SECONDS))
+				{
+					notReleased++;
+					System.out.println("Version not released: " + replaced);
+				}
+			}
+		}
+		finally
+		{
+			stop.set(true);
+			evaluators.shutdown();
+			rules.shutdown();
+		}
+		
+		//Any failure of an evaluation is thrown here
+		for (Future<Void> evaluator : running)
+		{
+			evaluator.get();
+		}
+		
+		System.out.println(updates + " versions published during " + evaluations.get() + " evaluations by " + threads + " threads");
+		System.out.println(notReleased + " replaced versions not released");
+		if (notReleased > 0)
+		{
+			throw new IllegalStateException(notReleased + " replaced versions were not released.");
+		}
+	}
+	
+	/**
+	 * Evaluates a batch of products, checking they were all evaluated by a version current during the evaluation.
+	 */
+	private static void evaluate(VersionedRuleBase rules)
+	{
+		List<Product> products = createProducts();
+		long first = rules.getCurrent().getNumber();
+		rules.evaluate(products);
+		long last = rules.getCurrent().getNumber();
+		
+		long version = Math.round(PRICE - products.get(0).getPrice());
+		if ((version < first) || (version > last))
+		{
+			throw new IllegalStateException("The products were evaluated by the version " + version + ", while the versions from " + first + " to " + last + " were current.");
+		}
+		for (Product product : products)
+		{
+			if (Math.round(PRICE - product.getPrice()) != version)
+			{
+				throw new IllegalStateException("The products of a single evaluation were evaluated by different versions: " + products);
+			}
+		}
+	}
+	
+	/**
+	 * Creates the rules of a version, discounting every product by the number of the version.
+	 */
+	private static List<Rule> createRules(int number)
+	{
+		List<Rule> rules = new ArrayList<Rule>(FILLER_RULES + 1);
+		Rule discount = new Rule("Discounting the version " + number);
+		discount.setDataObject(Product.class.getName());
+		discount.addCondition("price", Condition.Operator.GREATER_THAN, 0.0);
+		discount.setAction(Integer.toString(number));
+		rules.add(discount);
+		for (int i = 0; i < FILLER_RULES; i++)
+		{
+			Rule filler = new Rule("Never matched " + i);
+			filler.setDataObject(Product.class.getName());
+			filler.addCondition("price", Condition.Operator.LESS_THAN, (double)-i);
+			filler.setAction(Integer.toString(number));
+			rules.add(filler);
+		}
+		
+		return rules;
+	}
+	
+	private static List<Product> createProducts()
+	{
+		List<Product> products = new ArrayList<Product>(BATCH);
+		for (int i = 0; i < BATCH; i++)
+		{
+			products.add(new Product("Rice", PRICE, new Date()));
+		}
+		
+		return products;
+	}
+}
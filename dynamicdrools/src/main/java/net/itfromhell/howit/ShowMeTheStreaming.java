@@ -0,0 +1,112 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.itfromhell.howit.dummy.Product;
+import net.itfromhell.howit.dummy.ProductCsvParser;
+import net.itfromhell.howit.dummy.ProductCsvSink;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import net.itfromhell.howit.dynamicdrools.streaming.StreamingEvaluator;
+import net.itfromhell.howit.dynamicdrools.streaming.StreamingResult;
+
+/**
+ * Implementation evaluating a product catalog streamed from a CSV file, too large to be kept in memory.<br>
+ * A random catalog is written to a temporary file, evaluated by the compiled rules and written to another file. The
+ * heap used stays the same whatever the number of products.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ShowMeTheStreaming
+{
+	private static final String[] NAMES = {"Black Beans", "Cannellini Beans", "Kidney Beans", "Rice", "Milk", "Brown Rice", "Soy Milk", "Coffee"};
+	
+	public static void main(String args[]) throws Exception
+	{
+		int productCount = ((args.length > 0) ? Integer.parseInt(args[0]) : 1000000);
+		Random random = new Random(2017);
+		
+		Path input = Files.createTempFile("catalog", ".csv");
+		Path output = Files.createTempFile("discounted", ".csv");
+		try
+		{
+			//The catalog is written line by line, it never exists in memory as a whole
+			BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8);
+			try
+			{
+				writer.write("name,price,dueDate");
+				writer.newLine();
+				for (int i = 0; i < productCount; i++)
+				{
+					writer.write(NAMES[random.nextInt(NAMES.length)] + "," + (Math.round(random.nextDouble() * 1000) / 100.0) + "," + (1 + random.nextInt(28)) + "/" + (1 + random.nextInt(12)) + "/2018");
+					writer.newLine();
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+			System.out.println(productCount + " products written to " + input + " (" + Files.size(input) / 1024 + " KB)");
+			
+			List<Rule> rules = new ArrayList<Rule>();
+			Rule beans = new Rule("Discounting on all beans");
+			beans.setDataObject(Product.class.getName());
+			beans.addCondition("name", Condition.Operator.CONTAINS, "Beans");
+			beans.setAction("5");
+			rules.add(beans);
+			Rule overpriced = new Rule("Give some discount on overpriced");
+			overpriced.setDataObject(Product.class.getName());
+			overpriced.addCondition("price", Condition.Operator.GREATER_THAN_OR_EQUAL_TO, 4.0);
+			overpriced.setAction("10");
+			rules.add(overpriced);
+			CompiledRuleEngine engine = new CompiledRuleEngine(rules, "drools/templates/Product.drl", "discount");
+			
+			//Facts are read, evaluated and written in chunks, the reading waits when the writing falls behind
+			StreamingEvaluator<Product> evaluator = new StreamingEvaluator<Product>(new ProductCsvParser(), StreamingEvaluator.compiled(engine));
+			ProductCsvSink sink = new ProductCsvSink(output);
+			StreamingResult result;
+			try
+			{
+				result = evaluator.evaluate(input, sink);
+			}
+			finally
+			{
+				sink.close();
+			}
+			
+			Runtime runtime = Runtime.getRuntime();
+			System.out.println(result);
+			System.out.println("Evaluated products written to " + output + " (" + Files.size(output) / 1024 + " KB)");
+			System.out.println("Heap used: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB");
+		}
+		finally
+		{
+			Files.deleteIfExists(input);
+			Files.deleteIfExists(output);
+		}
+	}
+}
@@ -91,6 +91,11 @@ public class Product
 		return price;
 	}
 	
+	public void setPrice(double price)
+	{
+		this.price = price;
+	}
+	
 	public Date getDueDate()
 	{
 		return dueDate;
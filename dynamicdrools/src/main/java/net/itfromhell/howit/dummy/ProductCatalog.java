@@ -0,0 +1,407 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dummy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Catalog of products stored off the heap, in a memory-mapped file.<br>
+ * The file starts with a header, followed by a fixed-width record per product and by the dictionary of names. A
+ * record holds the price, the time of the due date and the code of the name in the dictionary, so millions of
+ * products take a few bytes of heap each name rather than an object graph each product. Products are read through
+ * {@link ProductView views}, and discounts applied over a view are written back into the file. Iterating the catalog
+ * gives a view per product, safe for any evaluator, while {@link #cursor()} moves a single view over all of them.<br>
+ * A catalog holds up to 2GB of records. It must not be shared among threads while prices are being changed.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ProductCatalog implements Closeable, Iterable<Product>
+{
+	/**
+	 * Identification of the file format, "PCAT".
+	 */
+	private static final int MAGIC = 0x50434154;
+	private static final int VERSION = 1;
+	/**
+	 * Bytes of the header: magic, version, number of products and position of the dictionary.
+	 */
+	static final int HEADER_SIZE = 24;
+	/**
+	 * Bytes of each record: price, time of the due date, code of the name and padding.
+	 */
+	static final int RECORD_SIZE = 24;
+	static final int PRICE = 0;
+	static final int DUE_DATE = 8;
+	static final int NAME = 16;
+	/**
+	 * Time stored for a product without due date.
+	 */
+	static final long NO_DATE = Long.MIN_VALUE;
+	
+	private final FileChannel channel;
+	/**
+	 * Records of all products.
+	 */
+	private final MappedByteBuffer records;
+	/**
+	 * Names of the products, by code.
+	 */
+	private final String[] dictionary;
+	/**
+	 * Number of products.
+	 */
+	private final int size;
+	
+	private ProductCatalog(FileChannel channel, MappedByteBuffer records, String[] dictionary, int size)
+	{
+		this.channel = channel;
+		this.records = records;
+		this.dictionary = dictionary;
+		this.size = size;
+	}
+	
+	/**
+	 * Writes a catalog file.
+	 * 
+	 * @param file File to be written, replaced when it exists.
+	 * @param products Products to be stored.
+	 * @return Number of products written.
+	 * @throws IOException Indicates the file could not be written.
+	 */
+	public static int write(Path file, Iterable<? extends Product> products) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try
+		{
+			Map<String, Integer> names = new LinkedHashMap<String, Integer>();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+			int count = 0;
+			channel.position(HEADER_SIZE);
+			for (Product product : products)
+			{
+				if (count == (Integer.MAX_VALUE / RECORD_SIZE))
+				{
+					throw new IllegalArgumentException("A catalog holds up to " + count + " products.");
+				}
+				if (!buffer.hasRemaining())
+				{
+					drain(channel, buffer);
+				}
+				
+				int code = -1;
+				if (product.getName() != null)
+				{
+					Integer known = names.get(product.getName());
+					if (known == null)
+					{
+						known = names.size();
+						names.put(product.getName(), known);
+					}
+					code = known;
+				}
+				
+				buffer.putDouble(product.getPrice());
+				buffer.putLong((product.getDueDate() == null) ? NO_DATE : product.getDueDate().getTime());
+				buffer.putInt(code);
+				buffer.putInt(0);
+				count++;
+			}
+			drain(channel, buffer);
+			
+			long dictionaryPosition = channel.position();
+			ByteBuffer entry = ByteBuffer.allocate(4);
+			entry.putInt(names.size());
+			entry.flip();
+			write(channel, entry);
+			for (String name : names.keySet())
+			{
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				entry = ByteBuffer.allocate(4 + bytes.length);
+				entry.putInt(bytes.length);
+				entry.put(bytes);
+				entry.flip();
+				write(channel, entry);
+			}
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(count);
+			header.putLong(dictionaryPosition);
+			header.flip();
+			channel.position(0);
+			write(channel, header);
+			
+			return count;
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		buffer.flip();
+		write(channel, buffer);
+		buffer.clear();
+	}
+	
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+	
+	/**
+	 * Opens a catalog file, mapping its records.
+	 * 
+	 * @param file Catalog file.
+	 * @param writable Indicates the discounts applied over the views are written back into the file.
+	 * @return Opened catalog.
+	 * @throws IOException Indicates the file could not be read.
+	 * @throws IllegalArgumentException Indicates the file is not a catalog.
+	 */
+	public static ProductCatalog open(Path file, boolean writable) throws IOException, IllegalArgumentException
+	{
+		FileChannel channel = (writable ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE) : FileChannel.open(file, StandardOpenOption.READ));
+		try
+		{
+			ByteBuffer header = read(channel, 0, HEADER_SIZE);
+			if ((header.remaining() < HEADER_SIZE) || (header.getInt() != MAGIC))
+			{
+				throw new IllegalArgumentException("The file " + file + " is not a product catalog.");
+			}
+			if (header.getInt() != VERSION)
+			{
+				throw new IllegalArgumentException("The product catalog " + file + " has an unknown version.");
+			}
+			int size = (int)header.getLong();
+			long dictionaryPosition = header.getLong();
+			
+			ByteBuffer dictionaryBytes = read(channel, dictionaryPosition, (int)(channel.size() - dictionaryPosition));
+			String[] dictionary = new String[dictionaryBytes.getInt()];
+			for (int i = 0; i < dictionary.length; i++)
+			{
+				byte[] bytes = new byte[dictionaryBytes.getInt()];
+				dictionaryBytes.get(bytes);
+				dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			
+			MappedByteBuffer records = channel.map((writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY), HEADER_SIZE, (long)size * RECORD_SIZE);
+			
+			return new ProductCatalog(channel, records, dictionary, size);
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, position + buffer.position()) < 0)
+			{
+				break;
+			}
+		}
+		buffer.flip();
+		
+		return buffer;
+	}
+	
+	/**
+	 * Creates a view over the first product.
+	 * 
+	 * @return New view, which may be moved to any product.
+	 */
+	public ProductView newView()
+	{
+		return new ProductView(this);
+	}
+	
+	/**
+	 * Iterates over all products, each one through its own view, so the products returned may be held together, as
+	 * evaluators batching facts into a session or keeping handles to them do.
+	 * 
+	 * @return Iterator over the products.
+	 */
+	@Override
+	public Iterator<Product> iterator()
+	{
+		return new Iterator<Product>()
+		{
+			private int next = 0;
+			
+			@Override
+			public boolean hasNext()
+			{
+				return (next < size);
+			}
+			
+			@Override
+			public Product next()
+			{
+				if (next >= size)
+				{
+					throw new NoSuchElementException();
+				}
+				
+				return newView().moveTo(next++);
+			}
+			
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Products can not be removed from a catalog.");
+			}
+		};
+	}
+	
+	/**
+	 * Iterates over all products through a single view, moved to the next product on each step, allocating nothing
+	 * per product.<br>
+	 * Each view returned is only valid until the next one is requested, so the cursor only suits evaluators which
+	 * finish a fact before taking the next, like the {@link net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine}
+	 * or evaluating one fact per execution.
+	 * 
+	 * @return Products seen through a single moving view.
+	 */
+	public Iterable<ProductView> cursor()
+	{
+		return new Iterable<ProductView>()
+		{
+			@Override
+			public Iterator<ProductView> iterator()
+			{
+				final ProductView view = newView();
+				
+				return new Iterator<ProductView>()
+				{
+					private int next = 0;
+					
+					@Override
+					public boolean hasNext()
+					{
+						return (next < size);
+					}
+					
+					@Override
+					public ProductView next()
+					{
+						if (next >= size)
+						{
+							throw new NoSuchElementException();
+						}
+						
+						return view.moveTo(next++);
+					}
+					
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException("Products can not be removed from a catalog.");
+					}
+				};
+			}
+		};
+	}
+	
+	/**
+	 * Writes the changed prices to the storage device.
+	 */
+	public void force()
+	{
+		if (!records.isReadOnly())
+		{
+			records.force();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		force();
+		channel.close();
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	double price(int index)
+	{
+		return records.getDouble((index * RECORD_SIZE) + PRICE);
+	}
+	
+	void price(int index, double price)
+	{
+		records.putDouble((index * RECORD_SIZE) + PRICE, price);
+	}
+	
+	long dueDate(int index)
+	{
+		return records.getLong((index * RECORD_SIZE) + DUE_DATE);
+	}
+	
+	String name(int index)
+	{
+		int code = records.getInt((index * RECORD_SIZE) + NAME);
+		
+		return ((code < 0) ? null : dictionary[code]);
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | size = ");
+		me.append(size);
+		me.append(" | names = ");
+		me.append(dictionary.length);
+		me.append(" | writable = ");
+		me.append(!records.isReadOnly());
+		me.append("]");
+		
+		return me.toString();
+	}
+}
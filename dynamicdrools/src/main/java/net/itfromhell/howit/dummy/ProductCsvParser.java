@@ -0,0 +1,137 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dummy;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.streaming.FactParser;
+
+/**
+ * Parser of products written as CSV lines of name, price and due date (<i>dd/MM/yyyy</i>).<br>
+ * Fields may be enclosed in double quotes, doubling the quotes inside them. Blank lines are skipped.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ProductCsvParser implements FactParser<Product>
+{
+	private final char separator;
+	/**
+	 * Indicates the next line is a header to be skipped.
+	 */
+	private boolean header;
+	private final SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
+	
+	/**
+	 * Creates a parser of comma-separated lines with a header.
+	 */
+	public ProductCsvParser()
+	{
+		this(',', true);
+	}
+	
+	/**
+	 * Creates a parser.
+	 * 
+	 * @param separator Character separating the fields.
+	 * @param header Indicates the first line is a header to be skipped.
+	 */
+	public ProductCsvParser(char separator, boolean header)
+	{
+		this.separator = separator;
+		this.header = header;
+	}
+	
+	@Override
+	public Product parse(String line) throws IllegalArgumentException
+	{
+		if (header)
+		{
+			header = false;
+			return null;
+		}
+		if (line.trim().isEmpty())
+		{
+			return null;
+		}
+		
+		List<String> fields = split(line);
+		if (fields.size() != 3)
+		{
+			throw new IllegalArgumentException("Expected name, price and due date but found " + fields.size() + " fields in: " + line);
+		}
+		
+		try
+		{
+			String dueDate = fields.get(2).trim();
+			return new Product(fields.get(0), Double.parseDouble(fields.get(1).trim()), (dueDate.isEmpty() ? null : format.parse(dueDate)));
+		}
+		catch (NumberFormatException | ParseException e)
+		{
+			throw new IllegalArgumentException("Invalid product: " + line, e);
+		}
+	}
+	
+	/**
+	 * Splits a line in fields, removing the quotes.
+	 */
+	private List<String> split(String line)
+	{
+		List<String> fields = new ArrayList<String>(3);
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if (quoted)
+			{
+				if (c != '"')
+				{
+					field.append(c);
+				}
+				else if (((i + 1) < line.length()) && (line.charAt(i + 1) == '"'))
+				{
+					field.append(c);
+					i++;
+				}
+				else
+				{
+					quoted = false;
+				}
+			}
+			else if (c == '"')
+			{
+				quoted = true;
+			}
+			else if (c == separator)
+			{
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else
+			{
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		
+		return fields;
+	}
+}
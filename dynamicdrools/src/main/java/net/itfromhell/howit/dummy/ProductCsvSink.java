@@ -0,0 +1,80 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dummy;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.streaming.ResultSink;
+
+/**
+ * Sink writing evaluated products as CSV lines, in the format read by {@link ProductCsvParser}.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ProductCsvSink implements ResultSink<Product>
+{
+	private final BufferedWriter writer;
+	private final SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
+	
+	/**
+	 * Creates the file, replacing an existing one, and writes the header.
+	 * 
+	 * @param file File to be written.
+	 * @throws IOException Indicates the file could not be created.
+	 */
+	public ProductCsvSink(Path file) throws IOException
+	{
+		this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		writer.write("name,price,dueDate");
+		writer.newLine();
+	}
+	
+	@Override
+	public void write(List<Product> facts, int fired) throws IOException
+	{
+		for (Product product : facts)
+		{
+			if (product.getName() != null)
+			{
+				writer.write('"');
+				writer.write(product.getName().replace("\"", "\"\""));
+				writer.write('"');
+			}
+			writer.write(',');
+			writer.write(Double.toString(product.getPrice()));
+			writer.write(',');
+			if (product.getDueDate() != null)
+			{
+				writer.write(format.format(product.getDueDate()));
+			}
+			writer.newLine();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+}
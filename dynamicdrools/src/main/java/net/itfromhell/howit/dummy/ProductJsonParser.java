@@ -0,0 +1,290 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dummy;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import net.itfromhell.howit.dynamicdrools.streaming.FactParser;
+
+/**
+ * Parser of products written as JSON lines, one flat object per line such as
+ * <i>{"name": "Rice", "price": 1.10, "dueDate": "28/10/2017"}</i>.<br>
+ * The due date may also be given in milliseconds since the epoch. Unknown members are ignored, blank lines are
+ * skipped.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ProductJsonParser implements FactParser<Product>
+{
+	private final SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
+	
+	/**
+	 * Line being parsed.
+	 */
+	private String line;
+	/**
+	 * Position of the next character to be parsed.
+	 */
+	private int position;
+	
+	@Override
+	public Product parse(String line) throws IllegalArgumentException
+	{
+		if (line.trim().isEmpty())
+		{
+			return null;
+		}
+		
+		this.line = line;
+		this.position = 0;
+		String name = null;
+		double price = 0;
+		Date dueDate = null;
+		
+		expect('{');
+		if (peek() == '}')
+		{
+			position++;
+		}
+		else
+		{
+			do
+			{
+				String member = readString();
+				expect(':');
+				Object value = readValue();
+				if ("name".equals(member))
+				{
+					name = ((value == null) ? null : value.toString());
+				}
+				else if ("price".equals(member))
+				{
+					price = toNumber(value, member).doubleValue();
+				}
+				else if ("dueDate".equals(member))
+				{
+					dueDate = toDate(value);
+				}
+			}
+			while (next(',', '}') == ',');
+		}
+		
+		if (peek() != 0)
+		{
+			throw malformed("unexpected content after the object");
+		}
+		
+		return new Product(name, price, dueDate);
+	}
+	
+	private Number toNumber(Object value, String member)
+	{
+		if (!(value instanceof Number))
+		{
+			throw malformed(member + " is not a number");
+		}
+		
+		return (Number)value;
+	}
+	
+	private Date toDate(Object value)
+	{
+		if (value == null)
+		{
+			return null;
+		}
+		if (value instanceof Number)
+		{
+			return new Date(((Number)value).longValue());
+		}
+		
+		try
+		{
+			return format.parse(value.toString());
+		}
+		catch (ParseException e)
+		{
+			throw malformed("invalid due date " + value);
+		}
+	}
+	
+	/**
+	 * Reads a string, number, boolean or null value.
+	 */
+	private Object readValue()
+	{
+		char c = peek();
+		if (c == '"')
+		{
+			return readString();
+		}
+		if (line.startsWith("null", position))
+		{
+			position += 4;
+			return null;
+		}
+		if (line.startsWith("true", position))
+		{
+			position += 4;
+			return Boolean.TRUE;
+		}
+		if (line.startsWith("false", position))
+		{
+			position += 5;
+			return Boolean.FALSE;
+		}
+		
+		int start = position;
+		while ((position < line.length()) && (("+-.eE".indexOf(line.charAt(position)) >= 0) || Character.isDigit(line.charAt(position))))
+		{
+			position++;
+		}
+		if (start == position)
+		{
+			throw malformed("unsupported value");
+		}
+		
+		String number = line.substring(start, position);
+		try
+		{
+			if ((number.indexOf('.') < 0) && (number.indexOf('e') < 0) && (number.indexOf('E') < 0))
+			{
+				return Long.valueOf(number);
+			}
+			
+			return Double.valueOf(number);
+		}
+		catch (NumberFormatException e)
+		{
+			throw malformed("invalid number " + number);
+		}
+	}
+	
+	/**
+	 * Reads a string, resolving its escapes.
+	 */
+	private String readString()
+	{
+		expect('"');
+		StringBuilder value = new StringBuilder();
+		while (position < line.length())
+		{
+			char c = line.charAt(position++);
+			if (c == '"')
+			{
+				return value.toString();
+			}
+			if (c != '\\')
+			{
+				value.append(c);
+				continue;
+			}
+			if (position >= line.length())
+			{
+				break;
+			}
+			
+			char escaped = line.charAt(position++);
+			switch (escaped)
+			{
+				case 'b':
+					value.append('\b');
+					break;
+				case 'f':
+					value.append('\f');
+					break;
+				case 'n':
+					value.append('\n');
+					break;
+				case 'r':
+					value.append('\r');
+					break;
+				case 't':
+					value.append('\t');
+					break;
+				case 'u':
+					if ((position + 4) > line.length())
+					{
+						throw malformed("incomplete escape");
+					}
+					try
+					{
+						value.append((char)Integer.parseInt(line.substring(position, position + 4), 16));
+					}
+					catch (NumberFormatException e)
+					{
+						throw malformed("invalid escape");
+					}
+					position += 4;
+					break;
+				default:
+					value.append(escaped);
+					break;
+			}
+		}
+		
+		throw malformed("unterminated string");
+	}
+	
+	/**
+	 * Skips blanks and consumes the expected character.
+	 */
+	private void expect(char expected)
+	{
+		if (peek() != expected)
+		{
+			throw malformed("expected " + expected);
+		}
+		position++;
+	}
+	
+	/**
+	 * Skips blanks and consumes one of two expected characters.
+	 */
+	private char next(char one, char other)
+	{
+		char c = peek();
+		if ((c != one) && (c != other))
+		{
+			throw malformed("expected " + one + " or " + other);
+		}
+		position++;
+		
+		return c;
+	}
+	
+	/**
+	 * Skips blanks and returns the next character without consuming it, zero at the end of the line.
+	 */
+	private char peek()
+	{
+		while ((position < line.length()) && Character.isWhitespace(line.charAt(position)))
+		{
+			position++;
+		}
+		
+		return ((position < line.length()) ? line.charAt(position) : 0);
+	}
+	
+	private IllegalArgumentException malformed(String reason)
+	{
+		return new IllegalArgumentException("Invalid product, " + reason + " at position " + position + ": " + line);
+	}
+}
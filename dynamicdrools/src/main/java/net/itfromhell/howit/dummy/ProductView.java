@@ -0,0 +1,148 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dummy;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Flyweight product reading its values from a record of a {@link ProductCatalog}.<br>
+ * A view is moved from record to record instead of creating a product for each one, and reads its values on each
+ * call, so nothing is allocated per product. The due date returned is a single <b>Date</b> owned by the view, which
+ * is changed when the view moves: it must be copied to be kept. Discounts are written back into the record.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ProductView extends Product
+{
+	private final ProductCatalog catalog;
+	/**
+	 * Position of the current record.
+	 */
+	private int index;
+	/**
+	 * Due date returned by this view.
+	 */
+	private final Date dueDate = new Date(0L);
+	
+	ProductView(ProductCatalog catalog)
+	{
+		super(null, 0.0, (Date)null);
+		this.catalog = catalog;
+	}
+	
+	/**
+	 * Moves this view to another product.
+	 * 
+	 * @param index Position of the product in the catalog.
+	 * @return This view.
+	 * @throws IndexOutOfBoundsException Indicates a position out of the catalog.
+	 */
+	public ProductView moveTo(int index) throws IndexOutOfBoundsException
+	{
+		if ((index < 0) || (index >= catalog.size()))
+		{
+			throw new IndexOutOfBoundsException("The position " + index + " is out of a catalog of " + catalog.size() + " products.");
+		}
+		
+		this.index = index;
+		return this;
+	}
+	
+	/**
+	 * Apply the discount on product, writing the new price into the catalog.
+	 * 
+	 * @param percent Percent to apply.
+	 */
+	@Override
+	public void discount(double percent)
+	{
+		double price = catalog.price(index);
+		catalog.price(index, (price - ((percent * price) / 100)));
+	}
+	
+	/**
+	 * @return Product on the heap with the current values of the record.
+	 */
+	public Product toProduct()
+	{
+		Date date = getDueDate();
+		
+		return new Product(getName(), getPrice(), ((date == null) ? null : new Date(date.getTime())));
+	}
+	
+	@Override
+	public String toString()
+	{
+		Date date = getDueDate();
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | index = ");
+		me.append(index);
+		me.append(" | name = ");
+		me.append(getName());
+		me.append(" | price = ");
+		me.append(getPrice());
+		me.append(" | dueDate = ");
+		me.append(((date == null) ? null : (new SimpleDateFormat("dd/MM/yyyy")).format(date)));
+		me.append("]");
+		
+		return me.toString();
+	}
+	
+	@Override
+	public String getName()
+	{
+		return catalog.name(index);
+	}
+	
+	@Override
+	public double getPrice()
+	{
+		return catalog.price(index);
+	}
+	
+	/**
+	 * Changes the price of the product, writing it into the catalog.
+	 * 
+	 * @param price New price.
+	 */
+	@Override
+	public void setPrice(double price)
+	{
+		catalog.price(index, price);
+	}
+	
+	@Override
+	public Date getDueDate()
+	{
+		long time = catalog.dueDate(index);
+		if (time == ProductCatalog.NO_DATE)
+		{
+			return null;
+		}
+		
+		dueDate.setTime(time);
+		return dueDate;
+	}
+	
+	public int getIndex()
+	{
+		return index;
+	}
+}
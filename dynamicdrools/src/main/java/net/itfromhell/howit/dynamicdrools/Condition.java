@@ -18,11 +18,15 @@
  */
 package net.itfromhell.howit.dynamicdrools;
 
-import java.text.SimpleDateFormat;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import net.itfromhell.howit.dynamicdrools.compiled.ConditionCompiler;
 
 /**
  * Representation of condition to apply a business rule.
@@ -44,6 +48,10 @@ public class Condition
    * Operator used to compare the data.
    */
   private Operator operator;
+  /**
+   * Time zone in which a <b>LocalDate</b> value starts, null for the default time zone.
+   */
+  private ZoneId zone;
 
   /**
    * Type of available operator.
@@ -63,6 +71,8 @@ public class Condition
 				add(Short.class);
 				add(Long.class);
 				add(Date.class);
+				add(Instant.class);
+				add(LocalDate.class);
       }
     })),
     /**
@@ -78,6 +88,8 @@ public class Condition
 				add(Short.class);
 				add(Long.class);
 				add(Date.class);
+				add(Instant.class);
+				add(LocalDate.class);
       }
     })),
     /**
@@ -101,6 +113,8 @@ public class Condition
 				add(Short.class);
 				add(Long.class);
 				add(Date.class);
+				add(Instant.class);
+				add(LocalDate.class);
       }
     })),
     /**
@@ -115,6 +129,8 @@ public class Condition
 				add(Short.class);
 				add(Long.class);
 				add(Date.class);
+				add(Instant.class);
+				add(LocalDate.class);
       }
     })),
     /**
@@ -129,6 +145,8 @@ public class Condition
 				add(Short.class);
 				add(Long.class);
 				add(Date.class);
+				add(Instant.class);
+				add(LocalDate.class);
       }
     })),
     /**
@@ -143,6 +161,8 @@ public class Condition
 				add(Short.class);
 				add(Long.class);
 				add(Date.class);
+				add(Instant.class);
+				add(LocalDate.class);
       }
     }));
 		
@@ -255,12 +275,26 @@ public class Condition
 	}
 	
 	/**
-	 * Convert the condition to textual expression.
+	 * Convert the condition to textual expression, taking a property compared with a point in time as a <b>Date</b>.
 	 * 
 	 * @return The expression of this condition in dialect.
 	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
 	 */
 	public String buildExpression() throws IllegalArgumentException
+	{
+		return buildExpression(null);
+	}
+	
+	/**
+	 * Convert the condition to textual expression over a data object.<br>
+	 * The type of the property, read from the getter of the data object, decides how a point in time is compared.
+	 * 
+	 * @param type Class of the data object, null when unknown, taking a property compared with a point in time as a
+	 * <b>Date</b>.
+	 * @return The expression of this condition in dialect.
+	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
+	 */
+	public String buildExpression(Class<?> type) throws IllegalArgumentException
 	{
 		StringBuilder drl = new StringBuilder();
 		
@@ -272,9 +306,9 @@ public class Condition
 		{
 			drl.append(expressionForNumberValue());
 		}
-		else if (value instanceof Date)
+		else if (isTemporal(value))
 		{
-			drl.append(expressionForDateValue());
+			drl.append(expressionForDateValue(propertyType(type)));
 		}
 		else
 		{
@@ -298,7 +332,8 @@ public class Condition
 		{
 			if (operator.equals(Condition.Operator.CONTAINS))
 			{
-				drl.append(property).append(".toUpperCase().contains(\"").append(((String)value).toUpperCase()).append("\")");
+				//The same fold as the compiled rules, not the locale dependent String.toUpperCase()
+				drl.append(Condition.class.getName()).append(".containsFolded(").append(property).append(", \"").append(foldCase((String)value)).append("\")");
 			}
 			else
 			{
@@ -313,6 +348,60 @@ public class Condition
 		return drl.toString();
 	}
 	
+	/**
+	 * Folds a text to the case compared by <i>CONTAINS</i>.<br>
+	 * Each character is taken by its upper case on its own, as <b>Character.toUpperCase(char)</b> gives it, so the fold
+	 * never depends on the default locale and never changes the length of the text: "ß" stays "ß" instead of becoming
+	 * "SS", and both the dotted and the dotless "i" become "I" in any locale. Every evaluation of <i>CONTAINS</i>, in
+	 * Drools or compiled, folds this way.
+	 * 
+	 * @param text Text to be folded.
+	 * @return Folded text.
+	 */
+	public static String foldCase(String text)
+	{
+		char[] chars = new char[text.length()];
+		for (int i = 0; i < chars.length; i++)
+		{
+			chars[i] = Character.toUpperCase(text.charAt(i));
+		}
+		
+		return new String(chars);
+	}
+	
+	/**
+	 * Tells whether a text contains a keyword once folded by {@link #foldCase(String)}, without folding the whole text.
+	 * <br>
+	 * Called by the expressions of <i>CONTAINS</i> conditions.
+	 * 
+	 * @param text Text to be searched, null never containing anything.
+	 * @param keyword Keyword already folded.
+	 * @return True when the keyword is found in the text.
+	 */
+	public static boolean containsFolded(CharSequence text, String keyword)
+	{
+		if (text == null)
+		{
+			return false;
+		}
+		
+		int last = text.length() - keyword.length();
+		for (int start = 0; start <= last; start++)
+		{
+			int i = 0;
+			while ((i < keyword.length()) && (Character.toUpperCase(text.charAt(start + i)) == keyword.charAt(i)))
+			{
+				i++;
+			}
+			if (i == keyword.length())
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
 	/**
 	 * Convert the condition for <b>Integer</b>, <b>Double</b> or <b>Float</b> value in expression.
 	 * 
@@ -337,18 +426,34 @@ public class Condition
 	}
 	
 	/**
-	 * Convert the condition for <b>Date</b> value in expression.
+	 * Convert the condition for <b>Date</b>, <b>Instant</b> or <b>LocalDate</b> value in expression.<br>
+	 * The value is rendered as a constant compared with the time of the property, so nothing is parsed when the rule
+	 * is evaluated: milliseconds for a <b>Date</b> or <b>Instant</b> property, days since the epoch for a
+	 * <b>LocalDate</b> property, see {@link #getValueAsTime(Class)}. A property without a date only satisfies
+	 * <i>NOT_EQUAL_TO</i>, as when dates were compared as objects.
 	 * 
+	 * @param propertyType Class of the property, null to take it as a <b>Date</b>.
 	 * @return Expression in dialect.
 	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
 	 */
-	private String expressionForDateValue() throws IllegalArgumentException
+	private String expressionForDateValue(Class<?> propertyType) throws IllegalArgumentException
 	{
 		StringBuilder drl = new StringBuilder();
 		
-		if (operator.isComparable(Date.class))
+		if (operator.isComparable((value instanceof Date) ? Date.class : value.getClass()))
 		{
-			drl.append(property).append(" ").append(operator.getOperation()).append(" (new SimpleDateFormat(\"dd/MM/yyyy HH:mm:ss\")).parse(\"" + (new SimpleDateFormat("dd/MM/yyyy HH:mm:ss")).format((Date)value) + "\")");
+			long time = getValueAsTime(propertyType);
+			String accessor = (Instant.class.equals(propertyType) ? ".toEpochMilli()" : (LocalDate.class.equals(propertyType) ? ".toEpochDay()" : ".getTime()"));
+			if (operator.equals(Condition.Operator.NOT_EQUAL_TO))
+			{
+				drl.append("(").append(property).append(" == null || ");
+				drl.append(property).append(accessor).append(" != ").append(time).append("L)");
+			}
+			else
+			{
+				drl.append(property).append(" != null && ");
+				drl.append(property).append(accessor).append(" ").append(operator.getOperation()).append(" ").append(time).append("L");
+			}
 		}
 		else
 		{
@@ -358,6 +463,138 @@ public class Condition
 		return drl.toString();
 	}
 	
+	/**
+	 * Indicates when the value is a point in time: a <b>Date</b>, an <b>Instant</b> or a <b>LocalDate</b>.
+	 * 
+	 * @param value Value to verify.
+	 * @return True for a point in time.
+	 */
+	public static boolean isTemporal(Object value)
+	{
+		return (value instanceof Date) || (value instanceof Instant) || (value instanceof LocalDate);
+	}
+	
+	/**
+	 * Converts the value to milliseconds since the epoch.<br>
+	 * A <b>LocalDate</b> is taken at the start of the day in the time zone of this condition.
+	 * 
+	 * @return Time of the value in milliseconds.
+	 * @throws IllegalStateException Indicates the value is not a point in time.
+	 */
+	public long getValueAsTime() throws IllegalStateException
+	{
+		if (value instanceof Date)
+		{
+			return ((Date)value).getTime();
+		}
+		else if (value instanceof Instant)
+		{
+			return ((Instant)value).toEpochMilli();
+		}
+		else if (value instanceof LocalDate)
+		{
+			return ((LocalDate)value).atStartOfDay((zone == null) ? ZoneId.systemDefault() : zone).toInstant().toEpochMilli();
+		}
+		
+		throw new IllegalStateException("The value " + value + " is not a point in time.");
+	}
+	
+	/**
+	 * Converts the value to the time compared with a property of a type.<br>
+	 * <b>Date</b> and <b>Instant</b> properties are compared in milliseconds, as given by {@link #getValueAsTime()}.
+	 * <b>LocalDate</b> properties are compared in days since the epoch and only with <b>LocalDate</b> values, since a
+	 * day has no single time without a time zone.
+	 * 
+	 * @param propertyType Class of the property, null to take it as a <b>Date</b>.
+	 * @return Time of the value, in the unit of {@link #timeOf(Object)} for the property.
+	 * @throws IllegalStateException Indicates the value is not a point in time.
+	 * @throws IllegalArgumentException Indicates the property can not be compared with the value.
+	 */
+	public long getValueAsTime(Class<?> propertyType) throws IllegalStateException, IllegalArgumentException
+	{
+		if ((propertyType == null) || Date.class.isAssignableFrom(propertyType) || Instant.class.equals(propertyType))
+		{
+			return getValueAsTime();
+		}
+		else if (LocalDate.class.equals(propertyType))
+		{
+			if (!(value instanceof LocalDate))
+			{
+				throw new IllegalArgumentException("The property " + property + " is a LocalDate, it can only be compared with LocalDate values.");
+			}
+			
+			return ((LocalDate)value).toEpochDay();
+		}
+		
+		throw new IllegalArgumentException("The property " + property + " is a " + propertyType.getSimpleName() + ", it can not be compared with a point in time.");
+	}
+	
+	/**
+	 * Converts a point in time read from a property to the time compared by the conditions.
+	 * 
+	 * @param value <b>Date</b> or <b>Instant</b>, converted to milliseconds since the epoch, or <b>LocalDate</b>,
+	 * converted to days since the epoch.
+	 * @return Time of the value.
+	 * @throws IllegalArgumentException Indicates the value is not a point in time.
+	 */
+	public static long timeOf(Object value) throws IllegalArgumentException
+	{
+		if (value instanceof Date)
+		{
+			return ((Date)value).getTime();
+		}
+		else if (value instanceof Instant)
+		{
+			return ((Instant)value).toEpochMilli();
+		}
+		else if (value instanceof LocalDate)
+		{
+			return ((LocalDate)value).toEpochDay();
+		}
+		
+		throw new IllegalArgumentException("The value " + value + " is not a point in time.");
+	}
+	
+	/**
+	 * Finds the class of the property in a data object.
+	 * 
+	 * @param type Class of the data object, may be null.
+	 * @return Class returned by the getter of the property, or null when unknown.
+	 */
+	public Class<?> propertyType(Class<?> type)
+	{
+		if ((type == null) || (property == null) || (property.indexOf('.') >= 0))
+		{
+			return null;
+		}
+		
+		Method getter = ConditionCompiler.findGetter(type, property);
+		
+		return ((getter == null) ? null : getter.getReturnType());
+	}
+	
+	/**
+	 * Converts the numeric value to the number written in the expression.<br>
+	 * Drools reads the constant from its text, so a <b>Float</b> is taken by its text instead of its binary value:
+	 * 3.3f is 3.3 and not 3.299999952316284.
+	 * 
+	 * @return Value of the condition as a <b>double</b>.
+	 * @throws IllegalStateException Indicates the value is not a number.
+	 */
+	public double getValueAsDouble() throws IllegalStateException
+	{
+		if (value instanceof Float)
+		{
+			return Double.parseDouble(value.toString());
+		}
+		else if (value instanceof Number)
+		{
+			return ((Number)value).doubleValue();
+		}
+		
+		throw new IllegalStateException("The value " + value + " is not a number.");
+	}
+	
   public String getProperty()
   {
     return property;
@@ -387,4 +624,14 @@ public class Condition
   {
     this.operator = operator;
   }
+  
+  public ZoneId getZone()
+  {
+    return zone;
+  }
+  
+  public void setZone(ZoneId zone)
+  {
+    this.zone = zone;
+  }
 }
\ No newline at end of file
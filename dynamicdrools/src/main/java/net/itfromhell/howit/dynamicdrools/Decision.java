@@ -0,0 +1,58 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools;
+
+/**
+ * Marker of a fact which already fired its rule when only one rule fires for each fact.<br>
+ * Rules of exclusive templates only match facts without a decision, and insert one for the fact when they fire, so
+ * the other rules matched by the fact are cancelled without firing. In a stateful session the decision outlives the
+ * evaluation: {@link net.itfromhell.howit.dynamicdrools.runtime.StatefulEvaluator} deletes it when its fact is updated
+ * or retracted, other users of a stateful session must do the same.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see EvaluationMode
+ */
+public class Decision
+{
+	/**
+	 * Fact decided.
+	 */
+	private final Object fact;
+	
+	public Decision(Object fact)
+	{
+		this.fact = fact;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | fact = ");
+		me.append(fact);
+		me.append("]");
+		
+		return me.toString();
+	}
+	
+	public Object getFact()
+	{
+		return fact;
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ways of firing the rules matched by a fact.<br>
+ * The mode decides the salience given to each rule. Only the template of exclusive modes keeps a fact from firing a
+ * second rule, inserting a {@link Decision} once its first rule fires, and the evaluation of the fact stops there.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public enum EvaluationMode
+{
+	/**
+	 * Every matched rule fires, applying all actions over the fact.
+	 */
+	ALL(false),
+	/**
+	 * Only the matched rule of highest priority fires, ties are broken by the order of the rules.
+	 */
+	FIRST(true),
+	/**
+	 * Only the matched rule of highest score fires, ties are broken by the order of the rules.
+	 */
+	BEST(true);
+	
+	/**
+	 * Indicates only one rule fires for each fact.
+	 */
+	private final boolean exclusive;
+	
+	private EvaluationMode(boolean exclusive)
+	{
+		this.exclusive = exclusive;
+	}
+	
+	/**
+	 * Calculates the salience of each rule, the highest fires first.<br>
+	 * Saliences are the priorities of the rules, except when the best match fires, when they are the rank of the scores
+	 * of the rules among the distinct scores of the rule set, since Drools only accepts integer saliences.
+	 * 
+	 * @param rules Rules of the rule set.
+	 * @return Salience of each rule, in the same order of the rules.
+	 */
+	public int[] saliences(List<Rule> rules)
+	{
+		int[] saliences = new int[rules.size()];
+		if (this != BEST)
+		{
+			for (int i = 0; i < saliences.length; i++)
+			{
+				saliences[i] = rules.get(i).getPriority();
+			}
+			
+			return saliences;
+		}
+		
+		double[] scores = new double[rules.size()];
+		for (int i = 0; i < scores.length; i++)
+		{
+			scores[i] = rules.get(i).getScore();
+		}
+		double[] distinct = scores.clone();
+		Arrays.sort(distinct);
+		int count = 0;
+		for (int i = 0; i < distinct.length; i++)
+		{
+			if ((count == 0) || (Double.compare(distinct[count - 1], distinct[i]) != 0))
+			{
+				distinct[count++] = distinct[i];
+			}
+		}
+		for (int i = 0; i < saliences.length; i++)
+		{
+			saliences[i] = Arrays.binarySearch(distinct, 0, count, scores[i]);
+		}
+		
+		return saliences;
+	}
+	
+	public boolean isExclusive()
+	{
+		return exclusive;
+	}
+}
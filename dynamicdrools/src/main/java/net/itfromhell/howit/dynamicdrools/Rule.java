@@ -47,6 +47,14 @@ public class Rule
    * Action to be executed.
    */
   private String action;
+  /**
+   * Priority of this rule when only the first match fires, the highest fires first.
+   */
+  private int priority;
+  /**
+   * Score of this rule when only the best match fires, the highest is the best.
+   */
+  private double score;
   
   /**
    * Creates a new rule.
@@ -79,7 +87,11 @@ public class Rule
 		/**
 		 * Action to take.
 		 */
-		ACTION("action");
+		ACTION("action"),
+		/**
+		 * Order of firing, the highest fires first.
+		 */
+		SALIENCE("salience");
 		
 		/**
 		 * Name used in template to assign each attirbute.
@@ -110,6 +122,10 @@ public class Rule
     me.append(((conditions == null) ? "null" : conditions.size()));
     me.append(" | action = ");
     me.append(action);
+    me.append(" | priority = ");
+    me.append(priority);
+    me.append(" | score = ");
+    me.append(score);
     me.append("]");
     
     return me.toString();
@@ -117,7 +133,8 @@ public class Rule
 	
 	/**
 	 * Converts these conditionals to Drools Rule Language (DRL) format.<br>
-	 * The formatted conditional is in dialect Java (<i>dialect "java"</i>).
+	 * The formatted conditional is in dialect Java (<i>dialect "java"</i>). Conditions over points in time follow the
+	 * type of their property in the data object, see {@link Condition#buildExpression(Class)}.
    * 
    * @return Rule's conditional expression.
    * @throws IllegalStateException Indicates none conditional declared.
@@ -131,12 +148,13 @@ public class Rule
     }
     
     StringBuilder drl = new StringBuilder();
+		Class<?> type = dataType();
 		//For each condition of this rule, we create its textual representation
     for (int i = 0; i < conditions.size(); i++)
     {
       Condition condition = conditions.get(i);
 			drl.append("(");
-			drl.append(condition.buildExpression());
+			drl.append(condition.buildExpression(type));
 			drl.append(")");
       if ((i + 1) < conditions.size())
       {
@@ -148,7 +166,31 @@ public class Rule
   }
 	
 	/**
-	 * Returns the created rule as a map of its properties to be compiled with template.
+	 * Loads the class of the data object.
+	 * 
+	 * @return Class of the data object, or null when it is not found.
+	 */
+	private Class<?> dataType()
+	{
+		if (object == null)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return Class.forName(object, false, Thread.currentThread().getContextClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			//Left for Drools to report
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the created rule as a map of its properties to be compiled with template.<br>
+	 * The salience is the priority of the rule, see {@link EvaluationMode#saliences(List)} for the other modes.
 	 * 
 	 * @return Map of rule's properties.
 	 * @throws IllegalStateException Indicate a non valid rule.
@@ -165,6 +207,7 @@ public class Rule
     attributes.put(Rule.Attribute.DATA_OBJECT.toString(), object);
     attributes.put(Rule.Attribute.CONDITIONAL.toString(), conditionAsDRL());
     attributes.put(Rule.Attribute.ACTION.toString(), action);
+    attributes.put(Rule.Attribute.SALIENCE.toString(), priority);
 		
 		return attributes;
 	}
@@ -237,4 +280,24 @@ public class Rule
   {
     this.action = action;
   }
+	
+	public int getPriority()
+	{
+		return priority;
+	}
+	
+	public void setPriority(int priority)
+	{
+		this.priority = priority;
+	}
+	
+	public double getScore()
+	{
+		return score;
+	}
+	
+	public void setScore(double score)
+	{
+		this.score = score;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import org.drools.core.common.DroolsObjectInputStream;
+import org.drools.core.common.DroolsObjectOutputStream;
+import org.drools.core.util.Drools;
+import org.kie.api.KieBase;
+
+/**
+ * Persistent cache of compiled rule bases in a local directory.<br>
+ * Each rule base is serialized to a file named after the hash of its rule set, as calculated by
+ * {@link KieBaseCache#hash(byte[], java.util.List)}, and the Drools version. A later process loads the serialized
+ * rule base instead of compiling it again. Changing the rules or the template changes the hash, so a stale file is
+ * never found, while a file which can not be read anymore is deleted and compiled again.<br>
+ * The classes of the data objects are not part of the hash, so the directory must be cleaned when they change.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see KieBaseCache
+ */
+public class DiskKieBaseCache
+{
+	/**
+	 * Extension of the files keeping rule bases.
+	 */
+	private static final String EXTENSION = ".kbase";
+	
+	/**
+	 * Directory keeping the files.
+	 */
+	private final Path directory;
+	/**
+	 * Number of rule bases loaded from disk.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	/**
+	 * Number of lookups without a file.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+	
+	/**
+	 * Creates a cache over a directory, creating it when necessary.
+	 * 
+	 * @param directory Directory keeping the files.
+	 * @throws IOException Indicates the directory could not be created.
+	 */
+	public DiskKieBaseCache(Path directory) throws IOException
+	{
+		this.directory = Files.createDirectories(directory);
+	}
+	
+	/**
+	 * Loads the rule base related to the key.
+	 * 
+	 * @param key Key of the rule set.
+	 * @return Rule base ready to use, or null when it is not on disk.
+	 */
+	public KieBase load(String key)
+	{
+		Path file = fileOf(key);
+		if (!Files.isRegularFile(file))
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		
+		try
+		{
+			InputStream input = new BufferedInputStream(Files.newInputStream(file));
+			try
+			{
+				DroolsObjectInputStream objects = new DroolsObjectInputStream(input, Thread.currentThread().getContextClassLoader());
+				KieBase base = (KieBase)objects.readObject();
+				hits.incrementAndGet();
+				
+				return base;
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (Exception e)
+		{
+			//A truncated or incompatible file is discarded, so the rule base is compiled and stored again
+			misses.incrementAndGet();
+			try
+			{
+				Files.deleteIfExists(file);
+			}
+			catch (IOException ignored)
+			{
+				//It will be replaced by the next store anyway
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores a compiled rule base.<br>
+	 * The file is written aside and then moved into place, so a concurrent process never reads a partial file.
+	 * 
+	 * @param key Key of the rule set.
+	 * @param base Compiled rule base.
+	 * @throws IOException Indicates the rule base could not be written.
+	 */
+	public void store(String key, KieBase base) throws IOException
+	{
+		Path temporary = Files.createTempFile(directory, key, ".tmp");
+		try
+		{
+			OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary));
+			try
+			{
+				DroolsObjectOutputStream objects = new DroolsObjectOutputStream(output);
+				objects.writeObject(base);
+				objects.flush();
+			}
+			finally
+			{
+				output.close();
+			}
+			
+			Files.move(temporary, fileOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+	
+	/**
+	 * Removes the rule base related to the key.
+	 * 
+	 * @param key Key of the rule set.
+	 * @throws IOException Indicates the file could not be removed.
+	 */
+	public void remove(String key) throws IOException
+	{
+		Files.deleteIfExists(fileOf(key));
+	}
+	
+	private Path fileOf(String key)
+	{
+		return directory.resolve(key + "-" + Drools.getFullVersion() + EXTENSION);
+	}
+	
+	public Path getDirectory()
+	{
+		return directory;
+	}
+	
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	public long getMisses()
+	{
+		return misses.get();
+	}
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.kie.api.KieBase;
+
+/**
+ * Content-addressed cache of compiled rule bases.<br>
+ * Each entry is keyed by a stable hash of the template and of the rendered rule parameters, so the same rule set
+ * always resolves to the same compiled <b>KieBase</b>. The cache is bounded both by number of entries and by the sum
+ * of rules held by all entries, evicting the least recently used rule base first.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class KieBaseCache
+{
+	/**
+	 * Default maximum number of rule bases kept.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 16;
+	/**
+	 * Default maximum number of rules kept across all rule bases.
+	 */
+	public static final long DEFAULT_MAX_RULES = 200000;
+
+	/**
+	 * Maximum number of rule bases kept.
+	 */
+	private final int maxEntries;
+	/**
+	 * Maximum number of rules kept across all rule bases, used as an estimate of the memory held.
+	 */
+	private final long maxRules;
+	/**
+	 * Cached rule bases in access order, the eldest is the least recently used.
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	/**
+	 * Number of rules currently held.
+	 */
+	private long rules;
+	/**
+	 * Number of lookups answered by the cache.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	/**
+	 * Number of lookups which required a compilation.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+	/**
+	 * Number of rule bases evicted to respect the bounds.
+	 */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a cache using the default bounds.
+	 */
+	public KieBaseCache()
+	{
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_RULES);
+	}
+
+	/**
+	 * Creates a cache with specific bounds.
+	 * 
+	 * @param maxEntries Maximum number of rule bases kept.
+	 * @param maxRules Maximum number of rules kept across all rule bases.
+	 */
+	public KieBaseCache(int maxEntries, long maxRules)
+	{
+		if ((maxEntries < 1) || (maxRules < 1))
+		{
+			throw new IllegalArgumentException("The cache bounds must be positive.");
+		}
+
+		this.maxEntries = maxEntries;
+		this.maxRules = maxRules;
+	}
+
+	/**
+	 * Cached rule base and its weight.
+	 */
+	private static class Entry
+	{
+		private final KieBase base;
+		private final int rules;
+
+		private Entry(KieBase base, int rules)
+		{
+			this.base = base;
+			this.rules = rules;
+		}
+	}
+
+	/**
+	 * Calculates the stable key identifying a rule set.<br>
+	 * The parameters of each rule are hashed ordered by name, so the result does not depend on the map implementation.
+	 * 
+	 * @param template Content of the template file.
+	 * @param rulesAsParameters List of maps representing each rule as a set of parameters.
+	 * @return Hexadecimal SHA-256 hash of template and rules.
+	 */
+	public static String hash(byte[] template, List<Map<String, Object>> rulesAsParameters)
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+
+		update(digest, template);
+		for (Map<String, Object> parameters : rulesAsParameters)
+		{
+			List<String> names = new ArrayList<String>(parameters.keySet());
+			Collections.sort(names);
+			update(digest, Integer.toString(names.size()).getBytes(StandardCharsets.UTF_8));
+			for (String name : names)
+			{
+				update(digest, name.getBytes(StandardCharsets.UTF_8));
+				update(digest, String.valueOf(parameters.get(name)).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return hex.toString();
+	}
+
+	/**
+	 * Feeds the digest with a length-prefixed block, avoiding ambiguity between adjacent values.
+	 */
+	private static void update(MessageDigest digest, byte[] block)
+	{
+		int length = block.length;
+		digest.update(new byte[] {(byte)(length >>> 24), (byte)(length >>> 16), (byte)(length >>> 8), (byte)length});
+		digest.update(block);
+	}
+
+	/**
+	 * Gets the rule base related to the key, marking it as the most recently used.
+	 * 
+	 * @param key Key of the rule set.
+	 * @return Compiled rule base or null when not cached.
+	 */
+	public synchronized KieBase get(String key)
+	{
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return entry.base;
+	}
+
+	/**
+	 * Keeps a compiled rule base, evicting the least recently used ones when the bounds are exceeded.<br>
+	 * A rule base bigger than the whole cache is not kept.
+	 * 
+	 * @param key Key of the rule set.
+	 * @param base Compiled rule base.
+	 * @param ruleCount Number of rules compiled in the rule base.
+	 */
+	public synchronized void put(String key, KieBase base, int ruleCount)
+	{
+		if (ruleCount > maxRules)
+		{
+			return;
+		}
+
+		Entry previous = entries.put(key, new Entry(base, ruleCount));
+		if (previous != null)
+		{
+			rules -= previous.rules;
+		}
+		rules += ruleCount;
+
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries) || (rules > maxRules))
+		{
+			Entry evicted = eldest.next().getValue();
+			eldest.remove();
+			rules -= evicted.rules;
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Discards all cached rule bases.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		rules = 0;
+	}
+
+	/**
+	 * @return Number of rule bases currently cached.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | entries = ");
+		me.append(entries.size());
+		me.append(" | rules = ");
+		me.append(rules);
+		me.append(" | hits = ");
+		me.append(hits.get());
+		me.append(" | misses = ");
+		me.append(misses.get());
+		me.append(" | evictions = ");
+		me.append(evictions.get());
+		me.append("]");
+
+		return me.toString();
+	}
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the outcomes of evaluating facts.<br>
+ * Each entry is keyed by the version of the rule set and by a fingerprint of the fact, made of the values of the
+ * properties read by the rules, so a fact unchanged since its last evaluation by the same rule set resolves to the
+ * same outcome. The least recently used outcome is evicted first.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class OutcomeCache
+{
+	/**
+	 * Default maximum number of outcomes kept.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 100000;
+	
+	/**
+	 * Maximum number of outcomes kept.
+	 */
+	private final int maxEntries;
+	/**
+	 * Cached outcomes in access order, the eldest is the least recently used.
+	 */
+	private final LinkedHashMap<Key, Outcome> entries = new LinkedHashMap<Key, Outcome>(16, 0.75f, true);
+	/**
+	 * Number of lookups answered by the cache.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	/**
+	 * Number of lookups which required an evaluation.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+	/**
+	 * Number of outcomes evicted to respect the bound.
+	 */
+	private final AtomicLong evictions = new AtomicLong();
+	/**
+	 * Evaluation time avoided by the hits, in nanoseconds.
+	 */
+	private final AtomicLong savedNanos = new AtomicLong();
+	
+	/**
+	 * Creates a cache using the default bound.
+	 */
+	public OutcomeCache()
+	{
+		this(DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * Creates a cache with a specific bound.
+	 * 
+	 * @param maxEntries Maximum number of outcomes kept.
+	 */
+	public OutcomeCache(int maxEntries)
+	{
+		if (maxEntries < 1)
+		{
+			throw new IllegalArgumentException("The cache bound must be positive.");
+		}
+		
+		this.maxEntries = maxEntries;
+	}
+	
+	/**
+	 * Result of evaluating a fact: the arguments of the actions fired, in the order they were fired.
+	 */
+	public static final class Outcome
+	{
+		private final double[] arguments;
+		/**
+		 * Time spent evaluating the fact, in nanoseconds.
+		 */
+		private final long nanos;
+		
+		public Outcome(double[] arguments, long nanos)
+		{
+			this.arguments = arguments.clone();
+			this.nanos = nanos;
+		}
+		
+		/**
+		 * @return Number of rules fired.
+		 */
+		public int getFired()
+		{
+			return arguments.length;
+		}
+		
+		/**
+		 * @param position Position of the action, in the order it was fired.
+		 * @return Argument of the action.
+		 */
+		public double getArgument(int position)
+		{
+			return arguments[position];
+		}
+		
+		public long getNanos()
+		{
+			return nanos;
+		}
+	}
+	
+	/**
+	 * Identification of a fact evaluated by a rule set.
+	 */
+	private static final class Key
+	{
+		private final String version;
+		private final Class<?> type;
+		private final Object[] fingerprint;
+		private final int hash;
+		
+		private Key(String version, Class<?> type, Object[] fingerprint)
+		{
+			this.version = version;
+			this.type = type;
+			this.fingerprint = fingerprint;
+			this.hash = (((31 * version.hashCode()) + type.hashCode()) * 31) + Arrays.hashCode(fingerprint);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof Key))
+			{
+				return false;
+			}
+			
+			Key key = (Key)other;
+			return (hash == key.hash) && version.equals(key.version) && type.equals(key.type) && Arrays.equals(fingerprint, key.fingerprint);
+		}
+	}
+	
+	/**
+	 * Gets the outcome of a fact, marking it as the most recently used.
+	 * 
+	 * @param version Version of the rule set.
+	 * @param type Class of the fact.
+	 * @param fingerprint Values of the properties of the fact read by the rules, which must not be changed afterwards.
+	 * @return Outcome of the fact, or null when not cached.
+	 */
+	public synchronized Outcome get(String version, Class<?> type, Object[] fingerprint)
+	{
+		Outcome outcome = entries.get(new Key(version, type, fingerprint));
+		if (outcome == null)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		
+		hits.incrementAndGet();
+		return outcome;
+	}
+	
+	/**
+	 * Keeps the outcome of a fact, evicting the least recently used ones when the bound is exceeded.
+	 * 
+	 * @param version Version of the rule set.
+	 * @param type Class of the fact.
+	 * @param fingerprint Values of the properties of the fact read by the rules, which must not be changed afterwards.
+	 * @param outcome Outcome of the evaluation.
+	 */
+	public synchronized void put(String version, Class<?> type, Object[] fingerprint, Outcome outcome)
+	{
+		entries.put(new Key(version, type, fingerprint), outcome);
+		
+		Iterator<Map.Entry<Key, Outcome>> eldest = entries.entrySet().iterator();
+		while (entries.size() > maxEntries)
+		{
+			eldest.next();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Accounts the evaluation time avoided by replaying an outcome.
+	 * 
+	 * @param nanos Time saved, in nanoseconds.
+	 */
+	public void recordSaved(long nanos)
+	{
+		savedNanos.addAndGet(nanos);
+	}
+	
+	/**
+	 * Discards all cached outcomes.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+	
+	/**
+	 * @return Number of outcomes currently cached.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+	
+	/**
+	 * @return Ratio of the lookups answered by the cache, zero before any lookup.
+	 */
+	public double getHitRatio()
+	{
+		long hit = hits.get();
+		long total = hit + misses.get();
+		
+		return ((total == 0) ? 0.0 : ((double)hit / total));
+	}
+	
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	public long getMisses()
+	{
+		return misses.get();
+	}
+	
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+	
+	public long getSavedNanos()
+	{
+		return savedNanos.get();
+	}
+	
+	@Override
+	public synchronized String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | entries = ");
+		me.append(entries.size());
+		me.append(" | hits = ");
+		me.append(hits.get());
+		me.append(" | misses = ");
+		me.append(misses.get());
+		me.append(" | evictions = ");
+		me.append(evictions.get());
+		me.append(" | savedNanos = ");
+		me.append(savedNanos.get());
+		me.append("]");
+		
+		return me.toString();
+	}
+}
@@ -0,0 +1,444 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.columnar;
+
+import java.util.Arrays;
+import net.itfromhell.howit.dynamicdrools.Condition;
+
+/**
+ * Kernels evaluating a condition over a whole column into a bitset.<br>
+ * A bitset holds one bit per fact of the batch in words of 64 facts, the bit <i>b</i> of the word <i>w</i> being the
+ * fact <i>64 * w + b</i>. Every kernel is a counted loop over primitive arrays without calls in its body, one per
+ * operator, so the JIT turns each comparison into a flag set on compare rather than a branch mispredicted on mixed
+ * data. The bits of a word are accumulated one after another, which keeps the loops scalar: comparing into a mask
+ * first and packing it in a second pass measured slower. Bits past the size of the batch are always clear.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see ColumnarRuleSet
+ */
+public final class ColumnKernels
+{
+	private ColumnKernels()
+	{
+	}
+	
+	/**
+	 * @param size Number of facts.
+	 * @return Number of words of a bitset holding the facts.
+	 */
+	public static int words(int size)
+	{
+		return (size + 63) >>> 6;
+	}
+	
+	/**
+	 * Sets the bits of all facts.
+	 * 
+	 * @param bits Bitset to be filled.
+	 * @param size Number of facts.
+	 */
+	public static void all(long[] bits, int size)
+	{
+		Arrays.fill(bits, 0, size >>> 6, -1L);
+		if ((size & 63) != 0)
+		{
+			bits[size >>> 6] = (1L << (size & 63)) - 1L;
+		}
+	}
+	
+	/**
+	 * Keeps only the bits set in both bitsets.
+	 * 
+	 * @param target Bitset receiving the intersection.
+	 * @param bits Bitset intersected.
+	 * @param words Number of words of the bitsets.
+	 * @return True when any bit is left in the target.
+	 */
+	public static boolean and(long[] target, long[] bits, int words)
+	{
+		long any = 0L;
+		for (int w = 0; w < words; w++)
+		{
+			target[w] &= bits[w];
+			any |= target[w];
+		}
+		
+		return (any != 0L);
+	}
+	
+	/**
+	 * Adds the facts whose bits are clear in another bitset.
+	 * 
+	 * @param target Bitset receiving the union.
+	 * @param bits Bitset whose clear bits are added.
+	 * @param size Number of facts.
+	 */
+	public static void orNot(long[] target, long[] bits, int size)
+	{
+		int words = words(size);
+		for (int w = 0; w < words; w++)
+		{
+			target[w] |= ~bits[w];
+		}
+		if ((size & 63) != 0)
+		{
+			target[words - 1] &= (1L << (size & 63)) - 1L;
+		}
+	}
+	
+	/**
+	 * Counts the bits set.
+	 * 
+	 * @param bits Bitset to be counted.
+	 * @param words Number of words of the bitset.
+	 * @return Number of facts in the bitset.
+	 */
+	public static int cardinality(long[] bits, int words)
+	{
+		int count = 0;
+		for (int w = 0; w < words; w++)
+		{
+			count += Long.bitCount(bits[w]);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Compares a column of numbers with a value.
+	 * 
+	 * @param values Column of the property.
+	 * @param size Number of facts.
+	 * @param operator Operator used to compare, any but <i>CONTAINS</i>.
+	 * @param value Value compared.
+	 * @param bits Bitset receiving the facts satisfying the comparison.
+	 */
+	public static void compare(double[] values, int size, Condition.Operator operator, double value, long[] bits)
+	{
+		switch (operator)
+		{
+			case EQUAL_TO:
+				equalTo(values, size, value, bits);
+				break;
+			case NOT_EQUAL_TO:
+				notEqualTo(values, size, value, bits);
+				break;
+			case GREATER_THAN:
+				greaterThan(values, size, value, bits);
+				break;
+			case GREATER_THAN_OR_EQUAL_TO:
+				greaterThanOrEqualTo(values, size, value, bits);
+				break;
+			case LESS_THAN:
+				lessThan(values, size, value, bits);
+				break;
+			case LESS_THAN_OR_EQUAL_TO:
+				lessThanOrEqualTo(values, size, value, bits);
+				break;
+			default:
+				throw new IllegalArgumentException("Is not possible to use the operator " + operator.getDescription() + " to a number.");
+		}
+	}
+	
+	/**
+	 * Compares a column of integers, like times in milliseconds, with a value.
+	 * 
+	 * @param values Column of the property.
+	 * @param size Number of facts.
+	 * @param operator Operator used to compare, any but <i>CONTAINS</i>.
+	 * @param value Value compared.
+	 * @param bits Bitset receiving the facts satisfying the comparison.
+	 */
+	public static void compare(long[] values, int size, Condition.Operator operator, long value, long[] bits)
+	{
+		switch (operator)
+		{
+			case EQUAL_TO:
+				equalTo(values, size, value, bits);
+				break;
+			case NOT_EQUAL_TO:
+				notEqualTo(values, size, value, bits);
+				break;
+			case GREATER_THAN:
+				greaterThan(values, size, value, bits);
+				break;
+			case GREATER_THAN_OR_EQUAL_TO:
+				greaterThanOrEqualTo(values, size, value, bits);
+				break;
+			case LESS_THAN:
+				lessThan(values, size, value, bits);
+				break;
+			case LESS_THAN_OR_EQUAL_TO:
+				lessThanOrEqualTo(values, size, value, bits);
+				break;
+			default:
+				throw new IllegalArgumentException("Is not possible to use the operator " + operator.getDescription() + " to a number.");
+		}
+	}
+	
+	/**
+	 * Selects the facts whose dictionary code is the one given.
+	 * 
+	 * @param codes Column of dictionary codes.
+	 * @param size Number of facts.
+	 * @param code Code selected.
+	 * @param bits Bitset receiving the facts with the code.
+	 */
+	public static void equalTo(int[] codes, int size, int code, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((codes[base + b] == code) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	/**
+	 * Selects the facts whose dictionary code is not the one given, including the facts without a text.
+	 * 
+	 * @param codes Column of dictionary codes.
+	 * @param size Number of facts.
+	 * @param code Code discarded.
+	 * @param bits Bitset receiving the facts without the code.
+	 */
+	public static void notEqualTo(int[] codes, int size, int code, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((codes[base + b] != code) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	/**
+	 * Selects the facts whose dictionary code is accepted.
+	 * 
+	 * @param codes Column of dictionary codes, negative for no value.
+	 * @param size Number of facts.
+	 * @param accepted Acceptance of each code of the dictionary.
+	 * @param bits Bitset receiving the facts with an accepted code.
+	 */
+	public static void lookup(int[] codes, int size, boolean[] accepted, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				int code = codes[base + b];
+				word |= (((code >= 0) && accepted[code]) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void equalTo(double[] values, int size, double value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] == value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void notEqualTo(double[] values, int size, double value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] != value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void greaterThan(double[] values, int size, double value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] > value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void greaterThanOrEqualTo(double[] values, int size, double value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] >= value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void lessThan(double[] values, int size, double value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] < value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void lessThanOrEqualTo(double[] values, int size, double value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] <= value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void equalTo(long[] values, int size, long value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] == value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void notEqualTo(long[] values, int size, long value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] != value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void greaterThan(long[] values, int size, long value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] > value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void greaterThanOrEqualTo(long[] values, int size, long value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] >= value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void lessThan(long[] values, int size, long value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] < value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+	
+	private static void lessThanOrEqualTo(long[] values, int size, long value, long[] bits)
+	{
+		for (int w = 0, words = words(size); w < words; w++)
+		{
+			int base = w << 6;
+			int end = Math.min(64, size - base);
+			long word = 0L;
+			for (int b = 0; b < end; b++)
+			{
+				word |= ((values[base + b] <= value) ? 1L : 0L) << b;
+			}
+			bits[w] = word;
+		}
+	}
+}
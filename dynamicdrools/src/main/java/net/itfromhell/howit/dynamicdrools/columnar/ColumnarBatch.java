@@ -0,0 +1,394 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.columnar;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.itfromhell.howit.dynamicdrools.compiled.ConditionCompiler;
+
+/**
+ * Batch of facts stored as a struct of arrays, one column per property.<br>
+ * Numbers are kept in <b>double</b> columns, integers and dates in <b>long</b> columns, dates as their time in
+ * milliseconds along a bitset of the facts having a date, and texts are dictionary encoded: each distinct text is
+ * kept once and each fact holds the code of its text, negative for no text.<br>
+ * Columns may be filled straight from a columnar source or read from the getters of the facts.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see ColumnarRuleSet
+ */
+public class ColumnarBatch
+{
+	/**
+	 * Class of the facts.
+	 */
+	private final Class<?> type;
+	/**
+	 * Number of facts.
+	 */
+	private final int size;
+	/**
+	 * Columns of numbers, by property.
+	 */
+	private final Map<String, double[]> numbers = new HashMap<String, double[]>();
+	/**
+	 * Columns of integers and dates, by property.
+	 */
+	private final Map<String, long[]> integers = new HashMap<String, long[]>();
+	/**
+	 * Bitsets of the facts having a value in a column of integers, by property, absent when all of them have.
+	 */
+	private final Map<String, long[]> presences = new HashMap<String, long[]>();
+	/**
+	 * Columns of texts, by property.
+	 */
+	private final Map<String, TextColumn> texts = new HashMap<String, TextColumn>();
+	
+	/**
+	 * Creates a batch without columns.
+	 * 
+	 * @param type Class of the facts.
+	 * @param size Number of facts.
+	 */
+	public ColumnarBatch(Class<?> type, int size)
+	{
+		if (size < 0)
+		{
+			throw new IllegalArgumentException("The size of the batch must not be negative.");
+		}
+		
+		this.type = type;
+		this.size = size;
+	}
+	
+	/**
+	 * Dictionary encoded column of texts.
+	 */
+	public static class TextColumn
+	{
+		/**
+		 * Code of the text of each fact, negative for no text.
+		 */
+		private final int[] codes;
+		/**
+		 * Distinct texts, by code.
+		 */
+		private final String[] dictionary;
+		/**
+		 * Code of each text of the dictionary.
+		 */
+		private final Map<String, Integer> index;
+		
+		private TextColumn(int[] codes, String[] dictionary)
+		{
+			this.codes = codes;
+			this.dictionary = dictionary;
+			this.index = new HashMap<String, Integer>(dictionary.length * 2);
+			for (int i = 0; i < dictionary.length; i++)
+			{
+				index.put(dictionary[i], i);
+			}
+		}
+		
+		/**
+		 * @param text Text searched.
+		 * @return Code of the text, negative when no fact has it.
+		 */
+		public int code(String text)
+		{
+			Integer code = index.get(text);
+			
+			return ((code == null) ? -1 : code);
+		}
+		
+		public int[] getCodes()
+		{
+			return codes;
+		}
+		
+		public String[] getDictionary()
+		{
+			return dictionary;
+		}
+	}
+	
+	/**
+	 * Reads the columns from the getters of the facts.
+	 * 
+	 * @param type Class of the facts.
+	 * @param facts Facts to be stored.
+	 * @param properties Properties read into columns.
+	 * @return Batch of the facts.
+	 * @throws IllegalArgumentException Indicates a property without a public getter of a supported type.
+	 */
+	public static ColumnarBatch of(Class<?> type, List<?> facts, Collection<String> properties) throws IllegalArgumentException
+	{
+		int size = facts.size();
+		ColumnarBatch batch = new ColumnarBatch(type, size);
+		for (String property : properties)
+		{
+			Method getter = ConditionCompiler.findGetter(type, property);
+			if (getter == null)
+			{
+				throw new IllegalArgumentException("The property " + property + " of " + type.getName() + " has no public getter.");
+			}
+			
+			MethodHandle handle;
+			try
+			{
+				handle = MethodHandles.publicLookup().unreflect(getter).asType(MethodType.methodType(Object.class, Object.class));
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IllegalArgumentException("The getter of the property " + property + " of " + type.getName() + " is not accessible.", e);
+			}
+			
+			Class<?> returned = getter.getReturnType();
+			if (isNumber(returned))
+			{
+				double[] values = new double[size];
+				for (int i = 0; i < size; i++)
+				{
+					values[i] = ((Number)read(handle, facts.get(i), property)).doubleValue();
+				}
+				batch.addNumbers(property, values);
+			}
+			else if (returned.equals(long.class))
+			{
+				long[] values = new long[size];
+				for (int i = 0; i < size; i++)
+				{
+					values[i] = (Long)read(handle, facts.get(i), property);
+				}
+				batch.addIntegers(property, values, null);
+			}
+			else if (Date.class.isAssignableFrom(returned))
+			{
+				long[] values = new long[size];
+				long[] presence = new long[ColumnKernels.words(size)];
+				for (int i = 0; i < size; i++)
+				{
+					Date value = (Date)read(handle, facts.get(i), property);
+					if (value != null)
+					{
+						values[i] = value.getTime();
+						presence[i >>> 6] |= 1L << i;
+					}
+				}
+				batch.addIntegers(property, values, presence);
+			}
+			else if (returned.equals(String.class))
+			{
+				String[] values = new String[size];
+				for (int i = 0; i < size; i++)
+				{
+					values[i] = (String)read(handle, facts.get(i), property);
+				}
+				batch.addTexts(property, values);
+			}
+			else
+			{
+				throw new IllegalArgumentException("The property " + property + " of " + type.getName() + " is a " + returned.getSimpleName() + ", which can not be stored in a column.");
+			}
+		}
+		
+		return batch;
+	}
+	
+	private static Object read(MethodHandle handle, Object fact, String property)
+	{
+		try
+		{
+			return handle.invokeExact(fact);
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException("The property " + property + " of the fact " + fact + " could not be read.", e);
+		}
+	}
+	
+	/**
+	 * Indicates a primitive type stored in a column of numbers.
+	 */
+	static boolean isNumber(Class<?> type)
+	{
+		return type.equals(double.class) || type.equals(float.class) || type.equals(int.class) || type.equals(short.class) || type.equals(byte.class);
+	}
+	
+	/**
+	 * Adds a column of numbers.
+	 * 
+	 * @param property Name of the property.
+	 * @param values Value of each fact.
+	 */
+	public void addNumbers(String property, double[] values)
+	{
+		checkLength(values.length);
+		numbers.put(property, values);
+	}
+	
+	/**
+	 * Adds a column of integers, like dates in milliseconds.
+	 * 
+	 * @param property Name of the property.
+	 * @param values Value of each fact.
+	 * @param presence Bitset of the facts having a value, null when all of them have.
+	 */
+	public void addIntegers(String property, long[] values, long[] presence)
+	{
+		checkLength(values.length);
+		integers.put(property, values);
+		if (presence == null)
+		{
+			presences.remove(property);
+		}
+		else
+		{
+			presences.put(property, presence);
+		}
+	}
+	
+	/**
+	 * Adds a column of texts, encoding them with a new dictionary.
+	 * 
+	 * @param property Name of the property.
+	 * @param values Text of each fact, null for no text.
+	 */
+	public void addTexts(String property, String[] values)
+	{
+		checkLength(values.length);
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		int[] codes = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i] == null)
+			{
+				codes[i] = -1;
+				continue;
+			}
+			
+			Integer code = index.get(values[i]);
+			if (code == null)
+			{
+				code = index.size();
+				index.put(values[i], code);
+			}
+			codes[i] = code;
+		}
+		
+		String[] dictionary = new String[index.size()];
+		for (Map.Entry<String, Integer> entry : index.entrySet())
+		{
+			dictionary[entry.getValue()] = entry.getKey();
+		}
+		texts.put(property, new TextColumn(codes, dictionary));
+	}
+	
+	/**
+	 * Adds a column of texts already encoded.
+	 * 
+	 * @param property Name of the property.
+	 * @param codes Code of the text of each fact, negative for no text.
+	 * @param dictionary Distinct texts, by code.
+	 */
+	public void addTexts(String property, int[] codes, String[] dictionary)
+	{
+		checkLength(codes.length);
+		texts.put(property, new TextColumn(codes, dictionary));
+	}
+	
+	private void checkLength(int length)
+	{
+		if (length < size)
+		{
+			throw new IllegalArgumentException("The column has " + length + " values for a batch of " + size + " facts.");
+		}
+	}
+	
+	public Class<?> getType()
+	{
+		return type;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * @param property Name of the property.
+	 * @return Column of numbers, or null when there is not one.
+	 */
+	public double[] getNumbers(String property)
+	{
+		return numbers.get(property);
+	}
+	
+	/**
+	 * @param property Name of the property.
+	 * @return Column of integers, or null when there is not one.
+	 */
+	public long[] getIntegers(String property)
+	{
+		return integers.get(property);
+	}
+	
+	/**
+	 * @param property Name of the property.
+	 * @return Bitset of the facts having a value in the column of integers, null when all of them have.
+	 */
+	public long[] getPresence(String property)
+	{
+		return presences.get(property);
+	}
+	
+	/**
+	 * @param property Name of the property.
+	 * @return Column of texts, or null when there is not one.
+	 */
+	public TextColumn getTexts(String property)
+	{
+		return texts.get(property);
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | type = ");
+		me.append(type.getName());
+		me.append(" | size = ");
+		me.append(size);
+		me.append(" | numbers = ");
+		me.append(numbers.keySet());
+		me.append(" | integers = ");
+		me.append(integers.keySet());
+		me.append(" | texts = ");
+		me.append(texts.keySet());
+		me.append("]");
+		
+		return me.toString();
+	}
+}
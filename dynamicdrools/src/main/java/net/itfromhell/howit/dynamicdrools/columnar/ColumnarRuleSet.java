@@ -0,0 +1,423 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.columnar;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.ConditionCompiler;
+
+/**
+ * Rules evaluated over whole batches of facts stored by columns.<br>
+ * Each condition is applied by a {@link ColumnKernels kernel} over the column of its property into a bitset, and the
+ * bitsets of the conditions of a rule are intersected, so a rule costs a few passes over primitive arrays whatever
+ * the number of facts, without reading any fact object. The evaluation stops intersecting once no fact is left.<br>
+ * Conditions follow the expressions written by {@link Condition#buildExpression()}: a fact without a date or without
+ * a text only satisfies <i>NOT_EQUAL_TO</i> over it. Rules with a condition over a
+ * nested property, over a property the batch can not store or with a value not comparable to the property are not
+ * supported and match no fact, as do rules over another class of data object. Actions are not applied.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see ColumnarBatch
+ */
+public class ColumnarRuleSet
+{
+	/**
+	 * Class of the facts evaluated.
+	 */
+	private final Class<?> type;
+	/**
+	 * Rules, identified by their position.
+	 */
+	private final List<Rule> rules;
+	/**
+	 * Compiled conditions of each rule, null for the rules not supported.
+	 */
+	private final ColumnCondition[][] conditions;
+	/**
+	 * Rules not supported.
+	 */
+	private final List<Rule> unsupported;
+	/**
+	 * Properties read by the conditions.
+	 */
+	private final Set<String> properties;
+	
+	/**
+	 * Compiles the rules.
+	 * 
+	 * @param type Class of the facts evaluated.
+	 * @param rules Rules to be compiled.
+	 */
+	public ColumnarRuleSet(Class<?> type, List<Rule> rules)
+	{
+		this.type = type;
+		this.rules = Collections.unmodifiableList(new ArrayList<Rule>(rules));
+		this.conditions = new ColumnCondition[rules.size()][];
+		List<Rule> others = new ArrayList<Rule>();
+		Set<String> read = new LinkedHashSet<String>();
+		
+		for (int i = 0; i < rules.size(); i++)
+		{
+			conditions[i] = compile(rules.get(i));
+			if (conditions[i] == null)
+			{
+				others.add(rules.get(i));
+				continue;
+			}
+			
+			for (ColumnCondition condition : conditions[i])
+			{
+				read.add(condition.property);
+			}
+		}
+		
+		this.unsupported = Collections.unmodifiableList(others);
+		this.properties = Collections.unmodifiableSet(read);
+	}
+	
+	/**
+	 * Compiles the conditions of a rule.
+	 * 
+	 * @return Compiled conditions, or null when the rule is not supported.
+	 */
+	private ColumnCondition[] compile(Rule rule)
+	{
+		if ((rule.getConditions() == null) || rule.getConditions().isEmpty() || (rule.getDataObject() == null))
+		{
+			return null;
+		}
+		
+		try
+		{
+			Class<?> ruleType = Class.forName(rule.getDataObject(), false, Thread.currentThread().getContextClassLoader());
+			if (!ruleType.isAssignableFrom(type))
+			{
+				return null;
+			}
+		}
+		catch (ClassNotFoundException e)
+		{
+			return null;
+		}
+		
+		ColumnCondition[] compiled = new ColumnCondition[rule.getConditions().size()];
+		for (int i = 0; i < compiled.length; i++)
+		{
+			compiled[i] = compile(rule.getConditions().get(i));
+			if (compiled[i] == null)
+			{
+				return null;
+			}
+		}
+		
+		return compiled;
+	}
+	
+	/**
+	 * Compiles a condition.
+	 * 
+	 * @return Compiled condition, or null when it is not supported.
+	 */
+	private ColumnCondition compile(Condition condition)
+	{
+		String property = condition.getProperty();
+		Condition.Operator operator = condition.getOperator();
+		Object value = condition.getValue();
+		if ((property == null) || (property.indexOf('.') >= 0) || (operator == null) || (value == null))
+		{
+			return null;
+		}
+		
+		Method getter = ConditionCompiler.findGetter(type, property);
+		if (getter == null)
+		{
+			return null;
+		}
+		
+		Class<?> returned = getter.getReturnType();
+		if ((value instanceof Number) && (operator != Condition.Operator.CONTAINS))
+		{
+			if (ColumnarBatch.isNumber(returned))
+			{
+				return new NumberCondition(property, operator, condition.getValueAsDouble());
+			}
+			else if (returned.equals(long.class) && ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)))
+			{
+				return new IntegerCondition(property, operator, ((Number)value).longValue());
+			}
+		}
+		else if (Condition.isTemporal(value) && Date.class.isAssignableFrom(returned))
+		{
+			if (operator.isComparable((value instanceof Date) ? Date.class : value.getClass()))
+			{
+				return new IntegerCondition(property, operator, condition.getValueAsTime());
+			}
+		}
+		else if ((value instanceof String) && returned.equals(String.class))
+		{
+			return new TextCondition(property, operator, (String)value);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Reads the columns of the properties used by the rules from the facts.
+	 * 
+	 * @param facts Facts to be stored.
+	 * @return Batch of the facts.
+	 */
+	public ColumnarBatch newBatch(List<?> facts)
+	{
+		return ColumnarBatch.of(type, facts, properties);
+	}
+	
+	/**
+	 * Evaluates all rules over a batch.
+	 * 
+	 * @param batch Facts to be evaluated, with the columns of all properties used by the rules.
+	 * @return Facts matched by each rule.
+	 * @throws IllegalArgumentException Indicates a batch of another class of facts or missing a column.
+	 */
+	public RuleMatches evaluate(ColumnarBatch batch) throws IllegalArgumentException
+	{
+		if (!type.isAssignableFrom(batch.getType()))
+		{
+			throw new IllegalArgumentException("The batch holds " + batch.getType().getName() + " facts instead of " + type.getName() + ".");
+		}
+		
+		int size = batch.size();
+		int words = ColumnKernels.words(size);
+		long[][] matched = new long[conditions.length][];
+		long[] scratch = new long[words];
+		for (int i = 0; i < conditions.length; i++)
+		{
+			long[] bits = new long[words];
+			matched[i] = bits;
+			if (conditions[i] == null)
+			{
+				continue;
+			}
+			
+			ColumnKernels.all(bits, size);
+			for (ColumnCondition condition : conditions[i])
+			{
+				condition.evaluate(batch, scratch);
+				if (!ColumnKernels.and(bits, scratch, words))
+				{
+					//No fact is left to be discarded by the other conditions
+					break;
+				}
+			}
+		}
+		
+		return new RuleMatches(rules, matched, size);
+	}
+	
+	public Class<?> getType()
+	{
+		return type;
+	}
+	
+	public List<Rule> getRules()
+	{
+		return rules;
+	}
+	
+	/**
+	 * @return Rules which match no fact because they are not supported.
+	 */
+	public List<Rule> getUnsupportedRules()
+	{
+		return unsupported;
+	}
+	
+	/**
+	 * @return Properties which must have a column in the batches evaluated.
+	 */
+	public Set<String> getProperties()
+	{
+		return properties;
+	}
+	
+	/**
+	 * Condition compiled into a kernel over a column.
+	 */
+	private static abstract class ColumnCondition
+	{
+		protected final String property;
+		protected final Condition.Operator operator;
+		
+		private ColumnCondition(String property, Condition.Operator operator)
+		{
+			this.property = property;
+			this.operator = operator;
+		}
+		
+		/**
+		 * Evaluates the condition over all facts of the batch.
+		 * 
+		 * @param batch Facts to be evaluated.
+		 * @param bits Bitset receiving the facts satisfying the condition.
+		 */
+		abstract void evaluate(ColumnarBatch batch, long[] bits);
+		
+		protected IllegalArgumentException missing()
+		{
+			return new IllegalArgumentException("The batch has no column for the property " + property + ".");
+		}
+	}
+	
+	private static class NumberCondition extends ColumnCondition
+	{
+		private final double value;
+		
+		private NumberCondition(String property, Condition.Operator operator, double value)
+		{
+			super(property, operator);
+			this.value = value;
+		}
+		
+		@Override
+		void evaluate(ColumnarBatch batch, long[] bits)
+		{
+			double[] values = batch.getNumbers(property);
+			if (values == null)
+			{
+				throw missing();
+			}
+			
+			ColumnKernels.compare(values, batch.size(), operator, value, bits);
+		}
+	}
+	
+	/**
+	 * Comparison of integers or dates, a fact without a value only satisfies <i>NOT_EQUAL_TO</i>.
+	 */
+	private static class IntegerCondition extends ColumnCondition
+	{
+		private final long value;
+		
+		private IntegerCondition(String property, Condition.Operator operator, long value)
+		{
+			super(property, operator);
+			this.value = value;
+		}
+		
+		@Override
+		void evaluate(ColumnarBatch batch, long[] bits)
+		{
+			long[] values = batch.getIntegers(property);
+			if (values == null)
+			{
+				throw missing();
+			}
+			
+			ColumnKernels.compare(values, batch.size(), operator, value, bits);
+			long[] presence = batch.getPresence(property);
+			if (presence == null)
+			{
+				return;
+			}
+			
+			if (operator.equals(Condition.Operator.NOT_EQUAL_TO))
+			{
+				ColumnKernels.orNot(bits, presence, batch.size());
+			}
+			else
+			{
+				ColumnKernels.and(bits, presence, ColumnKernels.words(batch.size()));
+			}
+		}
+	}
+	
+	/**
+	 * Comparison of texts, evaluated over the dictionary codes.
+	 */
+	private static class TextCondition extends ColumnCondition
+	{
+		private final String value;
+		/**
+		 * Text searched by <i>CONTAINS</i>, folded by {@link Condition#foldCase(String)}.
+		 */
+		private final String searched;
+		
+		private TextCondition(String property, Condition.Operator operator, String value)
+		{
+			super(property, operator);
+			this.value = value;
+			this.searched = Condition.foldCase(value);
+		}
+		
+		@Override
+		void evaluate(ColumnarBatch batch, long[] bits)
+		{
+			ColumnarBatch.TextColumn column = batch.getTexts(property);
+			if (column == null)
+			{
+				throw missing();
+			}
+			
+			int size = batch.size();
+			switch (operator)
+			{
+				case EQUAL_TO:
+					int code = column.code(value);
+					if (code < 0)
+					{
+						Arrays.fill(bits, 0, ColumnKernels.words(size), 0L);
+					}
+					else
+					{
+						ColumnKernels.equalTo(column.getCodes(), size, code, bits);
+					}
+					break;
+				case NOT_EQUAL_TO:
+					code = column.code(value);
+					if (code < 0)
+					{
+						ColumnKernels.all(bits, size);
+					}
+					else
+					{
+						ColumnKernels.notEqualTo(column.getCodes(), size, code, bits);
+					}
+					break;
+				default:
+					//Each distinct text is searched once, then the facts only look their code up
+					String[] dictionary = column.getDictionary();
+					boolean[] accepted = new boolean[dictionary.length];
+					for (int i = 0; i < dictionary.length; i++)
+					{
+						accepted[i] = Condition.containsFolded(dictionary[i], searched);
+					}
+					ColumnKernels.lookup(column.getCodes(), size, accepted, bits);
+					break;
+			}
+		}
+	}
+}
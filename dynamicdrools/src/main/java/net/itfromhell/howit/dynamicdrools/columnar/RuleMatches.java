@@ -0,0 +1,109 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.columnar;
+
+import java.util.BitSet;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Facts of a batch matched by each rule, as one bitset per rule.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see ColumnarRuleSet
+ */
+public class RuleMatches
+{
+	/**
+	 * Rules evaluated, identified by their position.
+	 */
+	private final List<Rule> rules;
+	/**
+	 * Bitset of the facts matched by each rule.
+	 */
+	private final long[][] bits;
+	/**
+	 * Number of facts of the batch.
+	 */
+	private final int size;
+	
+	RuleMatches(List<Rule> rules, long[][] bits, int size)
+	{
+		this.rules = rules;
+		this.bits = bits;
+		this.size = size;
+	}
+	
+	/**
+	 * @param rule Position of the rule.
+	 * @param fact Position of the fact in the batch.
+	 * @return True when the rule matches the fact.
+	 */
+	public boolean matches(int rule, int fact)
+	{
+		return ((bits[rule][fact >>> 6] & (1L << fact)) != 0L);
+	}
+	
+	/**
+	 * @param rule Position of the rule.
+	 * @return Number of facts matched by the rule.
+	 */
+	public int count(int rule)
+	{
+		return ColumnKernels.cardinality(bits[rule], bits[rule].length);
+	}
+	
+	/**
+	 * @return Number of matches of all rules, the number of rules a session would fire.
+	 */
+	public int getTotal()
+	{
+		int total = 0;
+		for (int i = 0; i < bits.length; i++)
+		{
+			total += count(i);
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * @param rule Position of the rule.
+	 * @return Copy of the facts matched by the rule.
+	 */
+	public BitSet toBitSet(int rule)
+	{
+		return BitSet.valueOf(bits[rule]);
+	}
+	
+	public Rule getRule(int rule)
+	{
+		return rules.get(rule);
+	}
+	
+	public int getRuleCount()
+	{
+		return bits.length;
+	}
+	
+	public int getFactCount()
+	{
+		return size;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.util.Arrays;
+
+/**
+ * Reusable set of candidate rules found for a fact.<br>
+ * Each rule is kept once, however many times it is found, without allocating anything per fact. An instance must not
+ * be shared among threads.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see RuleIndex
+ */
+public class Candidates
+{
+	/**
+	 * Positions of the candidate rules.
+	 */
+	private final int[] rules;
+	/**
+	 * Round in which each rule was last added.
+	 */
+	private final int[] rounds;
+	/**
+	 * Current round, each fact starts a new one.
+	 */
+	private int round = 1;
+	/**
+	 * Number of candidates of the current round.
+	 */
+	private int size;
+	
+	/**
+	 * Creates an empty set.
+	 * 
+	 * @param ruleCount Number of rules which may be candidates.
+	 */
+	public Candidates(int ruleCount)
+	{
+		this.rules = new int[ruleCount];
+		this.rounds = new int[ruleCount];
+	}
+	
+	/**
+	 * Discards all candidates, starting a new round.
+	 */
+	public void clear()
+	{
+		size = 0;
+		if (++round == 0)
+		{
+			//The rounds wrapped around, so old marks must be erased
+			Arrays.fill(rounds, 0);
+			round = 1;
+		}
+	}
+	
+	/**
+	 * Adds a candidate rule, unless it is already in the set.
+	 * 
+	 * @param rule Position of the rule.
+	 */
+	public void add(int rule)
+	{
+		if (rounds[rule] != round)
+		{
+			rounds[rule] = round;
+			rules[size++] = rule;
+		}
+	}
+	
+	/**
+	 * Keeps only the candidates accepted, in the order they were added.
+	 * 
+	 * @param count Number of accepted candidates already moved to the start by {@link #set(int, int)}.
+	 */
+	public void truncate(int count)
+	{
+		size = count;
+	}
+	
+	/**
+	 * Replaces the candidate at a position.
+	 */
+	public void set(int index, int rule)
+	{
+		rules[index] = rule;
+	}
+	
+	public int get(int index)
+	{
+		return rules[index];
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Sorts the candidates by position of the rules.
+	 */
+	public void sort()
+	{
+		Arrays.sort(rules, 0, size);
+	}
+}
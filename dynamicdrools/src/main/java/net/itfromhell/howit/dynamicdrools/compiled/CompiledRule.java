@@ -0,0 +1,183 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Rule compiled into a conjunction of predicates and a numeric action.<br>
+ * The action is the invocation of a method of the data object receiving the rule's action as a number, as the
+ * template does with <i>$fact.discount(@{action})</i>.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see ConditionCompiler
+ */
+public class CompiledRule
+{
+	/**
+	 * Rule from which this one was compiled.
+	 */
+	private final Rule rule;
+	/**
+	 * Class of the data object.
+	 */
+	private final Class<?> type;
+	/**
+	 * Predicates of all conditions, in the same order of the rule.
+	 */
+	private final FactPredicate[] conditions;
+	/**
+	 * Method applying the action over the data object.
+	 */
+	private final MethodHandle action;
+	/**
+	 * Argument of the action.
+	 */
+	private final double argument;
+	
+	private CompiledRule(Rule rule, Class<?> type, FactPredicate[] conditions, MethodHandle action, double argument)
+	{
+		this.rule = rule;
+		this.type = type;
+		this.conditions = conditions;
+		this.action = action;
+		this.argument = argument;
+	}
+	
+	/**
+	 * Compiles a rule.
+	 * 
+	 * @param rule Rule to be compiled.
+	 * @param actionMethod Name of the method of the data object receiving the action as a number.
+	 * @return Compiled rule, or null when the rule can only be evaluated by Drools.
+	 * @throws IllegalStateException Indicates none conditional declared.
+	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
+	 */
+	public static CompiledRule compile(Rule rule, String actionMethod) throws IllegalStateException, IllegalArgumentException
+	{
+		if ((rule.getConditions() == null) || (rule.getConditions().isEmpty()))
+		{
+			throw new IllegalStateException("You must declare at least one condition to be evaluated.");
+		}
+		if ((rule.getDataObject() == null) || (rule.getAction() == null))
+		{
+			return null;
+		}
+		
+		Class<?> type;
+		try
+		{
+			type = Class.forName(rule.getDataObject(), false, Thread.currentThread().getContextClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			return null;
+		}
+		
+		FactPredicate[] conditions = new FactPredicate[rule.getConditions().size()];
+		for (int i = 0; i < conditions.length; i++)
+		{
+			Condition condition = rule.getConditions().get(i);
+			conditions[i] = ConditionCompiler.compile(type, condition);
+			if (conditions[i] == null)
+			{
+				return null;
+			}
+		}
+		
+		double argument;
+		MethodHandle action;
+		try
+		{
+			argument = Double.parseDouble(rule.getAction().trim());
+			Method method = type.getMethod(actionMethod, double.class);
+			action = MethodHandles.publicLookup().unreflect(method).asType(MethodType.methodType(void.class, Object.class, double.class));
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+		catch (IllegalAccessException e)
+		{
+			return null;
+		}
+		
+		return new CompiledRule(rule, type, conditions, action, argument);
+	}
+	
+	/**
+	 * Evaluates all conditions over the fact, stopping at the first one not satisfied.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @return True when the rule applies to the fact.
+	 */
+	public boolean matches(Object fact)
+	{
+		if (!type.isInstance(fact))
+		{
+			return false;
+		}
+		
+		for (FactPredicate condition : conditions)
+		{
+			if (!condition.test(fact))
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Applies the action of the rule over the fact.
+	 * 
+	 * @param fact Data object matched by this rule.
+	 */
+	public void apply(Object fact)
+	{
+		try
+		{
+			action.invokeExact(fact, argument);
+		}
+		catch (Throwable e)
+		{
+			throw ConditionCompiler.failure(e);
+		}
+	}
+	
+	public Rule getRule()
+	{
+		return rule;
+	}
+	
+	public Class<?> getType()
+	{
+		return type;
+	}
+}
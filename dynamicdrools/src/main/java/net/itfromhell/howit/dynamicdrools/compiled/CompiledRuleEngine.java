@@ -0,0 +1,305 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.EvaluationMode;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Rule engine evaluating simple rules without Drools.<br>
+ * Rules made of conditions over properties of the data object, with a numeric action, are compiled into predicates
+ * evaluated directly over the facts. Any other rule is compiled by Drools using the template and evaluated by it,
+ * so the engine accepts every rule the template does.<br>
+ * As Drools does, all conditions are evaluated before any action changes the fact. Only the candidate rules found
+ * by a {@link RuleIndex} are tested, so the cost of a fact depends on the rules it may match rather than on all rules.
+ * <br>
+ * When only one rule fires for each fact, the rules are tested in the order of their saliences and the evaluation of
+ * a fact stops at its first match. In this mode a single rule left to Drools leaves all of them to Drools, since the
+ * winner can only be decided among all rules.<br>
+ * When the utility has statistics of the conditions, the conditions of each rule are tested in the order chosen by
+ * them.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class CompiledRuleEngine
+{
+	/**
+	 * Rules evaluated by this engine.
+	 */
+	private final CompiledRule[] compiled;
+	/**
+	 * Index of the compiled rules.
+	 */
+	private final RuleIndex index;
+	/**
+	 * Rules left to Drools.
+	 */
+	private final List<Rule> fallback;
+	/**
+	 * Rule base of the rules left to Drools, null when there is none.
+	 */
+	private final KieBase fallbackBase;
+	/**
+	 * Mode of firing the rules matched.
+	 */
+	private final EvaluationMode mode;
+	
+	/**
+	 * Compiles the rules.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file used for the rules left to Drools.
+	 * @param actionMethod Name of the method of the data object receiving the action as a number.
+	 * @throws Exception 
+	 */
+	public CompiledRuleEngine(List<Rule> rules, String templatePath, String actionMethod) throws Exception
+	{
+		this(rules, templatePath, actionMethod, new DroolsUtility());
+	}
+	
+	/**
+	 * Compiles the rules.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file used for the rules left to Drools.
+	 * @param actionMethod Name of the method of the data object receiving the action as a number.
+	 * @param utility Utility compiling the rules left to Drools, whose statistics order the conditions.
+	 * @throws Exception 
+	 */
+	public CompiledRuleEngine(List<Rule> rules, String templatePath, String actionMethod, DroolsUtility utility) throws Exception
+	{
+		this(rules, templatePath, actionMethod, utility, EvaluationMode.ALL);
+	}
+	
+	/**
+	 * Compiles the rules to be fired in a mode.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file used for the rules left to Drools, which must keep a fact from
+	 * firing a second rule in exclusive modes.
+	 * @param actionMethod Name of the method of the data object receiving the action as a number.
+	 * @param utility Utility compiling the rules left to Drools, whose statistics order the conditions.
+	 * @param mode Mode of firing the rules matched.
+	 * @throws Exception 
+	 */
+	public CompiledRuleEngine(List<Rule> rules, String templatePath, String actionMethod, DroolsUtility utility, EvaluationMode mode) throws Exception
+	{
+		if (utility.getStatistics() != null)
+		{
+			rules = utility.getStatistics().reorder(rules, false);
+		}
+		
+		List<Rule> ordered = rules;
+		if (mode.isExclusive())
+		{
+			ordered = bySalience(rules, mode);
+		}
+		
+		List<CompiledRule> natives = new ArrayList<CompiledRule>(rules.size());
+		List<Rule> others = new ArrayList<Rule>();
+		for (Rule rule : ordered)
+		{
+			CompiledRule compiledRule = CompiledRule.compile(rule, actionMethod);
+			if (compiledRule == null)
+			{
+				others.add(rule);
+			}
+			else
+			{
+				natives.add(compiledRule);
+			}
+		}
+		if (mode.isExclusive() && !others.isEmpty())
+		{
+			natives.clear();
+			others = rules;
+		}
+		
+		this.mode = mode;
+		this.compiled = natives.toArray(new CompiledRule[natives.size()]);
+		this.index = new RuleIndex(compiled);
+		this.fallback = Collections.unmodifiableList(others);
+		this.fallbackBase = (others.isEmpty() ? null : utility.loadKieBase(others, templatePath, mode));
+	}
+	
+	/**
+	 * Orders the rules by salience, the highest first, keeping the order of the rules of the same salience.
+	 */
+	private static List<Rule> bySalience(List<Rule> rules, EvaluationMode mode)
+	{
+		final int[] saliences = mode.saliences(rules);
+		Integer[] positions = new Integer[saliences.length];
+		for (int i = 0; i < positions.length; i++)
+		{
+			positions[i] = i;
+		}
+		Arrays.sort(positions, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer left, Integer right)
+			{
+				return Integer.compare(saliences[right], saliences[left]);
+			}
+		});
+		
+		List<Rule> ordered = new ArrayList<Rule>(positions.length);
+		for (Integer position : positions)
+		{
+			ordered.add(rules.get(position));
+		}
+		
+		return ordered;
+	}
+	
+	/**
+	 * Evaluates a fact.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Object fact)
+	{
+		return evaluate(fact, new Candidates(compiled.length), newFallbackSession());
+	}
+	
+	/**
+	 * Evaluates all facts.
+	 * 
+	 * @param facts Data objects to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Iterable<?> facts)
+	{
+		Candidates matched = new Candidates(compiled.length);
+		StatelessKieSession session = newFallbackSession();
+		int fired = 0;
+		for (Object fact : facts)
+		{
+			fired += evaluate(fact, matched, session);
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * Evaluates a fact, matching all rules before applying any action.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @param matched Reusable set for the positions of the matched rules.
+	 * @param session Session for the rules left to Drools, null when there is none.
+	 * @return Number of rules fired.
+	 */
+	private int evaluate(Object fact, Candidates matched, StatelessKieSession session)
+	{
+		index.candidates(fact, matched);
+		if (mode.isExclusive())
+		{
+			return evaluateFirst(fact, matched, session);
+		}
+		
+		int count = 0;
+		for (int i = 0; i < matched.size(); i++)
+		{
+			if (compiled[matched.get(i)].matches(fact))
+			{
+				matched.set(count++, matched.get(i));
+			}
+		}
+		matched.truncate(count);
+		//Actions are applied in the same order of the rules
+		matched.sort();
+		
+		int fired = count;
+		if (session != null)
+		{
+			fired += DroolsUtility.execute(session, Collections.singletonList(fact));
+		}
+		
+		for (int i = 0; i < count; i++)
+		{
+			compiled[matched.get(i)].apply(fact);
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * Evaluates a fact firing only its first match, the rules being ordered by salience.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @param matched Positions of the candidate rules.
+	 * @param session Session for the rules left to Drools, null when there is none.
+	 * @return Number of rules fired.
+	 */
+	private int evaluateFirst(Object fact, Candidates matched, StatelessKieSession session)
+	{
+		if (session != null)
+		{
+			//All rules are left to Drools
+			return DroolsUtility.execute(session, Collections.singletonList(fact));
+		}
+		
+		matched.sort();
+		for (int i = 0; i < matched.size(); i++)
+		{
+			CompiledRule rule = compiled[matched.get(i)];
+			if (rule.matches(fact))
+			{
+				rule.apply(fact);
+				return 1;
+			}
+		}
+		
+		return 0;
+	}
+	
+	private StatelessKieSession newFallbackSession()
+	{
+		return ((fallbackBase == null) ? null : fallbackBase.newStatelessKieSession());
+	}
+	
+	/**
+	 * @return Number of rules evaluated without Drools.
+	 */
+	public int getCompiledCount()
+	{
+		return compiled.length;
+	}
+	
+	public EvaluationMode getMode()
+	{
+		return mode;
+	}
+	
+	/**
+	 * @return Rules evaluated by Drools.
+	 */
+	public List<Rule> getFallbackRules()
+	{
+		return fallback;
+	}
+}
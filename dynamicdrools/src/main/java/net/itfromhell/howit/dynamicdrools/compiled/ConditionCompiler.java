@@ -0,0 +1,414 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Date;
+import net.itfromhell.howit.dynamicdrools.Condition;
+
+/**
+ * Compiler of conditions into predicates evaluated straight over the facts.<br>
+ * Properties are read through <b>MethodHandle</b> accessors bound to the getters of the data object, numbers are
+ * compared as primitives and points in time by {@link Condition#timeOf(Object) their time}, mirroring the expressions
+ * written by {@link Condition#buildExpression(Class)}. Texts are searched by
+ * {@link Condition#containsFolded(CharSequence, String)}, as the expressions do.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see Condition
+ */
+public final class ConditionCompiler
+{
+	private ConditionCompiler()
+	{
+	}
+	
+	/**
+	 * Compiles a condition over a data object.
+	 * 
+	 * @param type Class of the data object.
+	 * @param condition Condition to be compiled.
+	 * @return Predicate of the condition, or null when the condition can only be evaluated by Drools, as one over a
+	 * number of a type the operators do not list.
+	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
+	 */
+	public static FactPredicate compile(Class<?> type, Condition condition) throws IllegalArgumentException
+	{
+		String property = condition.getProperty();
+		Condition.Operator operator = condition.getOperator();
+		Object value = condition.getValue();
+		if ((property == null) || (property.indexOf('.') >= 0) || (operator == null) || (value == null))
+		{
+			return null;
+		}
+		
+		if (!operator.isComparable((value instanceof Date) ? Date.class : value.getClass()))
+		{
+			//Values Drools still renders, like a BigDecimal, are left to it, the others are rejected as it rejects them
+			condition.buildExpression();
+			return null;
+		}
+		
+		Method getter = findGetter(type, property);
+		if (getter == null)
+		{
+			return null;
+		}
+		
+		MethodHandle handle;
+		try
+		{
+			handle = MethodHandles.publicLookup().unreflect(getter);
+		}
+		catch (IllegalAccessException e)
+		{
+			return null;
+		}
+		
+		Class<?> returned = getter.getReturnType();
+		if (value instanceof String)
+		{
+			if (!returned.equals(String.class))
+			{
+				return null;
+			}
+			
+			return new StringPredicate(handle.asType(MethodType.methodType(Object.class, Object.class)), operator, (String)value);
+		}
+		else if (value instanceof Number)
+		{
+			if (!returned.isPrimitive() || returned.equals(boolean.class) || returned.equals(char.class))
+			{
+				return null;
+			}
+			
+			if (isIntegral(returned) && ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)))
+			{
+				return new LongPredicate(handle.asType(MethodType.methodType(long.class, Object.class)), operator, ((Number)value).longValue());
+			}
+			
+			return new DoublePredicate(handle.asType(MethodType.methodType(double.class, Object.class)), operator, condition.getValueAsDouble());
+		}
+		else if (Condition.isTemporal(value))
+		{
+			//Rejects the properties the expression rejects, as a LocalDate compared with a time
+			return new DatePredicate(handle.asType(MethodType.methodType(Object.class, Object.class)), operator, condition.getValueAsTime(returned));
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Finds the public getter of a property, following the JavaBeans naming.
+	 * 
+	 * @param type Class of the data object.
+	 * @param property Name of the property.
+	 * @return Getter of the property, or null when there is not one.
+	 */
+	public static Method findGetter(Class<?> type, String property)
+	{
+		if (property.isEmpty())
+		{
+			return null;
+		}
+		
+		String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+		for (String prefix : new String[] {"get", "is"})
+		{
+			try
+			{
+				Method method = type.getMethod(prefix + suffix);
+				if (!method.getReturnType().equals(void.class))
+				{
+					return method;
+				}
+			}
+			catch (NoSuchMethodException e)
+			{
+				//Tries the next naming
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Creates an accessor reading a property of the data object as an object.
+	 * 
+	 * @param type Class of the data object.
+	 * @param property Name of the property.
+	 * @return Accessor typed as <i>(Object)Object</i>, or null when the property has no public getter.
+	 */
+	static MethodHandle accessor(Class<?> type, String property)
+	{
+		Method getter = findGetter(type, property);
+		if (getter == null)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return MethodHandles.publicLookup().unreflect(getter).asType(MethodType.methodType(Object.class, Object.class));
+		}
+		catch (IllegalAccessException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Creates an accessor reading a primitive number property of the data object without boxing it.
+	 * 
+	 * @param type Class of the data object.
+	 * @param property Name of the property.
+	 * @return Accessor typed as <i>(Object)double</i>, or null when the property has no public getter of a primitive
+	 * number.
+	 */
+	static MethodHandle numberAccessor(Class<?> type, String property)
+	{
+		Method getter = findGetter(type, property);
+		if ((getter == null) || !getter.getReturnType().isPrimitive() || getter.getReturnType().equals(boolean.class) || getter.getReturnType().equals(char.class))
+		{
+			return null;
+		}
+		
+		try
+		{
+			return MethodHandles.publicLookup().unreflect(getter).asType(MethodType.methodType(double.class, Object.class));
+		}
+		catch (IllegalAccessException e)
+		{
+			return null;
+		}
+	}
+	
+	private static boolean isIntegral(Class<?> type)
+	{
+		return type.equals(long.class) || type.equals(int.class) || type.equals(short.class) || type.equals(byte.class);
+	}
+	
+	/**
+	 * Compares two primitive values using the operator.
+	 */
+	static boolean compare(double left, Condition.Operator operator, double right)
+	{
+		switch (operator)
+		{
+			case EQUAL_TO:
+				return left == right;
+			case NOT_EQUAL_TO:
+				return left != right;
+			case GREATER_THAN:
+				return left > right;
+			case LESS_THAN:
+				return left < right;
+			case GREATER_THAN_OR_EQUAL_TO:
+				return left >= right;
+			case LESS_THAN_OR_EQUAL_TO:
+				return left <= right;
+			default:
+				throw new IllegalArgumentException("Is not possible to use the operator " + operator.getDescription() + " to a number.");
+		}
+	}
+	
+	/**
+	 * Compares two primitive values using the operator.
+	 */
+	static boolean compare(long left, Condition.Operator operator, long right)
+	{
+		switch (operator)
+		{
+			case EQUAL_TO:
+				return left == right;
+			case NOT_EQUAL_TO:
+				return left != right;
+			case GREATER_THAN:
+				return left > right;
+			case LESS_THAN:
+				return left < right;
+			case GREATER_THAN_OR_EQUAL_TO:
+				return left >= right;
+			case LESS_THAN_OR_EQUAL_TO:
+				return left <= right;
+			default:
+				throw new IllegalArgumentException("Is not possible to use the operator " + operator.getDescription() + " to a number.");
+		}
+	}
+	
+	/**
+	 * Invocation failure of an accessor, which can only be a failure of the getter itself.
+	 */
+	static IllegalStateException failure(Throwable cause)
+	{
+		if (cause instanceof RuntimeException)
+		{
+			throw (RuntimeException)cause;
+		}
+		if (cause instanceof Error)
+		{
+			throw (Error)cause;
+		}
+		
+		return new IllegalStateException("Failure reading property of data object.", cause);
+	}
+	
+	/**
+	 * Condition over a decimal property.
+	 */
+	private static class DoublePredicate implements FactPredicate
+	{
+		private final MethodHandle getter;
+		private final Condition.Operator operator;
+		private final double value;
+		
+		private DoublePredicate(MethodHandle getter, Condition.Operator operator, double value)
+		{
+			this.getter = getter;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		@Override
+		public boolean test(Object fact)
+		{
+			try
+			{
+				return compare((double)getter.invokeExact(fact), operator, value);
+			}
+			catch (Throwable e)
+			{
+				throw failure(e);
+			}
+		}
+	}
+	
+	/**
+	 * Condition over an integral property compared with an integral value.
+	 */
+	private static class LongPredicate implements FactPredicate
+	{
+		private final MethodHandle getter;
+		private final Condition.Operator operator;
+		private final long value;
+		
+		private LongPredicate(MethodHandle getter, Condition.Operator operator, long value)
+		{
+			this.getter = getter;
+			this.operator = operator;
+			this.value = value;
+		}
+		
+		@Override
+		public boolean test(Object fact)
+		{
+			try
+			{
+				return compare((long)getter.invokeExact(fact), operator, value);
+			}
+			catch (Throwable e)
+			{
+				throw failure(e);
+			}
+		}
+	}
+	
+	/**
+	 * Condition over a <b>Date</b>, <b>Instant</b> or <b>LocalDate</b> property.
+	 */
+	private static class DatePredicate implements FactPredicate
+	{
+		private final MethodHandle getter;
+		private final Condition.Operator operator;
+		private final long time;
+		
+		private DatePredicate(MethodHandle getter, Condition.Operator operator, long time)
+		{
+			this.getter = getter;
+			this.operator = operator;
+			this.time = time;
+		}
+		
+		@Override
+		public boolean test(Object fact)
+		{
+			Object date;
+			try
+			{
+				date = (Object)getter.invokeExact(fact);
+			}
+			catch (Throwable e)
+			{
+				throw failure(e);
+			}
+			
+			if (date == null)
+			{
+				return operator.equals(Condition.Operator.NOT_EQUAL_TO);
+			}
+			
+			return compare(((date instanceof Date) ? ((Date)date).getTime() : Condition.timeOf(date)), operator, time);
+		}
+	}
+	
+	/**
+	 * Condition over a text property.
+	 */
+	private static class StringPredicate implements FactPredicate
+	{
+		private final MethodHandle getter;
+		private final Condition.Operator operator;
+		private final String value;
+		
+		private StringPredicate(MethodHandle getter, Condition.Operator operator, String value)
+		{
+			this.getter = getter;
+			this.operator = operator;
+			this.value = (operator.equals(Condition.Operator.CONTAINS) ? Condition.foldCase(value) : value);
+		}
+		
+		@Override
+		public boolean test(Object fact)
+		{
+			String text;
+			try
+			{
+				text = (String)(Object)getter.invokeExact(fact);
+			}
+			catch (Throwable e)
+			{
+				throw failure(e);
+			}
+			
+			switch (operator)
+			{
+				case EQUAL_TO:
+					return value.equals(text);
+				case NOT_EQUAL_TO:
+					return !value.equals(text);
+				case CONTAINS:
+					return Condition.containsFolded(text, value);
+				default:
+					throw new IllegalArgumentException("Is not possible to use the operator " + operator.getDescription() + " to a String object.");
+			}
+		}
+	}
+}
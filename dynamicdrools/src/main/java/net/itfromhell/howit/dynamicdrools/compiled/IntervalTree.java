@@ -0,0 +1,144 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Static interval tree answering which intervals contain a point.<br>
+ * The intervals are sorted by their lower bound and laid out as an implicit balanced tree, where each node keeps the
+ * greatest upper bound of its subtree. A query takes <i>O(log n + k)</i> for <i>k</i> intervals found.<br>
+ * Bounds are always inclusive.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+class IntervalTree
+{
+	/**
+	 * Lower bounds, in ascending order.
+	 */
+	private final double[] lows;
+	/**
+	 * Upper bounds.
+	 */
+	private final double[] highs;
+	/**
+	 * Greatest upper bound of the subtree rooted at each node.
+	 */
+	private final double[] maxHighs;
+	/**
+	 * Identifier of each interval.
+	 */
+	private final int[] ids;
+	
+	/**
+	 * Builds the tree.
+	 * 
+	 * @param lows Lower bounds.
+	 * @param highs Upper bounds.
+	 * @param ids Identifier of each interval.
+	 * @param size Number of intervals.
+	 */
+	IntervalTree(final double[] lows, final double[] highs, int[] ids, int size)
+	{
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++)
+		{
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer left, Integer right)
+			{
+				return Double.compare(lows[left], lows[right]);
+			}
+		});
+		
+		this.lows = new double[size];
+		this.highs = new double[size];
+		this.maxHighs = new double[size];
+		this.ids = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			this.lows[i] = lows[order[i]];
+			this.highs[i] = highs[order[i]];
+			this.ids[i] = ids[order[i]];
+		}
+		
+		build(0, size);
+	}
+	
+	/**
+	 * Calculates the greatest upper bound of the subtree over the range.
+	 */
+	private double build(int from, int to)
+	{
+		if (from >= to)
+		{
+			return Double.NEGATIVE_INFINITY;
+		}
+		
+		int middle = (from + to) >>> 1;
+		double max = Math.max(highs[middle], Math.max(build(from, middle), build(middle + 1, to)));
+		maxHighs[middle] = max;
+		
+		return max;
+	}
+	
+	/**
+	 * Finds all intervals containing the point.
+	 * 
+	 * @param point Point to be found.
+	 * @param found Set receiving the identifiers found.
+	 */
+	void find(double point, Candidates found)
+	{
+		find(point, found, 0, lows.length);
+	}
+	
+	private void find(double point, Candidates found, int from, int to)
+	{
+		while (from < to)
+		{
+			int middle = (from + to) >>> 1;
+			if (maxHighs[middle] < point)
+			{
+				return;
+			}
+			
+			find(point, found, from, middle);
+			if (lows[middle] > point)
+			{
+				return;
+			}
+			if (highs[middle] >= point)
+			{
+				found.add(ids[middle]);
+			}
+			from = middle + 1;
+		}
+	}
+	
+	int size()
+	{
+		return lows.length;
+	}
+}
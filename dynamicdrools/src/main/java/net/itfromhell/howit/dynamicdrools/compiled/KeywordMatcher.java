@@ -0,0 +1,209 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import net.itfromhell.howit.dynamicdrools.Condition;
+
+/**
+ * Case insensitive Aho-Corasick automaton finding all keywords contained in a text with a single scan.<br>
+ * Keywords are added first and the automaton is built once by {@link #build()}. Afterwards, the matcher is immutable
+ * and scanning a text allocates nothing.<br>
+ * Characters are compared by their upper case, one by one, the fold of {@link Condition#foldCase(String)}.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see RuleIndex
+ */
+class KeywordMatcher
+{
+	/**
+	 * Transitions of each node while keywords are added.
+	 */
+	private List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+	/**
+	 * Identifiers of the keywords ending at each node while keywords are added.
+	 */
+	private List<int[]> endings = new ArrayList<int[]>();
+	/**
+	 * Sorted characters of the transitions of each node.
+	 */
+	private char[][] labels;
+	/**
+	 * Target nodes of the transitions of each node.
+	 */
+	private int[][] targets;
+	/**
+	 * Node to follow when there is no transition.
+	 */
+	private int[] failures;
+	/**
+	 * Nearest node in the failure chain with keywords ending on it, -1 for none.
+	 */
+	private int[] dictionary;
+	/**
+	 * Identifiers of the keywords ending at each node.
+	 */
+	private int[][] outputs;
+	
+	KeywordMatcher()
+	{
+		trie.add(new TreeMap<Character, Integer>());
+		endings.add(null);
+	}
+	
+	/**
+	 * Adds a keyword.
+	 * 
+	 * @param keyword Keyword to be found, not empty.
+	 * @param id Identifier reported when the keyword is found.
+	 */
+	void add(String keyword, int id)
+	{
+		int node = 0;
+		for (int i = 0; i < keyword.length(); i++)
+		{
+			Character c = Character.toUpperCase(keyword.charAt(i));
+			Integer next = trie.get(node).get(c);
+			if (next == null)
+			{
+				next = trie.size();
+				trie.add(new TreeMap<Character, Integer>());
+				endings.add(null);
+				trie.get(node).put(c, next);
+			}
+			node = next;
+		}
+		
+		int[] ids = endings.get(node);
+		if (ids == null)
+		{
+			ids = new int[] {id};
+		}
+		else
+		{
+			ids = Arrays.copyOf(ids, ids.length + 1);
+			ids[ids.length - 1] = id;
+		}
+		endings.set(node, ids);
+	}
+	
+	/**
+	 * Builds the automaton from the keywords added.
+	 */
+	void build()
+	{
+		int size = trie.size();
+		labels = new char[size][];
+		targets = new int[size][];
+		failures = new int[size];
+		dictionary = new int[size];
+		outputs = endings.toArray(new int[size][]);
+		
+		for (int node = 0; node < size; node++)
+		{
+			TreeMap<Character, Integer> transitions = trie.get(node);
+			labels[node] = new char[transitions.size()];
+			targets[node] = new int[transitions.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> transition : transitions.entrySet())
+			{
+				labels[node][i] = transition.getKey();
+				targets[node][i] = transition.getValue();
+				i++;
+			}
+		}
+		
+		//Failure links are resolved breadth first, so the links of shorter prefixes are always ready
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		dictionary[0] = -1;
+		for (int child : targets[0])
+		{
+			failures[child] = 0;
+			dictionary[child] = -1;
+			queue.add(child);
+		}
+		while (!queue.isEmpty())
+		{
+			int node = queue.poll();
+			for (int i = 0; i < labels[node].length; i++)
+			{
+				int child = targets[node][i];
+				int failure = failures[node];
+				int next;
+				while (((next = transition(failure, labels[node][i])) < 0) && (failure != 0))
+				{
+					failure = failures[failure];
+				}
+				failures[child] = ((next < 0) ? 0 : next);
+				dictionary[child] = ((outputs[failures[child]] != null) ? failures[child] : dictionary[failures[child]]);
+				queue.add(child);
+			}
+		}
+		
+		trie = null;
+		endings = null;
+	}
+	
+	/**
+	 * Finds the transition of a node for a character.
+	 * 
+	 * @return Target node, or -1 when there is no transition.
+	 */
+	private int transition(int node, char c)
+	{
+		int position = Arrays.binarySearch(labels[node], c);
+		
+		return ((position < 0) ? -1 : targets[node][position]);
+	}
+	
+	/**
+	 * Scans the text once, reporting every keyword found on it.
+	 * 
+	 * @param text Text to be scanned.
+	 * @param found Set receiving the identifiers of the keywords found.
+	 */
+	void find(CharSequence text, Candidates found)
+	{
+		int node = 0;
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = Character.toUpperCase(text.charAt(i));
+			int next;
+			while (((next = transition(node, c)) < 0) && (node != 0))
+			{
+				node = failures[node];
+			}
+			node = ((next < 0) ? 0 : next);
+			
+			for (int output = ((outputs[node] != null) ? node : dictionary[node]); output >= 0; output = dictionary[output])
+			{
+				for (int id : outputs[output])
+				{
+					found.add(id);
+				}
+			}
+		}
+	}
+}
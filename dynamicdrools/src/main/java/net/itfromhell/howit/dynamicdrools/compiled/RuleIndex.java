@@ -0,0 +1,459 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.compiled;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.itfromhell.howit.dynamicdrools.Condition;
+
+/**
+ * Index of compiled rules by their conditions, finding the candidate rules for a fact without testing all of them.<br>
+ * Each rule is indexed once, by one of its conditions: an <i>EQUAL_TO</i> condition goes into a hash table of its
+ * property, a <i>CONTAINS</i> condition goes into the keyword automaton of its property, otherwise the range built
+ * from its <i>GREATER_THAN</i> and <i>LESS_THAN</i> conditions over a number or a date goes into an interval tree of
+ * its property. Rules without any of these conditions are always candidates.<br>
+ * The candidates are a superset of the matching rules, each of them must still be tested with
+ * {@link CompiledRule#matches(Object)}. Rules whose ranges can never be satisfied are not candidates at all.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see CompiledRuleEngine
+ */
+public class RuleIndex
+{
+	/**
+	 * Indexes of each class of data object.
+	 */
+	private final TypeIndex[] types;
+	
+	/**
+	 * Builds the index.
+	 * 
+	 * @param rules Compiled rules, identified by their position.
+	 */
+	public RuleIndex(CompiledRule[] rules)
+	{
+		Map<Class<?>, TypeIndex> byType = new LinkedHashMap<Class<?>, TypeIndex>();
+		for (int i = 0; i < rules.length; i++)
+		{
+			TypeIndex index = byType.get(rules[i].getType());
+			if (index == null)
+			{
+				index = new TypeIndex(rules[i].getType());
+				byType.put(rules[i].getType(), index);
+			}
+			index.add(i, rules[i].getRule().getConditions());
+		}
+		
+		this.types = byType.values().toArray(new TypeIndex[byType.size()]);
+		for (TypeIndex index : types)
+		{
+			index.build();
+		}
+	}
+	
+	/**
+	 * Finds the candidate rules for a fact.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @param found Set receiving the positions of candidate rules, cleared before the search.
+	 */
+	public void candidates(Object fact, Candidates found)
+	{
+		found.clear();
+		for (TypeIndex index : types)
+		{
+			if (index.type.isInstance(fact))
+			{
+				index.candidates(fact, found);
+			}
+		}
+	}
+	
+	/**
+	 * Key of a value in the hash tables, equal for values compared as equal by the conditions.
+	 * 
+	 * @param value Value of a property.
+	 * @return Key of the value.
+	 */
+	private static Object key(Object value)
+	{
+		if (value instanceof Number)
+		{
+			return Double.valueOf(((Number)value).doubleValue());
+		}
+		else if (Condition.isTemporal(value))
+		{
+			return Double.valueOf(Condition.timeOf(value));
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Key of the value of a condition in the hash tables.
+	 * 
+	 * @param type Class of the data object, deciding the time of a point in time.
+	 */
+	private static Object key(Condition condition, Class<?> type)
+	{
+		if (Condition.isTemporal(condition.getValue()))
+		{
+			return Double.valueOf(condition.getValueAsTime(condition.propertyType(type)));
+		}
+		else if (condition.getValue() instanceof Number)
+		{
+			return Double.valueOf(condition.getValueAsDouble());
+		}
+		
+		return key(condition.getValue());
+	}
+	
+	/**
+	 * Position of a value in the intervals, or NaN when the value is not a number nor a date.
+	 */
+	private static double point(Object key)
+	{
+		return ((key instanceof Double) ? (Double)key : Double.NaN);
+	}
+	
+	/**
+	 * Indexes of the rules of one class of data object.
+	 */
+	private static class TypeIndex
+	{
+		private final Class<?> type;
+		private final Map<String, EqualityIndex> equalities = new LinkedHashMap<String, EqualityIndex>();
+		private final Map<String, ContainsIndex> keywords = new LinkedHashMap<String, ContainsIndex>();
+		private final Map<String, RangeIndex> ranges = new LinkedHashMap<String, RangeIndex>();
+		private final List<Integer> pending = new ArrayList<Integer>();
+		private EqualityIndex[] equalityIndexes;
+		private ContainsIndex[] keywordIndexes;
+		private RangeIndex[] rangeIndexes;
+		private int[] unindexed;
+		
+		private TypeIndex(Class<?> type)
+		{
+			this.type = type;
+		}
+		
+		/**
+		 * Indexes a rule by the most selective of its conditions.
+		 */
+		private void add(int rule, List<Condition> conditions)
+		{
+			for (Condition condition : conditions)
+			{
+				if (condition.getOperator().equals(Condition.Operator.EQUAL_TO))
+				{
+					EqualityIndex index = equalities.get(condition.getProperty());
+					if (index == null)
+					{
+						index = new EqualityIndex(ConditionCompiler.accessor(type, condition.getProperty()));
+						equalities.put(condition.getProperty(), index);
+					}
+					index.add(key(condition, type), rule);
+					return;
+				}
+			}
+			
+			for (Condition condition : conditions)
+			{
+				if (condition.getOperator().equals(Condition.Operator.CONTAINS) && !((String)condition.getValue()).isEmpty())
+				{
+					ContainsIndex index = keywords.get(condition.getProperty());
+					if (index == null)
+					{
+						index = new ContainsIndex(ConditionCompiler.accessor(type, condition.getProperty()));
+						keywords.put(condition.getProperty(), index);
+					}
+					index.matcher.add((String)condition.getValue(), rule);
+					return;
+				}
+			}
+			
+			//The range of each property is the intersection of all bounds declared over it
+			Map<String, double[]> bounds = new LinkedHashMap<String, double[]>();
+			for (Condition condition : conditions)
+			{
+				double point = point(key(condition, type));
+				if (Double.isNaN(point))
+				{
+					continue;
+				}
+				
+				double[] range = bounds.get(condition.getProperty());
+				if (range == null)
+				{
+					range = new double[] {Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY};
+				}
+				switch (condition.getOperator())
+				{
+					case GREATER_THAN:
+					case GREATER_THAN_OR_EQUAL_TO:
+						range[0] = Math.max(range[0], point);
+						bounds.put(condition.getProperty(), range);
+						break;
+					case LESS_THAN:
+					case LESS_THAN_OR_EQUAL_TO:
+						range[1] = Math.min(range[1], point);
+						bounds.put(condition.getProperty(), range);
+						break;
+					default:
+						break;
+				}
+			}
+			
+			String property = null;
+			for (Map.Entry<String, double[]> bound : bounds.entrySet())
+			{
+				double[] range = bound.getValue();
+				if (range[0] > range[1])
+				{
+					//Never satisfied
+					return;
+				}
+				if ((property == null) || (!Double.isInfinite(range[0]) && !Double.isInfinite(range[1])))
+				{
+					property = bound.getKey();
+				}
+			}
+			
+			if (property == null)
+			{
+				pending.add(rule);
+				return;
+			}
+			
+			RangeIndex index = ranges.get(property);
+			if (index == null)
+			{
+				index = new RangeIndex(ConditionCompiler.accessor(type, property), ConditionCompiler.numberAccessor(type, property));
+				ranges.put(property, index);
+			}
+			double[] range = bounds.get(property);
+			index.add(range[0], range[1], rule);
+		}
+		
+		private void build()
+		{
+			equalityIndexes = equalities.values().toArray(new EqualityIndex[equalities.size()]);
+			keywordIndexes = keywords.values().toArray(new ContainsIndex[keywords.size()]);
+			for (ContainsIndex index : keywordIndexes)
+			{
+				index.matcher.build();
+			}
+			rangeIndexes = ranges.values().toArray(new RangeIndex[ranges.size()]);
+			for (RangeIndex index : rangeIndexes)
+			{
+				index.build();
+			}
+			
+			unindexed = new int[pending.size()];
+			for (int i = 0; i < unindexed.length; i++)
+			{
+				unindexed[i] = pending.get(i);
+			}
+		}
+		
+		private void candidates(Object fact, Candidates found)
+		{
+			for (EqualityIndex index : equalityIndexes)
+			{
+				index.candidates(fact, found);
+			}
+			for (ContainsIndex index : keywordIndexes)
+			{
+				index.candidates(fact, found);
+			}
+			for (RangeIndex index : rangeIndexes)
+			{
+				index.candidates(fact, found);
+			}
+			for (int rule : unindexed)
+			{
+				found.add(rule);
+			}
+		}
+	}
+	
+	/**
+	 * Hash table of the rules by the value of one property.
+	 */
+	private static class EqualityIndex
+	{
+		private final MethodHandle getter;
+		private final Map<Object, int[]> buckets = new HashMap<Object, int[]>();
+		
+		private EqualityIndex(MethodHandle getter)
+		{
+			this.getter = getter;
+		}
+		
+		private void add(Object key, int rule)
+		{
+			int[] bucket = buckets.get(key);
+			if (bucket == null)
+			{
+				bucket = new int[] {rule};
+			}
+			else
+			{
+				int[] grown = new int[bucket.length + 1];
+				System.arraycopy(bucket, 0, grown, 0, bucket.length);
+				grown[bucket.length] = rule;
+				bucket = grown;
+			}
+			buckets.put(key, bucket);
+		}
+		
+		private void candidates(Object fact, Candidates found)
+		{
+			Object value = read(getter, fact);
+			if (value == null)
+			{
+				return;
+			}
+			
+			int[] bucket = buckets.get(key(value));
+			if (bucket != null)
+			{
+				for (int rule : bucket)
+				{
+					found.add(rule);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Keyword automaton of the rules by the texts contained in one property.
+	 */
+	private static class ContainsIndex
+	{
+		private final MethodHandle getter;
+		private final KeywordMatcher matcher = new KeywordMatcher();
+		
+		private ContainsIndex(MethodHandle getter)
+		{
+			this.getter = getter;
+		}
+		
+		private void candidates(Object fact, Candidates found)
+		{
+			Object value = read(getter, fact);
+			if (value instanceof CharSequence)
+			{
+				matcher.find((CharSequence)value, found);
+			}
+		}
+	}
+	
+	/**
+	 * Interval tree of the rules by the range of one property.
+	 */
+	private static class RangeIndex
+	{
+		private final MethodHandle getter;
+		/**
+		 * Getter of a primitive number property, read without boxing, null for other properties.
+		 */
+		private final MethodHandle number;
+		private double[] lows = new double[16];
+		private double[] highs = new double[16];
+		private int[] rules = new int[16];
+		private int size;
+		private IntervalTree tree;
+		
+		private RangeIndex(MethodHandle getter, MethodHandle number)
+		{
+			this.getter = getter;
+			this.number = number;
+		}
+		
+		private void add(double low, double high, int rule)
+		{
+			if (size == rules.length)
+			{
+				lows = Arrays.copyOf(lows, size * 2);
+				highs = Arrays.copyOf(highs, size * 2);
+				rules = Arrays.copyOf(rules, size * 2);
+			}
+			lows[size] = low;
+			highs[size] = high;
+			rules[size] = rule;
+			size++;
+		}
+		
+		private void build()
+		{
+			tree = new IntervalTree(lows, highs, rules, size);
+			lows = null;
+			highs = null;
+			rules = null;
+		}
+		
+		private void candidates(Object fact, Candidates found)
+		{
+			double point;
+			if (number != null)
+			{
+				point = readNumber(number, fact);
+			}
+			else
+			{
+				Object value = read(getter, fact);
+				point = ((value instanceof Date) ? ((Date)value).getTime() : ((value == null) ? Double.NaN : point(key(value))));
+			}
+			if (!Double.isNaN(point))
+			{
+				tree.find(point, found);
+			}
+		}
+	}
+	
+	private static double readNumber(MethodHandle getter, Object fact)
+	{
+		try
+		{
+			return (double)getter.invokeExact(fact);
+		}
+		catch (Throwable e)
+		{
+			throw ConditionCompiler.failure(e);
+		}
+	}
+	
+	private static Object read(MethodHandle getter, Object fact)
+	{
+		try
+		{
+			return (Object)getter.invokeExact(fact);
+		}
+		catch (Throwable e)
+		{
+			throw ConditionCompiler.failure(e);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds with power of two buckets.<br>
+ * Recording is lock-free and allocation-free, at the price of percentiles known only up to the upper bound of their
+ * bucket, which is at most twice the real value.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class LatencyHistogram
+{
+	/**
+	 * Number of buckets, the bucket <i>i</i> holds the durations from 2<sup>i-1</sup> to 2<sup>i</sup> - 1.
+	 */
+	private static final int BUCKETS = 64;
+	
+	private final LongAdder[] counts = new LongAdder[BUCKETS];
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Records a duration.
+	 * 
+	 * @param nanos Duration in nanoseconds, negative durations are taken as zero.
+	 */
+	public void record(long nanos)
+	{
+		long duration = Math.max(nanos, 0L);
+		counts[BUCKETS - Long.numberOfLeadingZeros(duration)].increment();
+		total.add(duration);
+		
+		long current = max.get();
+		while ((duration > current) && !max.compareAndSet(current, duration))
+		{
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * Discards all recorded durations.
+	 */
+	public void reset()
+	{
+		for (LongAdder count : counts)
+		{
+			count.reset();
+		}
+		total.reset();
+		max.set(0L);
+	}
+	
+	/**
+	 * Copies the current state of the histogram.<br>
+	 * Durations recorded while copying may be partially reflected.
+	 * 
+	 * @return Immutable copy of the histogram.
+	 */
+	public Snapshot snapshot()
+	{
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			copy[i] = counts[i].sum();
+		}
+		
+		return new Snapshot(copy, total.sum(), max.get());
+	}
+	
+	/**
+	 * Immutable state of a histogram.
+	 */
+	public static class Snapshot
+	{
+		private final long[] counts;
+		private final long count;
+		private final long total;
+		private final long max;
+		
+		private Snapshot(long[] counts, long total, long max)
+		{
+			long sum = 0;
+			for (long count : counts)
+			{
+				sum += count;
+			}
+			
+			this.counts = counts;
+			this.count = sum;
+			this.total = total;
+			this.max = max;
+		}
+		
+		/**
+		 * Estimates a percentile of the recorded durations.
+		 * 
+		 * @param quantile Fraction of durations below the result, from 0 to 1.
+		 * @return Upper bound of the bucket holding the percentile, never above the longest duration; zero when nothing
+		 * was recorded.
+		 */
+		public long getPercentile(double quantile)
+		{
+			if ((quantile < 0) || (quantile > 1))
+			{
+				throw new IllegalArgumentException("The quantile must be between 0 and 1.");
+			}
+			
+			long rank = Math.max(1L, (long)Math.ceil(quantile * count));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++)
+			{
+				seen += counts[i];
+				if (seen >= rank)
+				{
+					return Math.min((1L << i) - 1, max);
+				}
+			}
+			
+			return max;
+		}
+		
+		/**
+		 * @return Mean of the recorded durations in nanoseconds, zero when nothing was recorded.
+		 */
+		public double getMean()
+		{
+			return ((count == 0) ? 0.0 : ((double)total / count));
+		}
+		
+		public long getCount()
+		{
+			return count;
+		}
+		
+		/**
+		 * @return Sum of the recorded durations in nanoseconds.
+		 */
+		public long getTotal()
+		{
+			return total;
+		}
+		
+		/**
+		 * @return Longest recorded duration in nanoseconds.
+		 */
+		public long getMax()
+		{
+			return max;
+		}
+		
+		@Override
+		public String toString()
+		{
+			StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+			me.append(" | count = ");
+			me.append(count);
+			me.append(" | mean = ");
+			me.append(getMean());
+			me.append(" | p50 = ");
+			me.append(getPercentile(0.5));
+			me.append(" | p99 = ");
+			me.append(getPercentile(0.99));
+			me.append(" | max = ");
+			me.append(max);
+			me.append("]");
+			
+			return me.toString();
+		}
+	}
+}
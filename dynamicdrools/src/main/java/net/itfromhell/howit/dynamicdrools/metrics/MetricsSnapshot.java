@@ -0,0 +1,143 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable copy of the measurements of a {@link RuleMetrics}.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class MetricsSnapshot
+{
+	/**
+	 * Number of firings by rule name.
+	 */
+	private final Map<String, Long> firedRules;
+	private final long insertedFacts;
+	private final long updatedFacts;
+	private final long deletedFacts;
+	/**
+	 * Number of facts evaluated by all batches.
+	 */
+	private final long batchFacts;
+	/**
+	 * Duration of each batched execution.
+	 */
+	private final LatencyHistogram.Snapshot batchLatency;
+	/**
+	 * Number of rules compiled by all compilations.
+	 */
+	private final long compiledRules;
+	/**
+	 * Duration of each compilation.
+	 */
+	private final LatencyHistogram.Snapshot compileTime;
+	
+	MetricsSnapshot(Map<String, Long> firedRules, long insertedFacts, long updatedFacts, long deletedFacts, long batchFacts, LatencyHistogram.Snapshot batchLatency, long compiledRules, LatencyHistogram.Snapshot compileTime)
+	{
+		this.firedRules = Collections.unmodifiableMap(firedRules);
+		this.insertedFacts = insertedFacts;
+		this.updatedFacts = updatedFacts;
+		this.deletedFacts = deletedFacts;
+		this.batchFacts = batchFacts;
+		this.batchLatency = batchLatency;
+		this.compiledRules = compiledRules;
+		this.compileTime = compileTime;
+	}
+	
+	/**
+	 * @return Number of firings of all rules.
+	 */
+	public long getTotalFired()
+	{
+		long total = 0;
+		for (Long fired : firedRules.values())
+		{
+			total += fired;
+		}
+		
+		return total;
+	}
+	
+	public Map<String, Long> getFiredRules()
+	{
+		return firedRules;
+	}
+	
+	public long getInsertedFacts()
+	{
+		return insertedFacts;
+	}
+	
+	public long getUpdatedFacts()
+	{
+		return updatedFacts;
+	}
+	
+	public long getDeletedFacts()
+	{
+		return deletedFacts;
+	}
+	
+	public long getBatchFacts()
+	{
+		return batchFacts;
+	}
+	
+	public LatencyHistogram.Snapshot getBatchLatency()
+	{
+		return batchLatency;
+	}
+	
+	public long getCompiledRules()
+	{
+		return compiledRules;
+	}
+	
+	public LatencyHistogram.Snapshot getCompileTime()
+	{
+		return compileTime;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | fired = ");
+		me.append(getTotalFired());
+		me.append(" | firedRules = ");
+		me.append(firedRules.size());
+		me.append(" | insertedFacts = ");
+		me.append(insertedFacts);
+		me.append(" | batchFacts = ");
+		me.append(batchFacts);
+		me.append(" | batchLatency = ");
+		me.append(batchLatency);
+		me.append(" | compiledRules = ");
+		me.append(compiledRules);
+		me.append(" | compileTime = ");
+		me.append(compileTime);
+		me.append("]");
+		
+		return me.toString();
+	}
+}
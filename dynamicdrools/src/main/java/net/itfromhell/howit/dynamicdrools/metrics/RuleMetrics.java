@@ -0,0 +1,427 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.kie.api.event.KieRuntimeEventManager;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+
+/**
+ * Measurements of rule compilation and evaluation, replacing the printing of every firing.<br>
+ * Firings and facts are counted by Drools listeners attached to the sessions, while batched executions and
+ * compilations are timed by their callers. Everything is kept in striped counters, so threads evaluating facts do not
+ * contend with each other.<br>
+ * When disabled, listeners are not attached to new sessions, listeners already attached return at once and callers
+ * do not read the clock, so the cost is a read of a volatile flag.<br>
+ * The measurements are available as a {@link MetricsSnapshot} or through JMX once {@link #register(String)} is called.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleMetrics implements RuleMetricsMXBean
+{
+	/**
+	 * JMX domain of the published metrics.
+	 */
+	public static final String DOMAIN = "net.itfromhell.howit.dynamicdrools";
+	
+	private static final double NANOS_PER_MICRO = 1000.0;
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	
+	/**
+	 * Indicates the measurements are being taken.
+	 */
+	private volatile boolean enabled;
+	/**
+	 * Number of firings by rule name.
+	 */
+	private final ConcurrentMap<String, LongAdder> fired = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder inserted = new LongAdder();
+	private final LongAdder updated = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+	/**
+	 * Number of facts evaluated by all batches.
+	 */
+	private final LongAdder batchFacts = new LongAdder();
+	/**
+	 * Duration of each batched execution.
+	 */
+	private final LatencyHistogram batches = new LatencyHistogram();
+	/**
+	 * Number of rules compiled by all compilations.
+	 */
+	private final LongAdder compiledRules = new LongAdder();
+	/**
+	 * Duration of each compilation.
+	 */
+	private final LatencyHistogram compilations = new LatencyHistogram();
+	/**
+	 * Listener counting firings.
+	 */
+	private final FiringListener firingListener = new FiringListener();
+	/**
+	 * Listener counting facts.
+	 */
+	private final FactListener factListener = new FactListener();
+	/**
+	 * Name under which these metrics are published, null when not published.
+	 */
+	private ObjectName name;
+	
+	/**
+	 * Creates enabled metrics.
+	 */
+	public RuleMetrics()
+	{
+		this(true);
+	}
+	
+	/**
+	 * Creates metrics.
+	 * 
+	 * @param enabled Indicates the measurements are taken from the start.
+	 */
+	public RuleMetrics(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * Counts the firings of each rule.
+	 */
+	private class FiringListener extends DefaultAgendaEventListener
+	{
+		@Override
+		public void afterMatchFired(AfterMatchFiredEvent event)
+		{
+			if (enabled)
+			{
+				String rule = event.getMatch().getRule().getName();
+				LongAdder count = fired.get(rule);
+				if (count == null)
+				{
+					LongAdder created = new LongAdder();
+					count = fired.putIfAbsent(rule, created);
+					if (count == null)
+					{
+						count = created;
+					}
+				}
+				count.increment();
+			}
+		}
+	}
+	
+	/**
+	 * Counts the facts inserted, updated and deleted.
+	 */
+	private class FactListener implements RuleRuntimeEventListener
+	{
+		@Override
+		public void objectInserted(ObjectInsertedEvent event)
+		{
+			if (enabled)
+			{
+				inserted.increment();
+			}
+		}
+		
+		@Override
+		public void objectUpdated(ObjectUpdatedEvent event)
+		{
+			if (enabled)
+			{
+				updated.increment();
+			}
+		}
+		
+		@Override
+		public void objectDeleted(ObjectDeletedEvent event)
+		{
+			if (enabled)
+			{
+				deleted.increment();
+			}
+		}
+	}
+	
+	/**
+	 * Attaches the listeners to a session, when enabled.<br>
+	 * A session created while disabled is not measured even if the metrics are enabled later.
+	 * 
+	 * @param session Stateless or stateful session.
+	 */
+	public void attach(KieRuntimeEventManager session)
+	{
+		if (enabled)
+		{
+			session.addEventListener(firingListener);
+			session.addEventListener(factListener);
+		}
+	}
+	
+	/**
+	 * Indicates the measurements are being taken, null metrics are never enabled.<br>
+	 * Callers check it before reading the clock.
+	 * 
+	 * @param metrics Metrics or null.
+	 * @return True when the metrics are enabled.
+	 */
+	public static boolean isEnabled(RuleMetrics metrics)
+	{
+		return ((metrics != null) && metrics.enabled);
+	}
+	
+	/**
+	 * Records a batched execution.
+	 * 
+	 * @param nanos Duration of the execution.
+	 * @param facts Number of facts evaluated.
+	 */
+	public void recordBatch(long nanos, int facts)
+	{
+		if (enabled)
+		{
+			batches.record(nanos);
+			batchFacts.add(facts);
+		}
+	}
+	
+	/**
+	 * Records a compilation.
+	 * 
+	 * @param nanos Duration of the compilation.
+	 * @param rules Number of rules compiled.
+	 */
+	public void recordCompile(long nanos, int rules)
+	{
+		if (enabled)
+		{
+			compilations.record(nanos);
+			compiledRules.add(rules);
+		}
+	}
+	
+	/**
+	 * Copies the current measurements.
+	 * 
+	 * @return Immutable copy of the measurements.
+	 */
+	public MetricsSnapshot snapshot()
+	{
+		return new MetricsSnapshot(getFiredRules(), inserted.sum(), updated.sum(), deleted.sum(), batchFacts.sum(), batches.snapshot(), compiledRules.sum(), compilations.snapshot());
+	}
+	
+	/**
+	 * Publishes these metrics in the platform MBean server.
+	 * 
+	 * @param name Name distinguishing these metrics from others published.
+	 * @throws IllegalStateException Indicates these metrics are already published.
+	 * @throws JMException Indicates the metrics could not be published, as when the name is already in use.
+	 */
+	public synchronized void register(String name) throws IllegalStateException, JMException
+	{
+		if (this.name != null)
+		{
+			throw new IllegalStateException("The metrics are already published as " + this.name + ".");
+		}
+		
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=RuleMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.name = objectName;
+	}
+	
+	/**
+	 * Removes these metrics from the platform MBean server, when published.
+	 * 
+	 * @throws JMException Indicates the metrics could not be removed.
+	 */
+	public synchronized void unregister() throws JMException
+	{
+		if (name != null)
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+			name = null;
+		}
+	}
+	
+	@Override
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	@Override
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+	
+	@Override
+	public Map<String, Long> getFiredRules()
+	{
+		Map<String, Long> copy = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : fired.entrySet())
+		{
+			copy.put(entry.getKey(), entry.getValue().sum());
+		}
+		
+		return copy;
+	}
+	
+	@Override
+	public long getTotalFired()
+	{
+		long total = 0;
+		for (LongAdder count : fired.values())
+		{
+			total += count.sum();
+		}
+		
+		return total;
+	}
+	
+	@Override
+	public long getInsertedFacts()
+	{
+		return inserted.sum();
+	}
+	
+	@Override
+	public long getUpdatedFacts()
+	{
+		return updated.sum();
+	}
+	
+	@Override
+	public long getDeletedFacts()
+	{
+		return deleted.sum();
+	}
+	
+	@Override
+	public long getBatchCount()
+	{
+		return batches.snapshot().getCount();
+	}
+	
+	@Override
+	public long getBatchFacts()
+	{
+		return batchFacts.sum();
+	}
+	
+	@Override
+	public double getBatchMeanMicros()
+	{
+		return batches.snapshot().getMean() / NANOS_PER_MICRO;
+	}
+	
+	@Override
+	public double getBatchP50Micros()
+	{
+		return batches.snapshot().getPercentile(0.5) / NANOS_PER_MICRO;
+	}
+	
+	@Override
+	public double getBatchP99Micros()
+	{
+		return batches.snapshot().getPercentile(0.99) / NANOS_PER_MICRO;
+	}
+	
+	@Override
+	public double getBatchMaxMicros()
+	{
+		return batches.snapshot().getMax() / NANOS_PER_MICRO;
+	}
+	
+	@Override
+	public long getCompileCount()
+	{
+		return compilations.snapshot().getCount();
+	}
+	
+	@Override
+	public long getCompiledRules()
+	{
+		return compiledRules.sum();
+	}
+	
+	@Override
+	public double getCompileMeanMillis()
+	{
+		return compilations.snapshot().getMean() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getCompileMaxMillis()
+	{
+		return compilations.snapshot().getMax() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getCompileTotalMillis()
+	{
+		return compilations.snapshot().getTotal() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public void reset()
+	{
+		fired.clear();
+		inserted.reset();
+		updated.reset();
+		deleted.reset();
+		batchFacts.reset();
+		batches.reset();
+		compiledRules.reset();
+		compilations.reset();
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | enabled = ");
+		me.append(enabled);
+		me.append(" | name = ");
+		me.append(name);
+		me.append(" | fired = ");
+		me.append(getTotalFired());
+		me.append("]");
+		
+		return me.toString();
+	}
+}
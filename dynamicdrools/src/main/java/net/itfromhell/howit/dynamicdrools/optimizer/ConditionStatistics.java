@@ -0,0 +1,711 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.compiled.ConditionCompiler;
+import net.itfromhell.howit.dynamicdrools.compiled.FactPredicate;
+
+/**
+ * Selectivity and cost of the conditions measured over a sample of real facts, used to order the conditions of each
+ * rule so the cheap ones discarding most facts are evaluated first.<br>
+ * The facts offered are kept in a uniform sample of fixed size, taken without evaluating anything, and each refresh
+ * evaluates every condition of the rules registered over that sample, blending the fraction of facts satisfying it
+ * and its time per fact into the statistics of the previous refreshes. Refreshes may be run by hand or periodically
+ * by a background thread, see {@link #start(long, TimeUnit)}.<br>
+ * The conditions of a rule are a conjunction stopping at the first one not satisfied, so they are ordered by
+ * <i>cost / (1 - selectivity)</i>, the lowest first, which minimizes the expected cost for independent conditions.
+ * Drools evaluates identical conditions leading the patterns of different rules once for each fact, sharing the
+ * nodes of its network, so when ordering for Drools the cost of a condition is divided among the rules having it.
+ * The order only changes the rules compiled after it is chosen, as done by the {@link
+ * net.itfromhell.howit.dynamicdrools.util.DroolsUtility} and the {@link
+ * net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine} given these statistics. Rules with a condition not
+ * measured yet, or which can only be evaluated by Drools, keep the order they were written in.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ConditionStatistics
+{
+	private static final Logger LOGGER = Logger.getLogger(ConditionStatistics.class.getName());
+	
+	/**
+	 * Default number of facts kept between refreshes.
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 1000;
+	/**
+	 * Default weight of the latest refresh in the statistics, the previous ones weighing the remainder.
+	 */
+	public static final double DEFAULT_WEIGHT = 0.5;
+	/**
+	 * Passes over the sample timing each condition, the fastest one being kept.
+	 */
+	private static final int PASSES = 3;
+	
+	private final int sampleSize;
+	private final double weight;
+	/**
+	 * Facts kept since the last refresh, guarded by itself.
+	 */
+	private final Object[] sample;
+	private final Random random;
+	/**
+	 * Facts offered since the last refresh.
+	 */
+	private long offered;
+	/**
+	 * Conditions of the rules registered, by data object and expression.
+	 */
+	private final Map<String, Measured> conditions = new LinkedHashMap<String, Measured>();
+	/**
+	 * Statistics of the last refresh, by data object and expression.
+	 */
+	private volatile Map<String, Statistic> statistics = Collections.emptyMap();
+	/**
+	 * Last order chosen for the conditions of each rule, by name of the rule.
+	 */
+	private final Map<String, List<String>> orders = new LinkedHashMap<String, List<String>>();
+	private int refreshes;
+	private ScheduledExecutorService scheduler;
+	
+	/**
+	 * Creates statistics keeping {@link #DEFAULT_SAMPLE_SIZE} facts between refreshes.
+	 */
+	public ConditionStatistics()
+	{
+		this(DEFAULT_SAMPLE_SIZE, DEFAULT_WEIGHT);
+	}
+	
+	/**
+	 * Creates statistics.
+	 * 
+	 * @param sampleSize Number of facts kept between refreshes.
+	 * @param weight Weight of the latest refresh in the statistics, between 0 exclusive and 1 inclusive.
+	 * @throws IllegalArgumentException Indicates a sample size lower than 1 or a weight out of range.
+	 */
+	public ConditionStatistics(int sampleSize, double weight) throws IllegalArgumentException
+	{
+		if (sampleSize < 1)
+		{
+			throw new IllegalArgumentException("The sample must keep at least one fact.");
+		}
+		if (!(weight > 0.0) || (weight > 1.0))
+		{
+			throw new IllegalArgumentException("The weight of the latest refresh must be greater than 0 and up to 1.");
+		}
+		
+		this.sampleSize = sampleSize;
+		this.weight = weight;
+		this.sample = new Object[sampleSize];
+		this.random = new Random();
+	}
+	
+	/**
+	 * Selectivity and cost of a condition.
+	 */
+	public static final class Statistic
+	{
+		private final String dataObject;
+		private final String expression;
+		private final double selectivity;
+		private final double costNanos;
+		private final long samples;
+		
+		private Statistic(String dataObject, String expression, double selectivity, double costNanos, long samples)
+		{
+			this.dataObject = dataObject;
+			this.expression = expression;
+			this.selectivity = selectivity;
+			this.costNanos = costNanos;
+			this.samples = samples;
+		}
+		
+		@Override
+		public String toString()
+		{
+			StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+			me.append(" | dataObject = ");
+			me.append(dataObject);
+			me.append(" | expression = ");
+			me.append(expression);
+			me.append(" | selectivity = ");
+			me.append(String.format("%.4f", selectivity));
+			me.append(" | costNanos = ");
+			me.append(String.format("%.1f", costNanos));
+			me.append(" | rank = ");
+			me.append(String.format("%.1f", getRank()));
+			me.append(" | samples = ");
+			me.append(samples);
+			me.append("]");
+			
+			return me.toString();
+		}
+		
+		public String getDataObject()
+		{
+			return dataObject;
+		}
+		
+		/**
+		 * @return Condition as written into the DRL.
+		 */
+		public String getExpression()
+		{
+			return expression;
+		}
+		
+		/**
+		 * @return Fraction of the facts satisfying the condition, from 0 to 1.
+		 */
+		public double getSelectivity()
+		{
+			return selectivity;
+		}
+		
+		/**
+		 * @return Average time, in nanoseconds, evaluating the condition over a fact.
+		 */
+		public double getCostNanos()
+		{
+			return costNanos;
+		}
+		
+		/**
+		 * @return Cost of the condition for each fact it discards, infinite when it discards none. Conditions of a
+		 * rule are evaluated from the lowest rank.
+		 */
+		public double getRank()
+		{
+			return ((selectivity >= 1.0) ? Double.POSITIVE_INFINITY : costNanos / (1.0 - selectivity));
+		}
+		
+		/**
+		 * @return Facts evaluated by all refreshes.
+		 */
+		public long getSamples()
+		{
+			return samples;
+		}
+	}
+	
+	/**
+	 * Condition registered, with its predicate over the facts.
+	 */
+	private static class Measured
+	{
+		private final Class<?> type;
+		private final String dataObject;
+		private final String expression;
+		/**
+		 * Predicate of the condition, null when it can only be evaluated by Drools.
+		 */
+		private final FactPredicate predicate;
+		
+		private Measured(Class<?> type, String dataObject, String expression, FactPredicate predicate)
+		{
+			this.type = type;
+			this.dataObject = dataObject;
+			this.expression = expression;
+			this.predicate = predicate;
+		}
+	}
+	
+	/**
+	 * Keeps a fact in the sample, replacing a random one when the sample is full so every fact offered since the last
+	 * refresh has the same chance of being kept.<br>
+	 * The fact is evaluated by the next refresh, so a flyweight moved to other values, like a
+	 * {@link net.itfromhell.howit.dummy.ProductView}, must be copied before being offered.
+	 * 
+	 * @param fact Data object evaluated by the rules.
+	 */
+	public void offer(Object fact)
+	{
+		if (fact == null)
+		{
+			return;
+		}
+		
+		synchronized (sample)
+		{
+			long seen = offered++;
+			if (seen < sampleSize)
+			{
+				sample[(int)seen] = fact;
+			}
+			else
+			{
+				long slot = (long)(random.nextDouble() * (seen + 1));
+				if (slot < sampleSize)
+				{
+					sample[(int)slot] = fact;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Keeps some of the facts in the sample.
+	 * 
+	 * @param facts Data objects evaluated by the rules.
+	 * @see #offer(Object)
+	 */
+	public void offer(Iterable<?> facts)
+	{
+		for (Object fact : facts)
+		{
+			offer(fact);
+		}
+	}
+	
+	/**
+	 * Registers the conditions of the rules to be measured by the next refreshes.
+	 * 
+	 * @param rules Rules whose conditions are measured.
+	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
+	 */
+	public synchronized void register(List<Rule> rules) throws IllegalArgumentException
+	{
+		Map<String, Class<?>> types = new HashMap<String, Class<?>>();
+		for (Rule rule : rules)
+		{
+			if ((rule.getConditions() == null) || (rule.getDataObject() == null))
+			{
+				continue;
+			}
+			
+			for (Condition condition : rule.getConditions())
+			{
+				String expression = condition.buildExpression();
+				String key = key(rule.getDataObject(), expression);
+				if (conditions.containsKey(key))
+				{
+					continue;
+				}
+				
+				if (!types.containsKey(rule.getDataObject()))
+				{
+					types.put(rule.getDataObject(), load(rule.getDataObject()));
+				}
+				Class<?> type = types.get(rule.getDataObject());
+				FactPredicate predicate = ((type == null) ? null : compile(type, condition));
+				conditions.put(key, new Measured(type, rule.getDataObject(), expression, predicate));
+			}
+		}
+	}
+	
+	/**
+	 * Compiles a condition to be measured.
+	 * 
+	 * @return Predicate of the condition, or null when only Drools can evaluate it, including a condition the compiler
+	 * rejects, which is left for Drools to report when the rule is compiled.
+	 */
+	private static FactPredicate compile(Class<?> type, Condition condition)
+	{
+		try
+		{
+			return ConditionCompiler.compile(type, condition);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Evaluates the conditions registered over the facts sampled since the last refresh and starts a new sample.<br>
+	 * Conditions over a data object not found in the sample keep their previous statistics.
+	 * 
+	 * @return Statistics of all the conditions measured.
+	 */
+	public List<Statistic> refresh()
+	{
+		List<Object> facts;
+		synchronized (sample)
+		{
+			int kept = (int)Math.min(offered, sampleSize);
+			facts = new ArrayList<Object>(kept);
+			for (int i = 0; i < kept; i++)
+			{
+				facts.add(sample[i]);
+				sample[i] = null;
+			}
+			offered = 0;
+		}
+		
+		synchronized (this)
+		{
+			Map<String, List<Object>> byType = new HashMap<String, List<Object>>();
+			Map<String, Statistic> refreshed = new LinkedHashMap<String, Statistic>(statistics);
+			for (Map.Entry<String, Measured> entry : conditions.entrySet())
+			{
+				Measured measured = entry.getValue();
+				if (measured.predicate == null)
+				{
+					continue;
+				}
+				
+				List<Object> instances = byType.get(measured.dataObject);
+				if (instances == null)
+				{
+					instances = new ArrayList<Object>();
+					for (Object fact : facts)
+					{
+						if (measured.type.isInstance(fact))
+						{
+							instances.add(fact);
+						}
+					}
+					byType.put(measured.dataObject, instances);
+				}
+				if (instances.isEmpty())
+				{
+					continue;
+				}
+				
+				refreshed.put(entry.getKey(), measure(measured, instances, refreshed.get(entry.getKey())));
+			}
+			
+			statistics = Collections.unmodifiableMap(refreshed);
+			refreshes++;
+			if (LOGGER.isLoggable(Level.FINE))
+			{
+				LOGGER.fine("Refresh " + refreshes + " measured " + refreshed.size() + " conditions over " + facts.size() + " facts: " + refreshed.values());
+			}
+			
+			return new ArrayList<Statistic>(refreshed.values());
+		}
+	}
+	
+	/**
+	 * Evaluates a condition over the facts, blending the result into its previous statistics.
+	 */
+	private Statistic measure(Measured measured, List<Object> facts, Statistic previous)
+	{
+		int satisfied = 0;
+		long fastest = Long.MAX_VALUE;
+		for (int pass = 0; pass < PASSES; pass++)
+		{
+			int count = 0;
+			long start = System.nanoTime();
+			for (Object fact : facts)
+			{
+				if (measured.predicate.test(fact))
+				{
+					count++;
+				}
+			}
+			fastest = Math.min(fastest, System.nanoTime() - start);
+			satisfied = count;
+		}
+		
+		double selectivity = (double)satisfied / facts.size();
+		double costNanos = (double)fastest / facts.size();
+		if (previous == null)
+		{
+			return new Statistic(measured.dataObject, measured.expression, selectivity, costNanos, facts.size());
+		}
+		
+		return new Statistic(measured.dataObject, measured.expression, (weight * selectivity) + ((1.0 - weight) * previous.selectivity), (weight * costNanos) + ((1.0 - weight) * previous.costNanos), (previous.samples + facts.size()));
+	}
+	
+	/**
+	 * Orders the conditions of a rule by their rank, the lowest first, keeping the order of the conditions of the same
+	 * rank.
+	 * 
+	 * @param rule Rule whose conditions are ordered.
+	 * @return Conditions ordered, or the conditions of the rule when any of them was not measured yet.
+	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
+	 */
+	public List<Condition> order(Rule rule) throws IllegalArgumentException
+	{
+		return order(rule, null);
+	}
+	
+	/**
+	 * Orders the conditions of a rule by their rank, dividing the cost of each condition among the rules having it.
+	 * 
+	 * @param rule Rule whose conditions are ordered.
+	 * @param sharers Number of rules having each condition, by data object and expression, null when not shared.
+	 * @return Conditions ordered, or the conditions of the rule when any of them was not measured yet.
+	 */
+	private List<Condition> order(Rule rule, Map<String, Integer> sharers)
+	{
+		List<Condition> original = rule.getConditions();
+		if ((original == null) || (original.size() < 2) || (rule.getDataObject() == null))
+		{
+			return original;
+		}
+		
+		Map<String, Statistic> current = statistics;
+		final Map<Condition, Double> ranks = new HashMap<Condition, Double>();
+		for (Condition condition : original)
+		{
+			String key = key(rule.getDataObject(), condition.buildExpression());
+			Statistic statistic = current.get(key);
+			if (statistic == null)
+			{
+				return original;
+			}
+			
+			double rank = statistic.getRank();
+			if ((sharers != null) && sharers.containsKey(key))
+			{
+				rank /= sharers.get(key);
+			}
+			ranks.put(condition, rank);
+		}
+		
+		List<Condition> ordered = new ArrayList<Condition>(original);
+		Collections.sort(ordered, new Comparator<Condition>()
+		{
+			@Override
+			public int compare(Condition left, Condition right)
+			{
+				return Double.compare(ranks.get(left), ranks.get(right));
+			}
+		});
+		
+		return ordered;
+	}
+	
+	/**
+	 * Registers the conditions of the rules and orders them by the statistics measured so far.<br>
+	 * The rules given are not changed, a rule whose conditions change of order is replaced by a new one sharing its
+	 * conditions. The order chosen for each rule is logged and kept, see {@link #getOrders()}.
+	 * 
+	 * @param rules Rules to be ordered.
+	 * @param shared Whether identical conditions of different rules are evaluated once for each fact, as Drools does.
+	 * @return Rules with their conditions ordered, in the order given.
+	 * @throws IllegalArgumentException Indicates the use of invalid pair of value and condition.
+	 */
+	public List<Rule> reorder(List<Rule> rules, boolean shared) throws IllegalArgumentException
+	{
+		register(rules);
+		
+		Map<String, Integer> sharers = null;
+		if (shared)
+		{
+			sharers = new HashMap<String, Integer>();
+			for (Rule rule : rules)
+			{
+				if ((rule.getConditions() == null) || (rule.getDataObject() == null))
+				{
+					continue;
+				}
+				
+				for (Condition condition : rule.getConditions())
+				{
+					String key = key(rule.getDataObject(), condition.buildExpression());
+					Integer count = sharers.get(key);
+					sharers.put(key, ((count == null) ? 1 : count + 1));
+				}
+			}
+		}
+		
+		List<Rule> reordered = new ArrayList<Rule>(rules.size());
+		Map<String, List<String>> chosen = new LinkedHashMap<String, List<String>>();
+		for (Rule rule : rules)
+		{
+			List<Condition> ordered = order(rule, sharers);
+			if (ordered == rule.getConditions())
+			{
+				//Not measured, kept as written
+				reordered.add(rule);
+				continue;
+			}
+			
+			if (ordered.equals(rule.getConditions()))
+			{
+				reordered.add(rule);
+			}
+			else
+			{
+				Rule copy = new Rule(rule.getName());
+				copy.setDataObject(rule.getDataObject());
+				copy.setAction(rule.getAction());
+				copy.setPriority(rule.getPriority());
+				copy.setScore(rule.getScore());
+				copy.setConditions(ordered);
+				reordered.add(copy);
+			}
+			
+			List<String> expressions = new ArrayList<String>(ordered.size());
+			for (Condition condition : ordered)
+			{
+				expressions.add(condition.buildExpression());
+			}
+			chosen.put(rule.getName(), Collections.unmodifiableList(expressions));
+			if (LOGGER.isLoggable(Level.FINE))
+			{
+				LOGGER.fine("The conditions of the rule " + rule.getName() + " are evaluated as " + expressions + ".");
+			}
+		}
+		
+		synchronized (orders)
+		{
+			orders.putAll(chosen);
+		}
+		
+		return reordered;
+	}
+	
+	/**
+	 * Refreshes the statistics periodically on a background thread.
+	 * 
+	 * @param period Time between the end of a refresh and the start of the next one.
+	 * @param unit Unit of the period.
+	 * @throws IllegalStateException Indicates the refreshes were already started.
+	 */
+	public synchronized void start(long period, TimeUnit unit) throws IllegalStateException
+	{
+		if (scheduler != null)
+		{
+			throw new IllegalStateException("The statistics are already being refreshed.");
+		}
+		
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "dynamicdrools-statistics");
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					refresh();
+				}
+				catch (RuntimeException e)
+				{
+					//A failing getter must not stop the next refreshes
+					LOGGER.log(Level.WARNING, "Failure refreshing the statistics of the conditions.", e);
+				}
+			}
+		}, period, period, unit);
+	}
+	
+	/**
+	 * Stops the periodic refreshes, if started.
+	 */
+	public synchronized void stop()
+	{
+		if (scheduler != null)
+		{
+			scheduler.shutdown();
+			scheduler = null;
+		}
+	}
+	
+	private static String key(String dataObject, String expression)
+	{
+		return dataObject + " : " + expression;
+	}
+	
+	private static Class<?> load(String dataObject)
+	{
+		try
+		{
+			return Class.forName(dataObject, false, Thread.currentThread().getContextClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			//Left to Drools to report
+			return null;
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | sampleSize = ");
+		me.append(sampleSize);
+		me.append(" | weight = ");
+		me.append(weight);
+		me.append(" | conditions = ");
+		synchronized (this)
+		{
+			me.append(conditions.size());
+			me.append(" | refreshes = ");
+			me.append(refreshes);
+		}
+		me.append(" | measured = ");
+		me.append(statistics.size());
+		me.append("]");
+		
+		return me.toString();
+	}
+	
+	/**
+	 * @return Statistics of all the conditions measured, from the last refresh.
+	 */
+	public List<Statistic> getStatistics()
+	{
+		return new ArrayList<Statistic>(statistics.values());
+	}
+	
+	/**
+	 * @return Last order chosen for the conditions of each rule ordered by the statistics, as the expressions written
+	 * into the DRL, by name of the rule.
+	 */
+	public Map<String, List<String>> getOrders()
+	{
+		synchronized (orders)
+		{
+			return new LinkedHashMap<String, List<String>>(orders);
+		}
+	}
+	
+	public synchronized int getRefreshes()
+	{
+		return refreshes;
+	}
+	
+	public int getSampleSize()
+	{
+		return sampleSize;
+	}
+	
+	public double getWeight()
+	{
+		return weight;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.optimizer;
+
+import java.util.Collections;
+import java.util.List;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Outcome of an optimization pass over a rule set.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @see RuleSetOptimizer
+ */
+public class OptimizationReport
+{
+	/**
+	 * Rules left after the optimization, in the original order.
+	 */
+	private final List<Rule> rules;
+	/**
+	 * Number of rules before the optimization.
+	 */
+	private final int originalRules;
+	/**
+	 * Number of conditions before the optimization.
+	 */
+	private final int originalConditions;
+	/**
+	 * Number of conditions left after the optimization.
+	 */
+	private final int conditions;
+	/**
+	 * Names of the rules dropped because they can never be satisfied.
+	 */
+	private final List<String> unsatisfiable;
+	/**
+	 * Names of the rules dropped because a previous rule has the same conditions and action.
+	 */
+	private final List<String> duplicates;
+	
+	OptimizationReport(List<Rule> rules, int originalRules, int originalConditions, int conditions, List<String> unsatisfiable, List<String> duplicates)
+	{
+		this.rules = Collections.unmodifiableList(rules);
+		this.originalRules = originalRules;
+		this.originalConditions = originalConditions;
+		this.conditions = conditions;
+		this.unsatisfiable = Collections.unmodifiableList(unsatisfiable);
+		this.duplicates = Collections.unmodifiableList(duplicates);
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | rules = ");
+		me.append(originalRules);
+		me.append(" -> ");
+		me.append(rules.size());
+		me.append(" | conditions = ");
+		me.append(originalConditions);
+		me.append(" -> ");
+		me.append(conditions);
+		me.append(" | unsatisfiable = ");
+		me.append(unsatisfiable.size());
+		me.append(" | duplicates = ");
+		me.append(duplicates.size());
+		me.append("]");
+		
+		return me.toString();
+	}
+	
+	public List<Rule> getRules()
+	{
+		return rules;
+	}
+	
+	public int getOriginalRules()
+	{
+		return originalRules;
+	}
+	
+	public int getOriginalConditions()
+	{
+		return originalConditions;
+	}
+	
+	public int getConditions()
+	{
+		return conditions;
+	}
+	
+	public List<String> getUnsatisfiable()
+	{
+		return unsatisfiable;
+	}
+	
+	public List<String> getDuplicates()
+	{
+		return duplicates;
+	}
+}
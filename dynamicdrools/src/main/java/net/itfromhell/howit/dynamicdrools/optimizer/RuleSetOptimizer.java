@@ -0,0 +1,578 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.optimizer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.EvaluationMode;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Optimization pass over a rule set, run before it is compiled.<br>
+ * The conditions of each rule are grouped by property and merged: ranges over numbers or points in time keep only
+ * their tightest bounds, an equality subsumes the ranges it satisfies and identical conditions are kept once, so
+ * <i>dueDate &gt; A &amp;&amp; dueDate &gt; B</i> becomes a single condition. Rules whose conditions contradict each
+ * other are dropped with a warning.<br>
+ * Rules repeating the data object, conditions, action, priority and score of a previous rule are dropped only for an
+ * exclusive {@link EvaluationMode}, where the previous rule always fires in their place. When every matched rule fires
+ * a repeated rule applies its action once more, a discount of 10% given twice takes 19% off, so the rule is kept.
+ * <br>
+ * The rules given are not changed, the optimized rules are new ones sharing the conditions kept. Conditions the pass
+ * does not understand, like an operator not accepted by the value, are kept untouched for the compilation to report.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleSetOptimizer
+{
+	private static final Logger LOGGER = Logger.getLogger(RuleSetOptimizer.class.getName());
+	
+	/**
+	 * Optimizes a rule set whose matched rules all fire, keeping repeated rules.
+	 * 
+	 * @param rules Rules to be optimized.
+	 * @return Optimized rules and what was done to them.
+	 */
+	public OptimizationReport optimize(List<Rule> rules)
+	{
+		return optimize(rules, EvaluationMode.ALL);
+	}
+	
+	/**
+	 * Optimizes a rule set for an evaluation mode.
+	 * 
+	 * @param rules Rules to be optimized.
+	 * @param mode Mode the rules are evaluated with, repeated rules are dropped only when it is exclusive.
+	 * @return Optimized rules and what was done to them.
+	 */
+	public OptimizationReport optimize(List<Rule> rules, EvaluationMode mode)
+	{
+		List<Rule> optimized = new ArrayList<Rule>(rules.size());
+		List<String> unsatisfiable = new ArrayList<String>();
+		List<String> duplicates = new ArrayList<String>();
+		Map<String, String> signatures = new HashMap<String, String>();
+		int originalConditions = 0;
+		int conditions = 0;
+		
+		for (Rule rule : rules)
+		{
+			if ((rule.getConditions() == null) || (rule.getConditions().isEmpty()))
+			{
+				//Nothing to optimize, the compilation reports the missing conditions
+				optimized.add(rule);
+				continue;
+			}
+			
+			originalConditions += rule.getConditions().size();
+			List<Condition> merged = merge(rule.getConditions());
+			if (merged == null)
+			{
+				LOGGER.warning("The rule " + rule.getName() + " can never be satisfied and was dropped.");
+				unsatisfiable.add(rule.getName());
+				continue;
+			}
+			
+			if (mode.isExclusive())
+			{
+				String signature = signature(rule, merged);
+				String previous = signatures.get(signature);
+				if (previous != null)
+				{
+					LOGGER.warning("The rule " + rule.getName() + " repeats the conditions and action of the rule " + previous + " and was dropped.");
+					duplicates.add(rule.getName());
+					continue;
+				}
+				signatures.put(signature, rule.getName());
+			}
+			
+			Rule copy = new Rule(rule.getName());
+			copy.setDataObject(rule.getDataObject());
+			copy.setAction(rule.getAction());
+			copy.setPriority(rule.getPriority());
+			copy.setScore(rule.getScore());
+			copy.setConditions(merged);
+			optimized.add(copy);
+			conditions += merged.size();
+		}
+		
+		OptimizationReport report = new OptimizationReport(optimized, rules.size(), originalConditions, conditions, unsatisfiable, duplicates);
+		if (LOGGER.isLoggable(Level.FINE))
+		{
+			LOGGER.fine(report.toString());
+		}
+		
+		return report;
+	}
+	
+	/**
+	 * Merges the conditions of a rule property by property.
+	 * 
+	 * @param conditions Conditions of the rule.
+	 * @return Conditions left, in the order their properties first appear, or null when they can never be satisfied.
+	 */
+	private static List<Condition> merge(List<Condition> conditions)
+	{
+		Map<String, Group> groups = new LinkedHashMap<String, Group>();
+		for (int i = 0; i < conditions.size(); i++)
+		{
+			Condition condition = conditions.get(i);
+			Kind kind = Kind.of(condition);
+			String key = ((kind == Kind.OTHER) ? Integer.toString(i) : kind + ":" + condition.getProperty());
+			
+			Group group = groups.get(key);
+			if (group == null)
+			{
+				group = ((kind == Kind.TEXT) ? new TextGroup() : ((kind == Kind.OTHER) ? new OtherGroup() : new RangeGroup(condition.getProperty())));
+				groups.put(key, group);
+			}
+			group.add(condition);
+		}
+		
+		List<Condition> merged = new ArrayList<Condition>();
+		for (Group group : groups.values())
+		{
+			List<Condition> kept = group.result();
+			if (kept == null)
+			{
+				return null;
+			}
+			merged.addAll(kept);
+		}
+		
+		return merged;
+	}
+	
+	/**
+	 * Builds a key identifying the data object, the conditions in any order, the action, the priority and the score of
+	 * a rule.
+	 */
+	private static String signature(Rule rule, List<Condition> conditions)
+	{
+		List<String> described = new ArrayList<String>(conditions.size());
+		for (Condition condition : conditions)
+		{
+			described.add(condition.getProperty() + " " + condition.getOperator() + " " + Kind.of(condition).canonical(condition));
+		}
+		Collections.sort(described);
+		
+		StringBuilder signature = new StringBuilder();
+		signature.append(rule.getDataObject()).append('\n').append(rule.getAction());
+		//Rules firing in different order are not the same when only the first match fires
+		signature.append('\n').append(rule.getPriority()).append('\n').append(rule.getScore());
+		for (String condition : described)
+		{
+			signature.append('\n').append(condition);
+		}
+		
+		return signature.toString();
+	}
+	
+	/**
+	 * Kind of value compared by a condition, deciding how it is merged.
+	 */
+	private enum Kind
+	{
+		NUMBER,
+		TIME,
+		TEXT,
+		/**
+		 * Not understood by the pass.
+		 */
+		OTHER;
+		
+		static Kind of(Condition condition)
+		{
+			Condition.Operator operator = condition.getOperator();
+			Object value = condition.getValue();
+			if ((condition.getProperty() == null) || (operator == null) || (value == null))
+			{
+				return OTHER;
+			}
+			
+			if (value instanceof String)
+			{
+				return (operator.isComparable(String.class) ? TEXT : OTHER);
+			}
+			else if (value instanceof Number)
+			{
+				if (operator == Condition.Operator.CONTAINS)
+				{
+					return OTHER;
+				}
+				
+				try
+				{
+					new BigDecimal(value.toString());
+					return NUMBER;
+				}
+				catch (NumberFormatException e)
+				{
+					//Infinities and NaN are left to the compilation
+					return OTHER;
+				}
+			}
+			else if (Condition.isTemporal(value))
+			{
+				return (operator.isComparable((value instanceof Date) ? Date.class : value.getClass()) ? TIME : OTHER);
+			}
+			
+			return OTHER;
+		}
+		
+		/**
+		 * Value of a range condition, as rendered in the expression.
+		 */
+		static BigDecimal rangeValue(Condition condition)
+		{
+			if (Condition.isTemporal(condition.getValue()))
+			{
+				return BigDecimal.valueOf(condition.getValueAsTime());
+			}
+			
+			return new BigDecimal(condition.getValue().toString());
+		}
+		
+		/**
+		 * Textual form of the value, the same for values compared alike.
+		 */
+		String canonical(Condition condition)
+		{
+			switch (this)
+			{
+				case NUMBER:
+				case TIME:
+					return name() + ":" + rangeValue(condition).stripTrailingZeros().toPlainString();
+				case TEXT:
+					return name() + ":" + ((condition.getOperator() == Condition.Operator.CONTAINS) ? Condition.foldCase((String)condition.getValue()) : condition.getValue());
+				default:
+					return name() + ":" + condition.getValue().getClass().getName() + ":" + condition.getValue();
+			}
+		}
+	}
+	
+	/**
+	 * Conditions of a rule over the same property and kind of value.
+	 */
+	private interface Group
+	{
+		void add(Condition condition);
+		
+		/**
+		 * @return Conditions equivalent to all added, or null when they can never be satisfied.
+		 */
+		List<Condition> result();
+	}
+	
+	/**
+	 * Conditions kept as they are.
+	 */
+	private static class OtherGroup implements Group
+	{
+		private final List<Condition> conditions = new ArrayList<Condition>();
+		
+		@Override
+		public void add(Condition condition)
+		{
+			conditions.add(condition);
+		}
+		
+		@Override
+		public List<Condition> result()
+		{
+			return conditions;
+		}
+	}
+	
+	/**
+	 * Ranges over a number or a point in time, reduced to the tightest bounds.
+	 */
+	private static class RangeGroup implements Group
+	{
+		private final String property;
+		private Condition lower;
+		private BigDecimal lowerValue;
+		private boolean lowerInclusive;
+		private Condition upper;
+		private BigDecimal upperValue;
+		private boolean upperInclusive;
+		private Condition equal;
+		private BigDecimal equalValue;
+		/**
+		 * Indicates two different equalities.
+		 */
+		private boolean contradiction;
+		private final List<Condition> notEqual = new ArrayList<Condition>();
+		private final List<BigDecimal> notEqualValues = new ArrayList<BigDecimal>();
+		
+		private RangeGroup(String property)
+		{
+			this.property = property;
+		}
+		
+		@Override
+		public void add(Condition condition)
+		{
+			BigDecimal value = Kind.rangeValue(condition);
+			switch (condition.getOperator())
+			{
+				case GREATER_THAN:
+				case GREATER_THAN_OR_EQUAL_TO:
+					boolean inclusive = (condition.getOperator() == Condition.Operator.GREATER_THAN_OR_EQUAL_TO);
+					int lowerComparison = ((lower == null) ? 1 : value.compareTo(lowerValue));
+					if ((lowerComparison > 0) || ((lowerComparison == 0) && !inclusive))
+					{
+						lower = condition;
+						lowerValue = value;
+						lowerInclusive = inclusive;
+					}
+					break;
+				case LESS_THAN:
+				case LESS_THAN_OR_EQUAL_TO:
+					inclusive = (condition.getOperator() == Condition.Operator.LESS_THAN_OR_EQUAL_TO);
+					int upperComparison = ((upper == null) ? -1 : value.compareTo(upperValue));
+					if ((upperComparison < 0) || ((upperComparison == 0) && !inclusive))
+					{
+						upper = condition;
+						upperValue = value;
+						upperInclusive = inclusive;
+					}
+					break;
+				case EQUAL_TO:
+					if (equal == null)
+					{
+						equal = condition;
+						equalValue = value;
+					}
+					else if (value.compareTo(equalValue) != 0)
+					{
+						contradiction = true;
+					}
+					break;
+				default:
+					if (!contains(notEqualValues, value))
+					{
+						notEqual.add(condition);
+						notEqualValues.add(value);
+					}
+					break;
+			}
+		}
+		
+		@Override
+		public List<Condition> result()
+		{
+			if (contradiction)
+			{
+				return null;
+			}
+			
+			if (equal != null)
+			{
+				if (!within(equalValue) || contains(notEqualValues, equalValue))
+				{
+					return null;
+				}
+				
+				return Collections.singletonList(equal);
+			}
+			
+			if ((lower != null) && (upper != null))
+			{
+				int comparison = lowerValue.compareTo(upperValue);
+				if ((comparison > 0) || ((comparison == 0) && !(lowerInclusive && upperInclusive)))
+				{
+					return null;
+				}
+				
+				if (comparison == 0)
+				{
+					if (contains(notEqualValues, lowerValue))
+					{
+						return null;
+					}
+					
+					//Both bounds on the same value are a single equality
+					Condition point = new Condition(property, Condition.Operator.EQUAL_TO, lower.getValue());
+					point.setZone(lower.getZone());
+					return Collections.singletonList(point);
+				}
+			}
+			
+			List<Condition> kept = new ArrayList<Condition>();
+			if (lower != null)
+			{
+				kept.add(lower);
+			}
+			if (upper != null)
+			{
+				kept.add(upper);
+			}
+			for (int i = 0; i < notEqual.size(); i++)
+			{
+				//A value out of the range is already excluded by the bounds
+				if (within(notEqualValues.get(i)))
+				{
+					kept.add(notEqual.get(i));
+				}
+			}
+			
+			return kept;
+		}
+		
+		private boolean within(BigDecimal value)
+		{
+			if (lower != null)
+			{
+				int comparison = value.compareTo(lowerValue);
+				if ((comparison < 0) || ((comparison == 0) && !lowerInclusive))
+				{
+					return false;
+				}
+			}
+			if (upper != null)
+			{
+				int comparison = value.compareTo(upperValue);
+				if ((comparison > 0) || ((comparison == 0) && !upperInclusive))
+				{
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		private static boolean contains(List<BigDecimal> values, BigDecimal value)
+		{
+			for (BigDecimal candidate : values)
+			{
+				if (candidate.compareTo(value) == 0)
+				{
+					return true;
+				}
+			}
+			
+			return false;
+		}
+	}
+	
+	/**
+	 * Equalities and searches over a text.
+	 */
+	private static class TextGroup implements Group
+	{
+		private Condition equal;
+		/**
+		 * Indicates two different equalities.
+		 */
+		private boolean contradiction;
+		private final List<Condition> notEqual = new ArrayList<Condition>();
+		private final List<Condition> contains = new ArrayList<Condition>();
+		
+		@Override
+		public void add(Condition condition)
+		{
+			String value = (String)condition.getValue();
+			switch (condition.getOperator())
+			{
+				case EQUAL_TO:
+					if (equal == null)
+					{
+						equal = condition;
+					}
+					else if (!value.equals(equal.getValue()))
+					{
+						contradiction = true;
+					}
+					break;
+				case NOT_EQUAL_TO:
+					for (Condition kept : notEqual)
+					{
+						if (value.equals(kept.getValue()))
+						{
+							return;
+						}
+					}
+					notEqual.add(condition);
+					break;
+				default:
+					String searched = Condition.foldCase(value);
+					for (Condition kept : contains)
+					{
+						//Containing a longer text already contains this one
+						if (Condition.containsFolded((String)kept.getValue(), searched))
+						{
+							return;
+						}
+					}
+					for (int i = contains.size() - 1; i >= 0; i--)
+					{
+						if (Condition.containsFolded(searched, Condition.foldCase((String)contains.get(i).getValue())))
+						{
+							contains.remove(i);
+						}
+					}
+					contains.add(condition);
+					break;
+			}
+		}
+		
+		@Override
+		public List<Condition> result()
+		{
+			if (contradiction)
+			{
+				return null;
+			}
+			
+			if (equal != null)
+			{
+				String value = (String)equal.getValue();
+				for (Condition condition : notEqual)
+				{
+					if (value.equals(condition.getValue()))
+					{
+						return null;
+					}
+				}
+				for (Condition condition : contains)
+				{
+					if (!Condition.containsFolded(value, Condition.foldCase((String)condition.getValue())))
+					{
+						return null;
+					}
+				}
+				
+				return Collections.singletonList(equal);
+			}
+			
+			List<Condition> kept = new ArrayList<Condition>(notEqual);
+			kept.addAll(contains);
+			
+			return kept;
+		}
+	}
+}
@@ -0,0 +1,626 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+
+/**
+ * Repository of rules stored in a compact binary file, read through a memory mapping.<br>
+ * The file starts with a header, followed by a record per rule, by the position of each record and by a table of
+ * the texts used by the rules, each text stored once. A record holds the codes of its texts in the table, the
+ * priority, the score and the conditions, each condition taking one byte for its operator and the type of its value
+ * followed by the value in binary. Opening a repository maps the file without reading the rules, which are only
+ * built when requested, and the texts are decoded once on their first use.<br>
+ * Values may be texts, numbers of the types accepted by the operators, <b>Date</b>, <b>Instant</b> and
+ * <b>LocalDate</b>, the time zone of a condition is kept for <b>LocalDate</b> values, the only ones depending on it.
+ * A repository holds up to 2GB and may be read by many threads at once.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleRepository implements Closeable, Iterable<Rule>
+{
+	/**
+	 * Identification of the file format, "RREP".
+	 */
+	private static final int MAGIC = 0x52524550;
+	private static final int VERSION = 1;
+	/**
+	 * Bytes of the header: magic, version, number of rules, number of texts, position of the record positions and
+	 * position of the texts.
+	 */
+	static final int HEADER_SIZE = 32;
+	/**
+	 * Code written for a missing text.
+	 */
+	private static final int NO_TEXT = -1;
+	/**
+	 * Operator written for a condition without operator.
+	 */
+	private static final int NO_OPERATOR = 0x0F;
+	private static final Condition.Operator[] OPERATORS = Condition.Operator.values();
+	
+	/**
+	 * Type of a value, written in the low half of the byte whose high half is the operator.
+	 */
+	private enum Type
+	{
+		NULL, STRING, SHORT, INTEGER, LONG, FLOAT, DOUBLE, DATE, INSTANT, LOCAL_DATE, ZONED_LOCAL_DATE;
+		
+		private static final Type[] VALUES = values();
+		
+		private static Type of(Condition condition)
+		{
+			Object value = condition.getValue();
+			if (value == null)
+			{
+				return NULL;
+			}
+			else if (value instanceof String)
+			{
+				return STRING;
+			}
+			else if (value instanceof Short)
+			{
+				return SHORT;
+			}
+			else if (value instanceof Integer)
+			{
+				return INTEGER;
+			}
+			else if (value instanceof Long)
+			{
+				return LONG;
+			}
+			else if (value instanceof Float)
+			{
+				return FLOAT;
+			}
+			else if (value instanceof Double)
+			{
+				return DOUBLE;
+			}
+			else if (value instanceof Date)
+			{
+				return DATE;
+			}
+			else if (value instanceof Instant)
+			{
+				return INSTANT;
+			}
+			else if (value instanceof LocalDate)
+			{
+				return ((condition.getZone() == null) ? LOCAL_DATE : ZONED_LOCAL_DATE);
+			}
+			
+			throw new IllegalArgumentException("The class " + value.getClass().getSimpleName() + " of value is not acceptable.");
+		}
+	}
+	
+	private final FileChannel channel;
+	/**
+	 * Whole file.
+	 */
+	private final MappedByteBuffer content;
+	/**
+	 * Number of rules.
+	 */
+	private final int size;
+	/**
+	 * Position of the record positions.
+	 */
+	private final int index;
+	/**
+	 * Position of each text, by code.
+	 */
+	private final int[] textPositions;
+	/**
+	 * Texts decoded, by code, null until first used.
+	 */
+	private final String[] texts;
+	
+	private RuleRepository(FileChannel channel, MappedByteBuffer content, int size, int index, int[] textPositions)
+	{
+		this.channel = channel;
+		this.content = content;
+		this.size = size;
+		this.index = index;
+		this.textPositions = textPositions;
+		this.texts = new String[textPositions.length];
+	}
+	
+	/**
+	 * Writes a repository file.
+	 * 
+	 * @param file File to be written, replaced when it exists.
+	 * @param rules Rules to be stored.
+	 * @return Number of rules written.
+	 * @throws IOException Indicates the file could not be written.
+	 * @throws IllegalArgumentException Indicates a value of a type not accepted or a repository over 2GB.
+	 */
+	public static int write(Path file, Iterable<Rule> rules) throws IOException, IllegalArgumentException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try
+		{
+			Map<String, Integer> codes = new LinkedHashMap<String, Integer>();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+			int[] positions = new int[1024];
+			int count = 0;
+			channel.position(HEADER_SIZE);
+			for (Rule rule : rules)
+			{
+				if (count == positions.length)
+				{
+					positions = Arrays.copyOf(positions, count * 2);
+				}
+				positions[count++] = position(channel, buffer);
+				
+				List<Condition> conditions = ((rule.getConditions() == null) ? new ArrayList<Condition>() : rule.getConditions());
+				int needed = 28 + (conditions.size() * 17);
+				if (buffer.remaining() < needed)
+				{
+					drain(channel, buffer);
+					if (buffer.capacity() < needed)
+					{
+						buffer = ByteBuffer.allocateDirect(needed);
+					}
+				}
+				
+				buffer.putInt(code(codes, rule.getName()));
+				buffer.putInt(code(codes, rule.getDataObject()));
+				buffer.putInt(code(codes, rule.getAction()));
+				buffer.putInt(rule.getPriority());
+				buffer.putDouble(rule.getScore());
+				buffer.putInt(conditions.size());
+				for (Condition condition : conditions)
+				{
+					putCondition(buffer, codes, condition);
+				}
+			}
+			drain(channel, buffer);
+			
+			int index = position(channel, buffer);
+			ByteBuffer entries = ByteBuffer.allocate(count * 4);
+			for (int i = 0; i < count; i++)
+			{
+				entries.putInt(positions[i]);
+			}
+			entries.flip();
+			write(channel, entries);
+			
+			int textsPosition = position(channel, buffer);
+			for (String text : codes.keySet())
+			{
+				byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+				ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length);
+				entry.putInt(bytes.length);
+				entry.put(bytes);
+				entry.flip();
+				write(channel, entry);
+			}
+			if (channel.position() > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("A repository holds up to 2GB, the rules given need " + channel.position() + " bytes.");
+			}
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(count);
+			header.putInt(codes.size());
+			header.putLong(index);
+			header.putLong(textsPosition);
+			header.flip();
+			channel.position(0);
+			write(channel, header);
+			
+			return count;
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Writes a condition: the codes of its property, its operator with the type of its value, and its value.
+	 */
+	private static void putCondition(ByteBuffer buffer, Map<String, Integer> codes, Condition condition)
+	{
+		Type type = Type.of(condition);
+		int operator = ((condition.getOperator() == null) ? NO_OPERATOR : condition.getOperator().ordinal());
+		buffer.putInt(code(codes, condition.getProperty()));
+		buffer.put((byte)((operator << 4) | type.ordinal()));
+		
+		Object value = condition.getValue();
+		switch (type)
+		{
+			case STRING:
+				buffer.putInt(code(codes, (String)value));
+				break;
+			case SHORT:
+				buffer.putShort((Short)value);
+				break;
+			case INTEGER:
+				buffer.putInt((Integer)value);
+				break;
+			case LONG:
+				buffer.putLong((Long)value);
+				break;
+			case FLOAT:
+				buffer.putFloat((Float)value);
+				break;
+			case DOUBLE:
+				buffer.putDouble((Double)value);
+				break;
+			case DATE:
+				buffer.putLong(((Date)value).getTime());
+				break;
+			case INSTANT:
+				buffer.putLong(((Instant)value).getEpochSecond());
+				buffer.putInt(((Instant)value).getNano());
+				break;
+			case LOCAL_DATE:
+				buffer.putLong(((LocalDate)value).toEpochDay());
+				break;
+			case ZONED_LOCAL_DATE:
+				buffer.putLong(((LocalDate)value).toEpochDay());
+				buffer.putInt(code(codes, condition.getZone().getId()));
+				break;
+			default:
+				break;
+		}
+	}
+	
+	private static int code(Map<String, Integer> codes, String text)
+	{
+		if (text == null)
+		{
+			return NO_TEXT;
+		}
+		
+		Integer code = codes.get(text);
+		if (code == null)
+		{
+			code = codes.size();
+			codes.put(text, code);
+		}
+		
+		return code;
+	}
+	
+	/**
+	 * Position in the file of the next byte written, counting the bytes still in the buffer.
+	 */
+	private static int position(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		long position = channel.position() + buffer.position();
+		if (position > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("A repository holds up to 2GB, the rules given need more.");
+		}
+		
+		return (int)position;
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		buffer.flip();
+		write(channel, buffer);
+		buffer.clear();
+	}
+	
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+	
+	/**
+	 * Opens a repository file, mapping it without reading the rules.
+	 * 
+	 * @param file Repository file.
+	 * @return Opened repository.
+	 * @throws IOException Indicates the file could not be read.
+	 * @throws IllegalArgumentException Indicates the file is not a repository of rules, or of a version unknown.
+	 */
+	public static RuleRepository open(Path file) throws IOException, IllegalArgumentException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			if (channel.size() < HEADER_SIZE)
+			{
+				throw new IllegalArgumentException("The file " + file + " is not a repository of rules.");
+			}
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("The repository of rules " + file + " is over 2GB.");
+			}
+			
+			MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (content.getInt(0) != MAGIC)
+			{
+				throw new IllegalArgumentException("The file " + file + " is not a repository of rules.");
+			}
+			if (content.getInt(4) != VERSION)
+			{
+				throw new IllegalArgumentException("The repository of rules " + file + " has an unknown version.");
+			}
+			int size = content.getInt(8);
+			int[] textPositions = new int[content.getInt(12)];
+			int index = (int)content.getLong(16);
+			int position = (int)content.getLong(24);
+			for (int i = 0; i < textPositions.length; i++)
+			{
+				textPositions[i] = position;
+				position += 4 + content.getInt(position);
+			}
+			
+			return new RuleRepository(channel, content, size, index, textPositions);
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Builds a rule from its record.
+	 * 
+	 * @param position Position of the rule in the repository.
+	 * @return New rule, with new conditions.
+	 * @throws IndexOutOfBoundsException Indicates a position out of the repository.
+	 */
+	public Rule get(int position) throws IndexOutOfBoundsException
+	{
+		if ((position < 0) || (position >= size))
+		{
+			throw new IndexOutOfBoundsException("The position " + position + " is out of a repository of " + size + " rules.");
+		}
+		
+		//Absolute reads only, so threads never share a position of the buffer
+		int at = content.getInt(index + (position * 4));
+		Rule rule = new Rule(text(content.getInt(at)));
+		rule.setDataObject(text(content.getInt(at + 4)));
+		rule.setAction(text(content.getInt(at + 8)));
+		rule.setPriority(content.getInt(at + 12));
+		rule.setScore(content.getDouble(at + 16));
+		int count = content.getInt(at + 24);
+		at += 28;
+		
+		List<Condition> conditions = new ArrayList<Condition>(count);
+		for (int i = 0; i < count; i++)
+		{
+			Condition condition = new Condition();
+			condition.setProperty(text(content.getInt(at)));
+			int kind = content.get(at + 4) & 0xFF;
+			at += 5;
+			
+			int operator = kind >>> 4;
+			condition.setOperator((operator == NO_OPERATOR) ? null : OPERATORS[operator]);
+			switch (Type.VALUES[kind & 0x0F])
+			{
+				case STRING:
+					condition.setValue(text(content.getInt(at)));
+					at += 4;
+					break;
+				case SHORT:
+					condition.setValue(content.getShort(at));
+					at += 2;
+					break;
+				case INTEGER:
+					condition.setValue(content.getInt(at));
+					at += 4;
+					break;
+				case LONG:
+					condition.setValue(content.getLong(at));
+					at += 8;
+					break;
+				case FLOAT:
+					condition.setValue(content.getFloat(at));
+					at += 4;
+					break;
+				case DOUBLE:
+					condition.setValue(content.getDouble(at));
+					at += 8;
+					break;
+				case DATE:
+					condition.setValue(new Date(content.getLong(at)));
+					at += 8;
+					break;
+				case INSTANT:
+					condition.setValue(Instant.ofEpochSecond(content.getLong(at), content.getInt(at + 8)));
+					at += 12;
+					break;
+				case LOCAL_DATE:
+					condition.setValue(LocalDate.ofEpochDay(content.getLong(at)));
+					at += 8;
+					break;
+				case ZONED_LOCAL_DATE:
+					condition.setValue(LocalDate.ofEpochDay(content.getLong(at)));
+					condition.setZone(ZoneId.of(text(content.getInt(at + 8))));
+					at += 12;
+					break;
+				default:
+					break;
+			}
+			conditions.add(condition);
+		}
+		rule.setConditions(conditions);
+		
+		return rule;
+	}
+	
+	/**
+	 * Decodes a text on its first use.
+	 */
+	private String text(int code)
+	{
+		if (code == NO_TEXT)
+		{
+			return null;
+		}
+		
+		//Decoding twice by concurrent threads is harmless, both texts are equal
+		String text = texts[code];
+		if (text == null)
+		{
+			int position = textPositions[code];
+			byte[] bytes = new byte[content.getInt(position)];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				bytes[i] = content.get(position + 4 + i);
+			}
+			text = new String(bytes, StandardCharsets.UTF_8);
+			texts[code] = text;
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * Views the repository as a list building each rule when it is requested, without keeping it.<br>
+	 * The list may be given straight to the compilation, as to
+	 * {@link net.itfromhell.howit.dynamicdrools.util.DroolsUtility#loadKieBase(List, String)}, which hashes and
+	 * renders the rules one chunk at a time, so only a chunk of rules and their parameters is held at once besides the
+	 * rule base being built. An optimizer or statistics set on the utility return rules of their own, holding all of
+	 * them.
+	 * 
+	 * @return List of the rules, which can not be changed.
+	 */
+	public List<Rule> asList()
+	{
+		return new LazyRules();
+	}
+	
+	/**
+	 * List building the rules on request.
+	 */
+	private class LazyRules extends AbstractList<Rule> implements RandomAccess
+	{
+		@Override
+		public Rule get(int position)
+		{
+			return RuleRepository.this.get(position);
+		}
+		
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+	
+	/**
+	 * Iterates over all rules, building each one when it is reached.
+	 * 
+	 * @return Iterator over the rules.
+	 */
+	@Override
+	public Iterator<Rule> iterator()
+	{
+		return new Iterator<Rule>()
+		{
+			private int next = 0;
+			
+			@Override
+			public boolean hasNext()
+			{
+				return (next < size);
+			}
+			
+			@Override
+			public Rule next()
+			{
+				if (next >= size)
+				{
+					throw new NoSuchElementException();
+				}
+				
+				return get(next++);
+			}
+			
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("Rules can not be removed from a repository.");
+			}
+		};
+	}
+	
+	/**
+	 * Closes the file. The mapping is released once collected, rules already built are not affected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | size = ");
+		me.append(size);
+		me.append(" | texts = ");
+		me.append(texts.length);
+		me.append(" | bytes = ");
+		me.append(content.capacity());
+		me.append("]");
+		
+		return me.toString();
+	}
+}
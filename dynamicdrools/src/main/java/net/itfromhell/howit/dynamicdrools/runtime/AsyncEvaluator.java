@@ -0,0 +1,462 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Evaluator returning at once, completing the evaluations later.<br>
+ * Each evaluation runs in a virtual thread when the runtime offers them (Java 21 or later), which is looked up by
+ * reflection so the library keeps running on Java 8. Otherwise evaluations run in a bounded pool of platform threads,
+ * and an evaluation submitted while the pool and its queue are full fails with a
+ * <b>RejectedExecutionException</b> instead of blocking the caller.<br>
+ * Either way, the rules are executed by at most <i>parallelism</i> sessions at once: virtual threads wait for a
+ * session without holding a platform thread.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class AsyncEvaluator
+{
+	/**
+	 * Default number of evaluations waiting for a platform thread when virtual threads are not available, for each
+	 * thread of the pool.
+	 */
+	public static final int DEFAULT_QUEUE_PER_THREAD = 64;
+	
+	/**
+	 * Threads running the evaluations.
+	 */
+	private final ExecutorService executor;
+	/**
+	 * Sessions executing the rules, bounding the evaluations running at once.
+	 */
+	private final SessionPool sessions;
+	/**
+	 * Indicates evaluations run in virtual threads.
+	 */
+	private final boolean virtual;
+	/**
+	 * Measurements of the evaluations, null when not measured.
+	 */
+	private final RuleMetrics metrics;
+	
+	/**
+	 * Creates an evaluator using all available cores, preferring virtual threads.
+	 * 
+	 * @param base Compiled rule base.
+	 */
+	public AsyncEvaluator(KieBase base)
+	{
+		this(base, Runtime.getRuntime().availableProcessors(), true, null);
+	}
+	
+	/**
+	 * Creates an evaluator.
+	 * 
+	 * @param base Compiled rule base.
+	 * @param parallelism Number of evaluations executing rules at once.
+	 * @param preferVirtual Indicates virtual threads are used when available, false to always use platform threads.
+	 * @param metrics Measurements of firings and of each evaluation, null when not measured.
+	 */
+	public AsyncEvaluator(KieBase base, int parallelism, boolean preferVirtual, RuleMetrics metrics)
+	{
+		this(base, parallelism, parallelism * DEFAULT_QUEUE_PER_THREAD, preferVirtual, metrics);
+	}
+	
+	/**
+	 * Creates an evaluator with a specific queue for the bounded pool.
+	 * 
+	 * @param base Compiled rule base.
+	 * @param parallelism Number of evaluations executing rules at once.
+	 * @param queueCapacity Number of evaluations waiting for a platform thread before new ones are rejected, not used
+	 * with virtual threads.
+	 * @param preferVirtual Indicates virtual threads are used when available, false to always use platform threads.
+	 * @param metrics Measurements of firings and of each evaluation, null when not measured.
+	 */
+	public AsyncEvaluator(KieBase base, int parallelism, int queueCapacity, boolean preferVirtual, RuleMetrics metrics)
+	{
+		if ((parallelism < 1) || (queueCapacity < 1))
+		{
+			throw new IllegalArgumentException("The parallelism and the queue capacity must be positive.");
+		}
+		
+		ExecutorService virtualExecutor = (preferVirtual ? newVirtualThreadExecutor() : null);
+		this.virtual = (virtualExecutor != null);
+		this.executor = (virtual ? virtualExecutor : newBoundedExecutor(parallelism, queueCapacity));
+		this.sessions = new SessionPool(base, parallelism, metrics);
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Creates an executor starting a virtual thread for each task.
+	 * 
+	 * @return Executor, or null when the runtime has no virtual threads.
+	 */
+	private static ExecutorService newVirtualThreadExecutor()
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			//Before Java 21 the method is missing, or it is a preview feature unavailable unless enabled
+			return null;
+		}
+	}
+	
+	/**
+	 * Creates a pool of daemon platform threads with a bounded queue.
+	 */
+	private static ExecutorService newBoundedExecutor(int threads, int queueCapacity)
+	{
+		final AtomicInteger created = new AtomicInteger();
+		ThreadFactory factory = new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "dynamicdrools-async-" + created.incrementAndGet());
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		};
+		
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+	}
+	
+	/**
+	 * Evaluates a fact.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @return Future completed with the fact once evaluated, or with the failure of the evaluation.
+	 */
+	public <T> CompletableFuture<EvaluationResult<T>> evaluate(T fact)
+	{
+		return evaluateAll(Collections.singletonList(fact));
+	}
+	
+	/**
+	 * Evaluates facts together, in a single batched execution.
+	 * 
+	 * @param facts Data objects to be evaluated.
+	 * @return Future completed with the facts once evaluated, or with the failure of the evaluation.
+	 */
+	public <T> CompletableFuture<EvaluationResult<T>> evaluateAll(final List<T> facts)
+	{
+		try
+		{
+			return CompletableFuture.supplyAsync(new Supplier<EvaluationResult<T>>()
+			{
+				@Override
+				public EvaluationResult<T> get()
+				{
+					return new EvaluationResult<T>(facts, execute(facts));
+				}
+			}, executor);
+		}
+		catch (RejectedExecutionException e)
+		{
+			CompletableFuture<EvaluationResult<T>> rejected = new CompletableFuture<EvaluationResult<T>>();
+			rejected.completeExceptionally(e);
+			
+			return rejected;
+		}
+	}
+	
+	/**
+	 * Executes the rules over facts with a pooled session, waiting for one when all of them are in use.
+	 */
+	private int execute(List<?> facts)
+	{
+		StatelessKieSession session;
+		try
+		{
+			session = sessions.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CompletionException(e);
+		}
+		
+		try
+		{
+			return DroolsUtility.execute(session, facts, Math.max(facts.size(), 1), metrics);
+		}
+		finally
+		{
+			sessions.release(session);
+		}
+	}
+	
+	/**
+	 * Creates a publisher of the evaluation of facts in chunks.<br>
+	 * Each subscriber iterates the facts again. Chunks are only evaluated as the subscriber requests them, at most
+	 * <i>maxInFlight</i> at once, and the results are delivered in the order of the facts.
+	 * 
+	 * @param facts Data objects to be evaluated.
+	 * @param chunkSize Number of facts of each chunk.
+	 * @param maxInFlight Maximum number of chunks being evaluated at once for each subscriber.
+	 * @return Publisher of the result of each chunk.
+	 */
+	public <T> Publisher<EvaluationResult<T>> publish(final Iterable<T> facts, final int chunkSize, final int maxInFlight)
+	{
+		if ((chunkSize < 1) || (maxInFlight < 1))
+		{
+			throw new IllegalArgumentException("The chunk size and the number of chunks in flight must be positive.");
+		}
+		
+		return new Publisher<EvaluationResult<T>>()
+		{
+			@Override
+			public void subscribe(Subscriber<? super EvaluationResult<T>> subscriber)
+			{
+				if (subscriber == null)
+				{
+					throw new NullPointerException("The subscriber is required.");
+				}
+				
+				ChunkSubscription<T> subscription = new ChunkSubscription<T>(subscriber, chunkSize, maxInFlight);
+				subscriber.onSubscribe(subscription);
+				subscription.start(facts);
+			}
+		};
+	}
+	
+	/**
+	 * Subscription evaluating chunks on demand.<br>
+	 * All signals to the subscriber are sent by <i>drain</i>, which runs in one thread at a time: a thread calling it
+	 * while another is draining only marks that there is more work to do.
+	 */
+	private class ChunkSubscription<T> implements Subscription
+	{
+		private final Subscriber<? super EvaluationResult<T>> subscriber;
+		private final int chunkSize;
+		private final int maxInFlight;
+		/**
+		 * Chunks being evaluated, in the order of the facts.
+		 */
+		private final Queue<CompletableFuture<EvaluationResult<T>>> inFlight = new ArrayDeque<CompletableFuture<EvaluationResult<T>>>();
+		/**
+		 * Number of results requested and not delivered yet.
+		 */
+		private final AtomicLong demand = new AtomicLong();
+		/**
+		 * Number of calls to <i>drain</i> not handled yet, zero when no thread is draining.
+		 */
+		private final AtomicInteger work = new AtomicInteger();
+		/**
+		 * Reschedules the drain when a chunk completes.
+		 */
+		private final BiConsumer<Object, Throwable> completion = new BiConsumer<Object, Throwable>()
+		{
+			@Override
+			public void accept(Object result, Throwable failure)
+			{
+				drain();
+			}
+		};
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		private Iterator<T> iterator;
+		private boolean done;
+		
+		private ChunkSubscription(Subscriber<? super EvaluationResult<T>> subscriber, int chunkSize, int maxInFlight)
+		{
+			this.subscriber = subscriber;
+			this.chunkSize = chunkSize;
+			this.maxInFlight = maxInFlight;
+		}
+		
+		private void start(Iterable<T> facts)
+		{
+			try
+			{
+				iterator = facts.iterator();
+			}
+			catch (RuntimeException e)
+			{
+				invalidRequest = e;
+			}
+			drain();
+		}
+		
+		@Override
+		public void request(long n)
+		{
+			if (n <= 0)
+			{
+				invalidRequest = new IllegalArgumentException("The number of requested results must be positive, but was " + n + ".");
+			}
+			else
+			{
+				long current;
+				do
+				{
+					current = demand.get();
+				}
+				while (!demand.compareAndSet(current, ((current + n) < 0) ? Long.MAX_VALUE : (current + n)));
+			}
+			drain();
+		}
+		
+		@Override
+		public void cancel()
+		{
+			cancelled = true;
+			drain();
+		}
+		
+		private void drain()
+		{
+			if (work.getAndIncrement() != 0)
+			{
+				return;
+			}
+			
+			int missed = 1;
+			do
+			{
+				if (!done)
+				{
+					try
+					{
+						deliver();
+					}
+					catch (Throwable e)
+					{
+						done = true;
+						subscriber.onError(e);
+					}
+				}
+				if (done)
+				{
+					inFlight.clear();
+				}
+				missed = work.addAndGet(-missed);
+			}
+			while (missed != 0);
+		}
+		
+		/**
+		 * Delivers the chunks already evaluated and starts new ones while there is demand.
+		 */
+		private void deliver() throws Throwable
+		{
+			if (cancelled)
+			{
+				done = true;
+				return;
+			}
+			if (invalidRequest != null)
+			{
+				throw invalidRequest;
+			}
+			if (iterator == null)
+			{
+				//Requested while subscribing, the facts are not iterated yet
+				return;
+			}
+			
+			while ((demand.get() > 0) && !inFlight.isEmpty() && inFlight.peek().isDone())
+			{
+				EvaluationResult<T> result;
+				try
+				{
+					result = inFlight.poll().join();
+				}
+				catch (CompletionException e)
+				{
+					throw ((e.getCause() == null) ? e : e.getCause());
+				}
+				demand.decrementAndGet();
+				subscriber.onNext(result);
+				if (cancelled)
+				{
+					done = true;
+					return;
+				}
+			}
+			
+			while ((inFlight.size() < maxInFlight) && (inFlight.size() < demand.get()) && iterator.hasNext())
+			{
+				List<T> chunk = new ArrayList<T>(chunkSize);
+				while ((chunk.size() < chunkSize) && iterator.hasNext())
+				{
+					chunk.add(iterator.next());
+				}
+				
+				CompletableFuture<EvaluationResult<T>> evaluation = evaluateAll(chunk);
+				inFlight.add(evaluation);
+				evaluation.whenComplete(completion);
+			}
+			
+			if (inFlight.isEmpty() && !iterator.hasNext())
+			{
+				done = true;
+				subscriber.onComplete();
+			}
+		}
+	}
+	
+	/**
+	 * Stops accepting evaluations, the ones already submitted are completed.
+	 */
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+	
+	/**
+	 * @return True when evaluations run in virtual threads.
+	 */
+	public boolean isVirtual()
+	{
+		return virtual;
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Facts evaluated together and the number of rules fired over them.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @param <T> Type of fact.
+ */
+public class EvaluationResult<T>
+{
+	/**
+	 * Facts evaluated, as changed by the actions of the rules.
+	 */
+	private final List<T> facts;
+	/**
+	 * Number of rules fired.
+	 */
+	private final int fired;
+	
+	public EvaluationResult(List<T> facts, int fired)
+	{
+		this.facts = Collections.unmodifiableList(facts);
+		this.fired = fired;
+	}
+	
+	public List<T> getFacts()
+	{
+		return facts;
+	}
+	
+	public int getFired()
+	{
+		return fired;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | facts = ");
+		me.append(facts.size());
+		me.append(" | fired = ");
+		me.append(fired);
+		me.append("]");
+		
+		return me.toString();
+	}
+}
@@ -0,0 +1,460 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.itfromhell.howit.dynamicdrools.Condition;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.cache.KieBaseCache;
+import net.itfromhell.howit.dynamicdrools.cache.OutcomeCache;
+import net.itfromhell.howit.dynamicdrools.compiled.ConditionCompiler;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import net.itfromhell.howit.dynamicdrools.util.ParsedTemplate;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Evaluator replaying the outcome of facts unchanged since their last evaluation.<br>
+ * Before evaluating a fact its fingerprint is taken, made of the values of all properties read by the conditions of
+ * the rules. When an {@link OutcomeCache} holds an outcome of the same fingerprint for the same rule set, the actions
+ * recorded are applied again straight over the fact, without Drools. Otherwise the fact is evaluated by Drools,
+ * recording the argument of each action fired.<br>
+ * Actions must be numbers given to a method of the data object, as the template does with
+ * <i>$fact.discount(@{action})</i>, and the template must name each rule by its position and its name, as in
+ * <i>@{row.rowNumber} - @{name}</i>. Properties read by the rules must hold immutable values or dates.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class MemoizedEvaluator
+{
+	/**
+	 * Version of the rule set, the hash of template and rules.
+	 */
+	private final String version;
+	/**
+	 * Compiled rule base.
+	 */
+	private final KieBase base;
+	/**
+	 * Outcomes of the facts evaluated.
+	 */
+	private final OutcomeCache cache;
+	/**
+	 * Name of the method of the data object receiving the action as a number.
+	 */
+	private final String actionMethod;
+	/**
+	 * Properties read by the rules, in alphabetical order.
+	 */
+	private final List<String> properties;
+	/**
+	 * Argument of the action of each compiled rule, by the name given by the template.
+	 */
+	private final Map<String, Double> arguments = new HashMap<String, Double>();
+	/**
+	 * Accessors of the properties read by the rules, by class of data object.
+	 */
+	private final ConcurrentMap<Class<?>, MethodHandle[]> getters = new ConcurrentHashMap<Class<?>, MethodHandle[]>();
+	/**
+	 * Methods applying the actions, by class of data object.
+	 */
+	private final ConcurrentMap<Class<?>, MethodHandle> actions = new ConcurrentHashMap<Class<?>, MethodHandle>();
+	/**
+	 * Measurements of the evaluations by Drools, null when not measured.
+	 */
+	private final RuleMetrics metrics;
+	
+	/**
+	 * Compiles the rules.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @param actionMethod Name of the method of the data object receiving the action as a number.
+	 * @param cache Outcomes of the facts evaluated, which may be shared by evaluators of many rule sets.
+	 * @throws IllegalArgumentException Indicates a rule whose outcome can not be replayed.
+	 * @throws Exception 
+	 */
+	public MemoizedEvaluator(List<Rule> rules, String templatePath, String actionMethod, OutcomeCache cache) throws IllegalArgumentException, Exception
+	{
+		this(rules, templatePath, actionMethod, cache, new DroolsUtility());
+	}
+	
+	/**
+	 * Compiles the rules.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @param actionMethod Name of the method of the data object receiving the action as a number.
+	 * @param cache Outcomes of the facts evaluated, which may be shared by evaluators of many rule sets.
+	 * @param utility Utility compiling the rules.
+	 * @throws IllegalArgumentException Indicates a rule whose outcome can not be replayed.
+	 * @throws Exception 
+	 */
+	public MemoizedEvaluator(List<Rule> rules, String templatePath, String actionMethod, OutcomeCache cache, DroolsUtility utility) throws IllegalArgumentException, Exception
+	{
+		List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(rules.size());
+		for (Rule rule : rules)
+		{
+			maps.add(rule.asMap());
+		}
+		this.version = KieBaseCache.hash(ParsedTemplate.load(templatePath).getContent(), maps);
+		this.base = utility.loadKieBase(rules, templatePath);
+		this.cache = cache;
+		this.actionMethod = actionMethod;
+		this.metrics = utility.getMetrics();
+		
+		//The rules compiled are the optimized ones when there is an optimizer
+		List<Rule> compiled = ((utility.getOptimizer() == null) ? rules : utility.getOptimizer().optimize(rules).getRules());
+		Set<String> read = new TreeSet<String>();
+		for (int i = 0; i < compiled.size(); i++)
+		{
+			Rule rule = compiled.get(i);
+			try
+			{
+				arguments.put(i + " - " + rule.getName(), Double.valueOf(String.valueOf(rule.getAction()).trim()));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("The action of the rule " + rule.getName() + " is not a number, its outcome can not be replayed.");
+			}
+			
+			for (Condition condition : rule.getConditions())
+			{
+				String property = condition.getProperty();
+				if (property != null)
+				{
+					int dot = property.indexOf('.');
+					read.add((dot < 0) ? property : property.substring(0, dot));
+				}
+			}
+		}
+		this.properties = Collections.unmodifiableList(new ArrayList<String>(read));
+		
+		for (KiePackage pack : base.getKiePackages())
+		{
+			for (org.kie.api.definition.rule.Rule definition : pack.getRules())
+			{
+				if (!arguments.containsKey(definition.getName()))
+				{
+					throw new IllegalArgumentException("The rule " + definition.getName() + " is not named by its position and name, its outcome can not be replayed.");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Evaluates a fact, replaying its outcome when it is cached.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates a property of the fact which can not be part of a fingerprint.
+	 */
+	public int evaluate(Object fact) throws IllegalArgumentException
+	{
+		return evaluate(Collections.singletonList(fact));
+	}
+	
+	/**
+	 * Evaluates all facts, replaying the outcomes cached and evaluating the other facts by Drools in batches.<br>
+	 * The time saved is the evaluation time recorded with each outcome replayed, less the time spent taking the
+	 * fingerprints and replaying.
+	 * 
+	 * @param facts Data objects to be evaluated.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates a property of a fact which can not be part of a fingerprint.
+	 */
+	public int evaluate(Iterable<?> facts) throws IllegalArgumentException
+	{
+		long start = System.nanoTime();
+		List<Object> missed = new ArrayList<Object>();
+		List<Object[]> fingerprints = new ArrayList<Object[]>();
+		long replayed = 0L;
+		int fired = 0;
+		for (Object fact : facts)
+		{
+			Object[] fingerprint = fingerprint(fact);
+			OutcomeCache.Outcome outcome = cache.get(version, fact.getClass(), fingerprint);
+			if (outcome == null)
+			{
+				missed.add(fact);
+				fingerprints.add(fingerprint);
+			}
+			else
+			{
+				replay(fact, outcome);
+				replayed += outcome.getNanos();
+				fired += outcome.getFired();
+			}
+		}
+		if (replayed > 0L)
+		{
+			cache.recordSaved(replayed - (System.nanoTime() - start));
+		}
+		
+		if (!missed.isEmpty())
+		{
+			fired += evaluate(missed, fingerprints);
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * Evaluates facts by Drools, caching the outcome of each one.
+	 * 
+	 * @param facts Data objects to be evaluated.
+	 * @param fingerprints Fingerprint of each fact taken before the evaluation.
+	 * @return Number of rules fired.
+	 */
+	private int evaluate(List<Object> facts, List<Object[]> fingerprints)
+	{
+		final Map<Object, List<Double>> fired = new IdentityHashMap<Object, List<Double>>();
+		StatelessKieSession session = base.newStatelessKieSession();
+		if (metrics != null)
+		{
+			metrics.attach(session);
+		}
+		session.addEventListener(new DefaultAgendaEventListener()
+		{
+			@Override
+			public void afterMatchFired(AfterMatchFiredEvent event)
+			{
+				Double argument = arguments.get(event.getMatch().getRule().getName());
+				for (Object object : event.getMatch().getObjects())
+				{
+					List<Double> recorded = fired.get(object);
+					if (recorded == null)
+					{
+						recorded = new ArrayList<Double>();
+						fired.put(object, recorded);
+					}
+					recorded.add(argument);
+				}
+			}
+		});
+		
+		long start = System.nanoTime();
+		int count = DroolsUtility.execute(session, facts, DroolsUtility.DEFAULT_BATCH_SIZE, metrics);
+		//The batches are timed as a whole, each fact is accounted for an equal share
+		long nanos = ((System.nanoTime() - start) / facts.size());
+		
+		for (int i = 0; i < facts.size(); i++)
+		{
+			Object fact = facts.get(i);
+			List<Double> recorded = fired.get(fact);
+			double[] replayable = new double[(recorded == null) ? 0 : recorded.size()];
+			for (int j = 0; j < replayable.length; j++)
+			{
+				replayable[j] = recorded.get(j);
+			}
+			cache.put(version, fact.getClass(), fingerprints.get(i), new OutcomeCache.Outcome(replayable, nanos));
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Applies again the actions of an outcome over a fact.
+	 */
+	private void replay(Object fact, OutcomeCache.Outcome outcome)
+	{
+		if (outcome.getFired() == 0)
+		{
+			return;
+		}
+		
+		MethodHandle action = action(fact.getClass());
+		try
+		{
+			for (int i = 0; i < outcome.getFired(); i++)
+			{
+				action.invokeExact(fact, outcome.getArgument(i));
+			}
+		}
+		catch (Throwable e)
+		{
+			throw failure(e, "Failure applying the action over data object.");
+		}
+	}
+	
+	/**
+	 * Takes the values of the properties read by the rules.
+	 * 
+	 * @param fact Data object.
+	 * @return Values of the properties, with dates replaced by their time in milliseconds.
+	 * @throws IllegalArgumentException Indicates a property holding a value which may change.
+	 */
+	private Object[] fingerprint(Object fact) throws IllegalArgumentException
+	{
+		MethodHandle[] accessors = getters(fact.getClass());
+		Object[] values = new Object[accessors.length];
+		for (int i = 0; i < accessors.length; i++)
+		{
+			Object value;
+			try
+			{
+				value = (Object)accessors[i].invokeExact(fact);
+			}
+			catch (Throwable e)
+			{
+				throw failure(e, "Failure reading property of data object.");
+			}
+			
+			if (value instanceof Date)
+			{
+				value = ((Date)value).getTime();
+			}
+			else if (!isImmutable(value))
+			{
+				throw new IllegalArgumentException("The " + value.getClass().getSimpleName() + " object read from " + fact.getClass().getSimpleName() + " may change, it can not be part of a fingerprint.");
+			}
+			values[i] = value;
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Invocation failure of an accessor or of an action, which can only be a failure of the method itself.
+	 */
+	private static IllegalStateException failure(Throwable cause, String message)
+	{
+		if (cause instanceof RuntimeException)
+		{
+			throw (RuntimeException)cause;
+		}
+		if (cause instanceof Error)
+		{
+			throw (Error)cause;
+		}
+		
+		return new IllegalStateException(message, cause);
+	}
+	
+	private static boolean isImmutable(Object value)
+	{
+		return (value == null) || (value instanceof String) || (value instanceof Double) || (value instanceof Long) || (value instanceof Integer)
+				|| (value instanceof Float) || (value instanceof Short) || (value instanceof Byte) || (value instanceof BigDecimal)
+				|| (value instanceof BigInteger) || (value instanceof Boolean) || (value instanceof Character) || (value instanceof Enum);
+	}
+	
+	/**
+	 * Accessors of the properties read by the rules which the class has.
+	 */
+	private MethodHandle[] getters(Class<?> type)
+	{
+		MethodHandle[] accessors = getters.get(type);
+		if (accessors == null)
+		{
+			List<MethodHandle> found = new ArrayList<MethodHandle>(properties.size());
+			for (String property : properties)
+			{
+				Method getter = ConditionCompiler.findGetter(type, property);
+				if (getter != null)
+				{
+					try
+					{
+						found.add(MethodHandles.publicLookup().unreflect(getter).asType(MethodType.methodType(Object.class, Object.class)));
+					}
+					catch (IllegalAccessException e)
+					{
+						throw new IllegalArgumentException("The property " + property + " of " + type.getSimpleName() + " can not be read.", e);
+					}
+				}
+			}
+			accessors = found.toArray(new MethodHandle[found.size()]);
+			getters.putIfAbsent(type, accessors);
+		}
+		
+		return accessors;
+	}
+	
+	/**
+	 * Method applying the actions over the class.
+	 */
+	private MethodHandle action(Class<?> type)
+	{
+		MethodHandle action = actions.get(type);
+		if (action == null)
+		{
+			try
+			{
+				Method method = type.getMethod(actionMethod, double.class);
+				action = MethodHandles.publicLookup().unreflect(method).asType(MethodType.methodType(void.class, Object.class, double.class));
+			}
+			catch (NoSuchMethodException e)
+			{
+				throw new IllegalArgumentException("The " + type.getSimpleName() + " object does not have a public method " + actionMethod + "(double).", e);
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IllegalArgumentException("The method " + actionMethod + " of " + type.getSimpleName() + " can not be invoked.", e);
+			}
+			actions.putIfAbsent(type, action);
+		}
+		
+		return action;
+	}
+	
+	/**
+	 * @return Version of the rule set, the hash of template and rules.
+	 */
+	public String getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * @return Properties read by the rules, which make the fingerprint of a fact.
+	 */
+	public List<String> getProperties()
+	{
+		return properties;
+	}
+	
+	public OutcomeCache getCache()
+	{
+		return cache;
+	}
+	
+	public KieBase getKieBase()
+	{
+		return base;
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Evaluator spreading facts over all cores.<br>
+ * Facts are split in partitions evaluated by a <b>ForkJoinPool</b>, each partition using a session taken from a pool.
+ * The template must bind the fact the action is applied on, as <i>Product.drl</i> does, because a global would be
+ * shared by all partitions.<br>
+ * Every fact is evaluated by itself, so the outcome is the same as evaluating them sequentially.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ParallelEvaluator
+{
+	/**
+	 * Default number of facts below which a partition is not split anymore.
+	 */
+	public static final int DEFAULT_PARTITION_SIZE = 512;
+	
+	/**
+	 * Pool executing the partitions.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * Sessions used by the partitions.
+	 */
+	private final SessionPool sessions;
+	/**
+	 * Number of facts below which a partition is not split anymore.
+	 */
+	private final int partitionSize;
+	/**
+	 * Measurements of the partitions, null when not measured.
+	 */
+	private final RuleMetrics metrics;
+	
+	/**
+	 * Creates an evaluator using all available cores.
+	 * 
+	 * @param base Compiled rule base.
+	 */
+	public ParallelEvaluator(KieBase base)
+	{
+		this(base, Runtime.getRuntime().availableProcessors(), DEFAULT_PARTITION_SIZE);
+	}
+	
+	/**
+	 * Creates an evaluator.
+	 * 
+	 * @param base Compiled rule base.
+	 * @param parallelism Number of threads evaluating facts.
+	 * @param partitionSize Number of facts below which a partition is not split anymore.
+	 */
+	public ParallelEvaluator(KieBase base, int parallelism, int partitionSize)
+	{
+		this(base, parallelism, partitionSize, null);
+	}
+	
+	/**
+	 * Creates a measured evaluator.
+	 * 
+	 * @param base Compiled rule base.
+	 * @param parallelism Number of threads evaluating facts.
+	 * @param partitionSize Number of facts below which a partition is not split anymore.
+	 * @param metrics Measurements of firings and of each partition, null when not measured.
+	 */
+	public ParallelEvaluator(KieBase base, int parallelism, int partitionSize, RuleMetrics metrics)
+	{
+		if (partitionSize < 1)
+		{
+			throw new IllegalArgumentException("The partition size must be positive.");
+		}
+		
+		this.pool = new ForkJoinPool(parallelism);
+		this.sessions = new SessionPool(base, parallelism, metrics);
+		this.partitionSize = partitionSize;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Evaluates all facts in parallel, waiting until all of them are done.
+	 * 
+	 * @param facts Facts to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Iterable<?> facts)
+	{
+		List<Object> all = new ArrayList<Object>();
+		for (Object fact : facts)
+		{
+			all.add(fact);
+		}
+		
+		return pool.invoke(new Partition(all, 0, all.size()));
+	}
+	
+	/**
+	 * Stops the threads of this evaluator.
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+	
+	/**
+	 * Range of facts evaluated by one task.
+	 */
+	private class Partition extends RecursiveTask<Integer>
+	{
+		private final List<Object> facts;
+		private final int from;
+		private final int to;
+		
+		private Partition(List<Object> facts, int from, int to)
+		{
+			this.facts = facts;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Integer compute()
+		{
+			if ((to - from) <= partitionSize)
+			{
+				return evaluatePartition();
+			}
+			
+			int middle = (from + to) >>> 1;
+			Partition left = new Partition(facts, from, middle);
+			left.fork();
+			int right = new Partition(facts, middle, to).compute();
+			
+			return right + left.join();
+		}
+		
+		/**
+		 * Evaluates the facts of this partition with a pooled session.
+		 * 
+		 * @return Number of rules fired.
+		 */
+		private int evaluatePartition()
+		{
+			StatelessKieSession session;
+			try
+			{
+				session = sessions.acquire();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a session.", e);
+			}
+			
+			try
+			{
+				return DroolsUtility.execute(session, facts.subList(from, to), DroolsUtility.DEFAULT_BATCH_SIZE, metrics);
+			}
+			finally
+			{
+				sessions.release(session);
+			}
+		}
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.util.ParsedTemplate;
+import org.kie.api.KieBase;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.StatelessKieSession;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.definition.KnowledgePackage;
+import org.kie.internal.io.ResourceFactory;
+
+/**
+ * Owner of a live rule base which accepts incremental changes.<br>
+ * Each rule is rendered and compiled alone and its package is merged into the live <b>KieBase</b>, so adding, updating
+ * or removing a rule costs the same whatever the number of rules already in the rule base.<br>
+ * Rules are identified by their names, which must be unique inside the manager.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleBaseManager
+{
+	/**
+	 * Template describing the rule's pattern.
+	 */
+	private final ParsedTemplate template;
+	/**
+	 * Live rule base.
+	 */
+	private final KnowledgeBase base;
+	/**
+	 * Compiled Drools rules of each managed rule, by rule name.
+	 */
+	private final Map<String, List<CompiledRule>> rules = new HashMap<String, List<CompiledRule>>();
+	/**
+	 * Measurements of compilations and of the sessions created, null when not measured.
+	 */
+	private RuleMetrics metrics;
+
+	/**
+	 * Creates a manager with an empty rule base.
+	 * 
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @throws Exception
+	 */
+	public RuleBaseManager(String templatePath) throws Exception
+	{
+		this.template = ParsedTemplate.load(templatePath);
+		this.base = KnowledgeBaseFactory.newKnowledgeBase();
+	}
+
+	/**
+	 * Identification of a rule inside the rule base.
+	 */
+	private static class CompiledRule
+	{
+		private final String packageName;
+		private final String ruleName;
+
+		private CompiledRule(String packageName, String ruleName)
+		{
+			this.packageName = packageName;
+			this.ruleName = ruleName;
+		}
+	}
+
+	/**
+	 * Adds a new rule to the live rule base.
+	 * 
+	 * @param rule Rule to be added.
+	 * @throws IllegalArgumentException Indicates a rule with the same name is already managed or the rule is invalid.
+	 * @throws Exception
+	 */
+	public synchronized void addRule(Rule rule) throws IllegalArgumentException, Exception
+	{
+		if (rules.containsKey(rule.getName()))
+		{
+			throw new IllegalArgumentException("The rule " + rule.getName() + " already exists.");
+		}
+
+		Collection<KnowledgePackage> packages = compile(rule);
+		List<CompiledRule> compiled = new ArrayList<CompiledRule>();
+		for (KnowledgePackage pack : packages)
+		{
+			for (org.kie.api.definition.rule.Rule definition : pack.getRules())
+			{
+				if (base.getRule(pack.getName(), definition.getName()) != null)
+				{
+					throw new IllegalArgumentException("The rule " + rule.getName() + " is rendered as " + definition.getName() + ", which is already in use.");
+				}
+				compiled.add(new CompiledRule(pack.getName(), definition.getName()));
+			}
+		}
+
+		base.addKnowledgePackages(packages);
+		rules.put(rule.getName(), compiled);
+	}
+
+	/**
+	 * Replaces a managed rule by a new version of it.<br>
+	 * The new version is compiled before the current one is removed, so an invalid rule leaves the rule base untouched.
+	 * 
+	 * @param rule New version of the rule.
+	 * @throws IllegalArgumentException Indicates the rule is not managed or is invalid.
+	 * @throws Exception
+	 */
+	public synchronized void updateRule(Rule rule) throws IllegalArgumentException, Exception
+	{
+		if (!rules.containsKey(rule.getName()))
+		{
+			throw new IllegalArgumentException("The rule " + rule.getName() + " does not exist.");
+		}
+
+		Collection<KnowledgePackage> packages = compile(rule);
+		removeRule(rule.getName());
+
+		List<CompiledRule> compiled = new ArrayList<CompiledRule>();
+		for (KnowledgePackage pack : packages)
+		{
+			for (org.kie.api.definition.rule.Rule definition : pack.getRules())
+			{
+				compiled.add(new CompiledRule(pack.getName(), definition.getName()));
+			}
+		}
+
+		base.addKnowledgePackages(packages);
+		rules.put(rule.getName(), compiled);
+	}
+
+	/**
+	 * Removes a rule from the live rule base.
+	 * 
+	 * @param name Name of the rule.
+	 * @return True when the rule was managed and has been removed.
+	 */
+	public synchronized boolean removeRule(String name)
+	{
+		List<CompiledRule> compiled = rules.remove(name);
+		if (compiled == null)
+		{
+			return false;
+		}
+
+		for (CompiledRule definition : compiled)
+		{
+			base.removeRule(definition.packageName, definition.ruleName);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Renders and compiles a single rule.
+	 * 
+	 * @param rule Rule to be compiled.
+	 * @return Packages containing the compiled rule.
+	 * @throws IllegalArgumentException Indicates the rendered rule does not compile.
+	 * @throws Exception
+	 */
+	private Collection<KnowledgePackage> compile(Rule rule) throws IllegalArgumentException, Exception
+	{
+		boolean timed = RuleMetrics.isEnabled(metrics);
+		long start = (timed ? System.nanoTime() : 0L);
+		String drl = template.render(Collections.singletonList(rule.asMap()), 0);
+
+		KnowledgeBuilder builder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		builder.add(ResourceFactory.newReaderResource(new StringReader(drl), StandardCharsets.UTF_8.name()), ResourceType.DRL);
+		if (builder.hasErrors())
+		{
+			throw new IllegalArgumentException("The rule " + rule.getName() + " does not compile: " + builder.getErrors());
+		}
+
+		Collection<KnowledgePackage> packages = builder.getKnowledgePackages();
+		if (timed)
+		{
+			metrics.recordCompile(System.nanoTime() - start, 1);
+		}
+
+		return packages;
+	}
+
+	/**
+	 * Creates a session over the current state of the rule base.
+	 * 
+	 * @return Session for execution of rules.
+	 */
+	public StatelessKieSession newSession()
+	{
+		StatelessKieSession session = base.newStatelessKieSession();
+		if (metrics != null)
+		{
+			metrics.attach(session);
+		}
+
+		return session;
+	}
+
+	/**
+	 * @return Names of the managed rules.
+	 */
+	public synchronized List<String> getRuleNames()
+	{
+		return new ArrayList<String>(rules.keySet());
+	}
+
+	public KieBase getKieBase()
+	{
+		return base;
+	}
+
+	public synchronized int size()
+	{
+		return rules.size();
+	}
+
+	public RuleMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Measures the compilations and the sessions created from now on.
+	 * 
+	 * @param metrics Measurements, null to stop measuring.
+	 */
+	public void setMetrics(RuleMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+}
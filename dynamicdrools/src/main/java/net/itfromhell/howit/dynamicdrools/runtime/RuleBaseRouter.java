@@ -0,0 +1,256 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Router of facts to rule bases compiled for their classes.<br>
+ * Rules are partitioned by data object and each partition is compiled alone with the template of its class, so the
+ * network evaluating a fact only holds the rules written for it. A fact is sent to every rule base compiled for its
+ * class or for one of its superclasses and interfaces, as Drools would match it; a fact of a class without rules is
+ * not evaluated.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class RuleBaseRouter
+{
+	/**
+	 * Routes by class of the rules' data object.
+	 */
+	private final Map<Class<?>, Route> routes = new LinkedHashMap<Class<?>, Route>();
+	/**
+	 * Routes already resolved for the class of each fact evaluated.
+	 */
+	private final ConcurrentMap<Class<?>, Route[]> resolved = new ConcurrentHashMap<Class<?>, Route[]>();
+	
+	/**
+	 * Compiles the rules of each data object with the same template.
+	 * 
+	 * @param rules Rules of any data object.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @param utility Utility compiling and caching the rule bases.
+	 * @throws IllegalArgumentException Indicates the class of a data object was not found.
+	 * @throws Exception
+	 */
+	public RuleBaseRouter(List<Rule> rules, String templatePath, DroolsUtility utility) throws IllegalArgumentException, Exception
+	{
+		this(rules, Collections.<String, String>emptyMap(), templatePath, utility);
+	}
+	
+	/**
+	 * Compiles the rules of each data object with the template of its class.
+	 * 
+	 * @param rules Rules of any data object.
+	 * @param templates Relative path to the template of each data object, by class name.
+	 * @param defaultTemplatePath Template of the data objects not found in the templates, null when all of them must be
+	 * there.
+	 * @param utility Utility compiling and caching the rule bases.
+	 * @throws IllegalArgumentException Indicates the class of a data object was not found or has no template.
+	 * @throws Exception
+	 */
+	public RuleBaseRouter(List<Rule> rules, Map<String, String> templates, String defaultTemplatePath, DroolsUtility utility) throws IllegalArgumentException, Exception
+	{
+		Map<String, List<Rule>> byDataObject = new LinkedHashMap<String, List<Rule>>();
+		for (Rule rule : rules)
+		{
+			List<Rule> partition = byDataObject.get(rule.getDataObject());
+			if (partition == null)
+			{
+				partition = new ArrayList<Rule>();
+				byDataObject.put(rule.getDataObject(), partition);
+			}
+			partition.add(rule);
+		}
+		
+		for (Map.Entry<String, List<Rule>> partition : byDataObject.entrySet())
+		{
+			String templatePath = (templates.containsKey(partition.getKey()) ? templates.get(partition.getKey()) : defaultTemplatePath);
+			if (templatePath == null)
+			{
+				throw new IllegalArgumentException("There is no template for the rules of " + partition.getKey() + ".");
+			}
+			
+			Class<?> type = load(partition.getKey());
+			KieBase base = utility.loadKieBase(partition.getValue(), templatePath);
+			StatelessKieSession session = base.newStatelessKieSession();
+			if (utility.getMetrics() != null)
+			{
+				utility.getMetrics().attach(session);
+			}
+			routes.put(type, new Route(type, base, session, partition.getValue().size()));
+		}
+	}
+	
+	/**
+	 * Compiled rule base of a data object.
+	 */
+	private static class Route
+	{
+		private final Class<?> type;
+		private final KieBase base;
+		private final StatelessKieSession session;
+		private final int ruleCount;
+		
+		private Route(Class<?> type, KieBase base, StatelessKieSession session, int ruleCount)
+		{
+			this.type = type;
+			this.base = base;
+			this.session = session;
+			this.ruleCount = ruleCount;
+		}
+	}
+	
+	private static Class<?> load(String dataObject) throws IllegalArgumentException
+	{
+		if (dataObject == null)
+		{
+			throw new IllegalArgumentException("The rule has no object to be evaluated.");
+		}
+		
+		try
+		{
+			return Class.forName(dataObject, false, Thread.currentThread().getContextClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IllegalArgumentException("The class " + dataObject + " was not found.", e);
+		}
+	}
+	
+	/**
+	 * Finds the routes of a class of fact, resolving them once for each class.
+	 */
+	private Route[] routesOf(Class<?> type)
+	{
+		Route[] found = resolved.get(type);
+		if (found == null)
+		{
+			List<Route> matching = new ArrayList<Route>(1);
+			for (Route route : routes.values())
+			{
+				if (route.type.isAssignableFrom(type))
+				{
+					matching.add(route);
+				}
+			}
+			found = matching.toArray(new Route[matching.size()]);
+			resolved.put(type, found);
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Evaluates a fact against the rules of its class.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Object fact)
+	{
+		int fired = 0;
+		for (Route route : routesOf(fact.getClass()))
+		{
+			fired += DroolsUtility.execute(route.session, Collections.singletonList(fact));
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * Evaluates all facts, each one against the rules of its class.<br>
+	 * Facts are grouped by rule base, so each rule base evaluates its facts in batched executions.
+	 * 
+	 * @param facts Data objects to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Iterable<?> facts)
+	{
+		Map<Route, List<Object>> byRoute = new IdentityHashMap<Route, List<Object>>();
+		for (Object fact : facts)
+		{
+			for (Route route : routesOf(fact.getClass()))
+			{
+				List<Object> routed = byRoute.get(route);
+				if (routed == null)
+				{
+					routed = new ArrayList<Object>();
+					byRoute.put(route, routed);
+				}
+				routed.add(fact);
+			}
+		}
+		
+		int fired = 0;
+		for (Map.Entry<Route, List<Object>> routed : byRoute.entrySet())
+		{
+			fired += DroolsUtility.execute(routed.getKey().session, routed.getValue());
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * Gets the rule base compiled for a data object.
+	 * 
+	 * @param type Class of the data object.
+	 * @return Compiled rule base, or null when there are no rules for the class.
+	 */
+	public KieBase getKieBase(Class<?> type)
+	{
+		Route route = routes.get(type);
+		
+		return ((route == null) ? null : route.base);
+	}
+	
+	/**
+	 * @return Number of rules compiled for each data object.
+	 */
+	public Map<Class<?>, Integer> getRuleCounts()
+	{
+		Map<Class<?>, Integer> counts = new HashMap<Class<?>, Integer>();
+		for (Route route : routes.values())
+		{
+			counts.put(route.type, route.ruleCount);
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * @return Classes of the data objects with rules.
+	 */
+	public List<Class<?>> getTypes()
+	{
+		return new ArrayList<Class<?>>(routes.keySet());
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Bounded pool of sessions created over the same rule base.<br>
+ * Each session is used by a single thread at a time, while the compiled rule base is shared among all of them.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class SessionPool
+{
+	/**
+	 * Rule base from which sessions are created.
+	 */
+	private final KieBase base;
+	/**
+	 * Idle sessions.
+	 */
+	private final BlockingQueue<StatelessKieSession> idle;
+	
+	/**
+	 * Creates a pool with all sessions ready to use.
+	 * 
+	 * @param base Rule base from which sessions are created.
+	 * @param size Number of sessions in the pool.
+	 */
+	public SessionPool(KieBase base, int size)
+	{
+		this(base, size, null);
+	}
+	
+	/**
+	 * Creates a pool with all sessions ready to use and measured.
+	 * 
+	 * @param base Rule base from which sessions are created.
+	 * @param size Number of sessions in the pool.
+	 * @param metrics Measurements attached to every session, null when not measured.
+	 */
+	public SessionPool(KieBase base, int size, RuleMetrics metrics)
+	{
+		if (size < 1)
+		{
+			throw new IllegalArgumentException("The pool must have at least one session.");
+		}
+		
+		this.base = base;
+		this.idle = new ArrayBlockingQueue<StatelessKieSession>(size);
+		for (int i = 0; i < size; i++)
+		{
+			StatelessKieSession session = base.newStatelessKieSession();
+			if (metrics != null)
+			{
+				metrics.attach(session);
+			}
+			idle.add(session);
+		}
+	}
+	
+	/**
+	 * Takes a session from the pool, waiting for one to become idle when necessary.
+	 * 
+	 * @return Session for exclusive use until it is released.
+	 * @throws InterruptedException Indicates the waiting was interrupted.
+	 */
+	public StatelessKieSession acquire() throws InterruptedException
+	{
+		return idle.take();
+	}
+	
+	/**
+	 * Gives a session back to the pool.
+	 * 
+	 * @param session Session taken from this pool.
+	 */
+	public void release(StatelessKieSession session)
+	{
+		idle.offer(session);
+	}
+	
+	public KieBase getKieBase()
+	{
+		return base;
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import net.itfromhell.howit.dynamicdrools.Decision;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import org.kie.api.KieBase;
+import org.kie.api.event.rule.DefaultRuleRuntimeEventListener;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+
+/**
+ * Evaluator keeping the facts in the working memory of a stateful session between evaluations.<br>
+ * Facts are inserted once and then only their changes are given to the session, which matches again just the changed
+ * facts and fires only the rules they match now, while a stateless evaluation matches again the whole set of facts.
+ * Each delta fires the rules it activates before returning.<br>
+ * Facts are identified by identity. The session is not thread safe, so the deltas are applied one at a time.<br>
+ * With an exclusive template the {@link Decision} inserted for a fact is deleted when the fact is updated or
+ * retracted, so an updated fact fires its first matched rule again and a retracted one leaves nothing behind.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class StatefulEvaluator implements Closeable
+{
+	/**
+	 * Session holding the facts.
+	 */
+	private final KieSession session;
+	/**
+	 * Handles of the facts in the working memory.
+	 */
+	private final Map<Object, FactHandle> handles = new IdentityHashMap<Object, FactHandle>();
+	/**
+	 * Handles of the decisions inserted by the rules, by the fact decided.
+	 */
+	private final Map<Object, FactHandle> decisions = new IdentityHashMap<Object, FactHandle>();
+	/**
+	 * Measurements receiving the duration of each delta, null when not measured.
+	 */
+	private final RuleMetrics metrics;
+	
+	/**
+	 * Creates an evaluator with an empty working memory.
+	 * 
+	 * @param base Rule base from which the session is created.
+	 */
+	public StatefulEvaluator(KieBase base)
+	{
+		this(base, null);
+	}
+	
+	/**
+	 * Creates an evaluator with an empty working memory, measured.
+	 * 
+	 * @param base Rule base from which the session is created.
+	 * @param metrics Measurements attached to the session, null when not measured.
+	 */
+	public StatefulEvaluator(KieBase base, RuleMetrics metrics)
+	{
+		this.session = base.newKieSession();
+		this.metrics = metrics;
+		if (metrics != null)
+		{
+			metrics.attach(session);
+		}
+		session.addEventListener(new DefaultRuleRuntimeEventListener()
+		{
+			@Override
+			public void objectInserted(ObjectInsertedEvent event)
+			{
+				if (event.getObject() instanceof Decision)
+				{
+					decisions.put(((Decision)event.getObject()).getFact(), event.getFactHandle());
+				}
+			}
+			
+			@Override
+			public void objectDeleted(ObjectDeletedEvent event)
+			{
+				if (event.getOldObject() instanceof Decision)
+				{
+					Object fact = ((Decision)event.getOldObject()).getFact();
+					if (decisions.get(fact) == event.getFactHandle())
+					{
+						decisions.remove(fact);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Inserts a new fact and fires the rules it matches.
+	 * 
+	 * @param fact Fact to be inserted.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates the fact is already in the working memory.
+	 */
+	public int insert(Object fact) throws IllegalArgumentException
+	{
+		return insert(Collections.singletonList(fact));
+	}
+	
+	/**
+	 * Inserts new facts and fires the rules they match.
+	 * 
+	 * @param facts Facts to be inserted.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates a fact is already in the working memory, the facts before it are
+	 * inserted.
+	 */
+	public synchronized int insert(Iterable<?> facts) throws IllegalArgumentException
+	{
+		boolean timed = RuleMetrics.isEnabled(metrics);
+		long start = (timed ? System.nanoTime() : 0L);
+		int count = 0;
+		try
+		{
+			for (Object fact : facts)
+			{
+				if (handles.containsKey(fact))
+				{
+					throw new IllegalArgumentException("The fact " + fact + " is already in the working memory.");
+				}
+				
+				handles.put(fact, session.insert(fact));
+				count++;
+			}
+		}
+		finally
+		{
+			count = fire(timed, start, count);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Notifies the change of a fact and fires the rules it matches after the change.<br>
+	 * Rules fired before by the fact fire again when they still match it.
+	 * 
+	 * @param fact Fact changed.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates the fact is not in the working memory.
+	 */
+	public int update(Object fact) throws IllegalArgumentException
+	{
+		return update(Collections.singletonList(fact));
+	}
+	
+	/**
+	 * Notifies the change of facts and fires the rules they match after the change.<br>
+	 * Rules fired before by the facts fire again when they still match them.
+	 * 
+	 * @param facts Facts changed.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates a fact is not in the working memory, the facts before it are updated.
+	 */
+	public synchronized int update(Iterable<?> facts) throws IllegalArgumentException
+	{
+		boolean timed = RuleMetrics.isEnabled(metrics);
+		long start = (timed ? System.nanoTime() : 0L);
+		int count = 0;
+		try
+		{
+			for (Object fact : facts)
+			{
+				FactHandle handle = handles.get(fact);
+				if (handle == null)
+				{
+					throw new IllegalArgumentException("The fact " + fact + " is not in the working memory.");
+				}
+				
+				forget(fact);
+				session.update(handle, fact);
+				count++;
+			}
+		}
+		finally
+		{
+			count = fire(timed, start, count);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Removes a fact from the working memory and fires the rules activated by its absence.
+	 * 
+	 * @param fact Fact to be removed.
+	 * @return Number of rules fired.
+	 * @throws IllegalArgumentException Indicates the fact is not in the working memory.
+	 */
+	public synchronized int retract(Object fact) throws IllegalArgumentException
+	{
+		FactHandle handle = handles.remove(fact);
+		if (handle == null)
+		{
+			throw new IllegalArgumentException("The fact " + fact + " is not in the working memory.");
+		}
+		
+		boolean timed = RuleMetrics.isEnabled(metrics);
+		long start = (timed ? System.nanoTime() : 0L);
+		forget(fact);
+		session.delete(handle);
+		
+		return fire(timed, start, 1);
+	}
+	
+	/**
+	 * Deletes the decision of a fact, if any, so the fact is matched as never decided.
+	 * 
+	 * @param fact Fact updated or retracted.
+	 */
+	private void forget(Object fact)
+	{
+		FactHandle decision = decisions.remove(fact);
+		if (decision != null)
+		{
+			session.delete(decision);
+		}
+	}
+	
+	/**
+	 * Fires the rules activated by a delta.
+	 * 
+	 * @param timed Indicates the delta is measured.
+	 * @param start Start of the delta, in nanoseconds.
+	 * @param facts Number of facts changed.
+	 * @return Number of rules fired.
+	 */
+	private int fire(boolean timed, long start, int facts)
+	{
+		int fired = session.fireAllRules();
+		if (timed)
+		{
+			metrics.recordBatch(System.nanoTime() - start, facts);
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * @param fact Fact to be checked.
+	 * @return True when the fact is in the working memory.
+	 */
+	public synchronized boolean contains(Object fact)
+	{
+		return handles.containsKey(fact);
+	}
+	
+	/**
+	 * @return Number of facts in the working memory.
+	 */
+	public synchronized int size()
+	{
+		return handles.size();
+	}
+	
+	/**
+	 * Disposes the session, releasing the working memory.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		handles.clear();
+		decisions.clear();
+		session.dispose();
+	}
+}
@@ -0,0 +1,370 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.runtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.cache.KieBaseCache;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Holder of the current version of a rule base, replaced without pausing the evaluations.<br>
+ * A new version is compiled, and optionally warmed up, by a background thread while the evaluations go on over the
+ * current one, then it is published by a single atomic swap, so an evaluation sees either the whole old version or
+ * the whole new one. Each evaluation holds a reference to the version it started with until it finishes, and a
+ * replaced version is released once its last evaluation gives it back.<br>
+ * Updates are compiled one at a time, in the order they are requested.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class VersionedRuleBase
+{
+	private static final Logger LOGGER = Logger.getLogger(VersionedRuleBase.class.getName());
+	
+	/**
+	 * Relative path to the template file describing the rule's pattern.
+	 */
+	private final String templatePath;
+	/**
+	 * Utility compiling each version.
+	 */
+	private final DroolsUtility utility;
+	/**
+	 * Version used by the evaluations starting now.
+	 */
+	private final AtomicReference<Version> current;
+	/**
+	 * Thread compiling the new versions.
+	 */
+	private final ExecutorService compiler;
+	/**
+	 * Number of the last version created.
+	 */
+	private final AtomicLong versions = new AtomicLong();
+	
+	/**
+	 * Compiles the first version keeping only the latest rule base in the cache, so replaced versions can be collected
+	 * once released.
+	 * 
+	 * @param rules Rules of the first version.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @throws Exception 
+	 */
+	public VersionedRuleBase(List<Rule> rules, String templatePath) throws Exception
+	{
+		this(rules, templatePath, new DroolsUtility(new KieBaseCache(1, KieBaseCache.DEFAULT_MAX_RULES)));
+	}
+	
+	/**
+	 * Compiles the first version.
+	 * 
+	 * @param rules Rules of the first version.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @param utility Utility compiling each version, whose cache keeps rule bases from being collected.
+	 * @throws Exception 
+	 */
+	public VersionedRuleBase(List<Rule> rules, String templatePath, DroolsUtility utility) throws Exception
+	{
+		this.templatePath = templatePath;
+		this.utility = utility;
+		List<Rule> copy = new ArrayList<Rule>(rules);
+		this.current = new AtomicReference<Version>(new Version(versions.incrementAndGet(), copy, utility.loadKieBase(copy, templatePath)));
+		this.compiler = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "dynamicdrools-versions");
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Version of the rule base, counting the evaluations using it.
+	 */
+	public static class Version
+	{
+		private final long number;
+		private final List<Rule> rules;
+		/**
+		 * Compiled rule base, null once released.
+		 */
+		private volatile KieBase base;
+		/**
+		 * Evaluations using this version, plus one while it is the current version.
+		 */
+		private final AtomicInteger references = new AtomicInteger(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+		
+		private Version(long number, List<Rule> rules, KieBase base)
+		{
+			this.number = number;
+			this.rules = Collections.unmodifiableList(rules);
+			this.base = base;
+		}
+		
+		/**
+		 * Takes a reference to this version, unless it was already released.
+		 */
+		private boolean tryAcquire()
+		{
+			while (true)
+			{
+				int count = references.get();
+				if (count == 0)
+				{
+					return false;
+				}
+				if (references.compareAndSet(count, count + 1))
+				{
+					return true;
+				}
+			}
+		}
+		
+		/**
+		 * Gives back a reference taken by {@link VersionedRuleBase#acquire()}.<br>
+		 * The version is released when it was replaced and its last reference is given back.
+		 * 
+		 * @throws IllegalStateException Indicates more references given back than taken.
+		 */
+		public void release() throws IllegalStateException
+		{
+			int count = references.decrementAndGet();
+			if (count < 0)
+			{
+				throw new IllegalStateException("The version " + number + " was released more times than acquired.");
+			}
+			
+			if (count == 0)
+			{
+				base = null;
+				released.countDown();
+				if (LOGGER.isLoggable(Level.FINE))
+				{
+					LOGGER.fine("The version " + number + " of the rule base was released.");
+				}
+			}
+		}
+		
+		/**
+		 * Waits for the last evaluation of a replaced version.
+		 * 
+		 * @param timeout Maximum time to wait.
+		 * @param unit Unit of the timeout.
+		 * @return True when the version was released, false when the time elapsed.
+		 * @throws InterruptedException Indicates the waiting was interrupted.
+		 */
+		public boolean awaitRelease(long timeout, TimeUnit unit) throws InterruptedException
+		{
+			return released.await(timeout, unit);
+		}
+		
+		/**
+		 * @return Compiled rule base, to be used only while holding a reference to this version.
+		 * @throws IllegalStateException Indicates the version was already released.
+		 */
+		public KieBase getKieBase() throws IllegalStateException
+		{
+			KieBase compiled = base;
+			if (compiled == null)
+			{
+				throw new IllegalStateException("The version " + number + " was already released.");
+			}
+			
+			return compiled;
+		}
+		
+		public boolean isReleased()
+		{
+			return (released.getCount() == 0);
+		}
+		
+		public long getNumber()
+		{
+			return number;
+		}
+		
+		public List<Rule> getRules()
+		{
+			return rules;
+		}
+		
+		@Override
+		public String toString()
+		{
+			StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+			me.append(" | number = ");
+			me.append(number);
+			me.append(" | rules = ");
+			me.append(rules.size());
+			me.append(" | references = ");
+			me.append(references.get());
+			me.append("]");
+			
+			return me.toString();
+		}
+	}
+	
+	/**
+	 * Compiles a new version in background and publishes it once compiled.
+	 * 
+	 * @param rules Rules of the new version.
+	 * @return Future completed with the version published, or with the failure of the compilation, in which case the
+	 * current version is kept.
+	 */
+	public Future<Version> update(List<Rule> rules)
+	{
+		return update(rules, Collections.emptyList());
+	}
+	
+	/**
+	 * Compiles a new version in background and publishes it once compiled and warmed up.<br>
+	 * Warming up evaluates some facts over the new version before publishing it, so the first evaluations of the new
+	 * version do not pay for the lazy initialization of its rule network. Warming up runs the new rules for real: the
+	 * actions fired, like the discounts of the product template, are applied to the facts given, so they must be copies
+	 * or facts to be discarded, never facts still in use.
+	 * 
+	 * @param rules Rules of the new version.
+	 * @param warmUp Facts evaluated over the new version before publishing it and changed by it, which may be empty.
+	 * @return Future completed with the version published, or with the failure of the compilation, in which case the
+	 * current version is kept.
+	 */
+	public Future<Version> update(List<Rule> rules, final Collection<?> warmUp)
+	{
+		final List<Rule> copy = new ArrayList<Rule>(rules);
+		
+		return compiler.submit(new Callable<Version>()
+		{
+			@Override
+			public Version call() throws Exception
+			{
+				KieBase base = utility.loadKieBase(copy, templatePath);
+				if (!warmUp.isEmpty())
+				{
+					DroolsUtility.execute(base.newStatelessKieSession(), warmUp);
+				}
+				
+				Version next = new Version(versions.incrementAndGet(), copy, base);
+				Version previous = current.getAndSet(next);
+				//The current version reference is dropped, the evaluations still using it keep theirs
+				previous.release();
+				
+				if (LOGGER.isLoggable(Level.FINE))
+				{
+					LOGGER.fine("The version " + next.getNumber() + " of the rule base was published.");
+				}
+				
+				return next;
+			}
+		});
+	}
+	
+	/**
+	 * Takes a reference to the current version, which must be given back with {@link Version#release()}.
+	 * 
+	 * @return Current version, not released before the reference is given back.
+	 */
+	public Version acquire()
+	{
+		while (true)
+		{
+			Version version = current.get();
+			//Fails only when the version was replaced and released meanwhile, then the new one is taken
+			if (version.tryAcquire())
+			{
+				return version;
+			}
+		}
+	}
+	
+	/**
+	 * Evaluates a fact over the current version.
+	 * 
+	 * @param fact Data object to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Object fact)
+	{
+		return evaluate(Collections.singletonList(fact));
+	}
+	
+	/**
+	 * Evaluates facts over the current version, using the same version for all of them.
+	 * 
+	 * @param facts Facts to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public int evaluate(Iterable<?> facts)
+	{
+		Version version = acquire();
+		try
+		{
+			RuleMetrics metrics = utility.getMetrics();
+			StatelessKieSession session = version.getKieBase().newStatelessKieSession();
+			if (metrics != null)
+			{
+				metrics.attach(session);
+			}
+			
+			return DroolsUtility.execute(session, facts, DroolsUtility.DEFAULT_BATCH_SIZE, metrics);
+		}
+		finally
+		{
+			version.release();
+		}
+	}
+	
+	/**
+	 * @return Version used by the evaluations starting now, to be used only after {@link #acquire()}.
+	 */
+	public Version getCurrent()
+	{
+		return current.get();
+	}
+	
+	/**
+	 * Stops compiling new versions, after the updates already requested.
+	 */
+	public void shutdown()
+	{
+		compiler.shutdown();
+	}
+}
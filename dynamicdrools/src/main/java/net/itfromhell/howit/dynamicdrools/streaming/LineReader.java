@@ -0,0 +1,167 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.streaming;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reader of UTF-8 text lines through a file channel and a fixed direct buffer.<br>
+ * Lines are split on <i>\n</i> bytes, which never occur inside a multi-byte UTF-8 character, so the content is only
+ * decoded once a whole line is known. A trailing <i>\r</i> is dropped. The memory held is the buffer plus the
+ * longest line read.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class LineReader implements Closeable
+{
+	/**
+	 * Default size of the read buffer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	/**
+	 * Bytes of the line being read, which may span several reads of the buffer.
+	 */
+	private byte[] line = new byte[256];
+	/**
+	 * Indicates the end of the file was reached.
+	 */
+	private boolean eof;
+	/**
+	 * Number of lines read.
+	 */
+	private long lineNumber;
+	
+	/**
+	 * Opens a file using the default buffer size.
+	 * 
+	 * @param file File to be read.
+	 * @throws IOException Indicates the file could not be opened.
+	 */
+	public LineReader(Path file) throws IOException
+	{
+		this(file, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Opens a file.
+	 * 
+	 * @param file File to be read.
+	 * @param bufferSize Number of bytes read from the file at once.
+	 * @throws IOException Indicates the file could not be opened.
+	 */
+	public LineReader(Path file, int bufferSize) throws IOException
+	{
+		if (bufferSize < 1)
+		{
+			throw new IllegalArgumentException("The buffer size must be positive.");
+		}
+		
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.buffer.flip();
+	}
+	
+	/**
+	 * Reads the next line.
+	 * 
+	 * @return Line without its terminator, or null at the end of the file.
+	 * @throws IOException Indicates the file could not be read.
+	 */
+	public String readLine() throws IOException
+	{
+		int length = 0;
+		while (true)
+		{
+			if (!buffer.hasRemaining())
+			{
+				if (eof || !fill())
+				{
+					eof = true;
+					//The last line may have no terminator
+					return ((length == 0) ? null : newLine(length));
+				}
+			}
+			
+			byte b = buffer.get();
+			if (b == '\n')
+			{
+				return newLine(length);
+			}
+			
+			if (length == line.length)
+			{
+				line = Arrays.copyOf(line, length * 2);
+			}
+			line[length++] = b;
+		}
+	}
+	
+	/**
+	 * Reads the next bytes of the file into the buffer.
+	 * 
+	 * @return False at the end of the file.
+	 */
+	private boolean fill() throws IOException
+	{
+		buffer.clear();
+		int read = 0;
+		while (read == 0)
+		{
+			read = channel.read(buffer);
+		}
+		buffer.flip();
+		
+		return (read > 0);
+	}
+	
+	private String newLine(int length)
+	{
+		lineNumber++;
+		if ((length > 0) && (line[length - 1] == '\r'))
+		{
+			length--;
+		}
+		
+		return new String(line, 0, length, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * @return Number of lines read until now, the number of the last line returned.
+	 */
+	public long getLineNumber()
+	{
+		return lineNumber;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
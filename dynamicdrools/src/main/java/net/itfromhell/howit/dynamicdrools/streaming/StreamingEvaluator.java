@@ -0,0 +1,374 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.streaming;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import net.itfromhell.howit.dynamicdrools.compiled.CompiledRuleEngine;
+import net.itfromhell.howit.dynamicdrools.runtime.SessionPool;
+import net.itfromhell.howit.dynamicdrools.util.DroolsUtility;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.StatelessKieSession;
+
+/**
+ * Evaluator of facts streamed from a text file, keeping the memory bounded whatever the size of the file.<br>
+ * The calling thread reads and parses the lines into chunks, each chunk is evaluated by a pool of threads and a
+ * writer thread hands the evaluated chunks to a {@link ResultSink} in the order they were read. Chunks waiting for
+ * evaluation or writing are held in a bounded queue: when it is full the reading stops until the sink catches up, so
+ * at most <i>queueCapacity + 2</i> chunks are alive at any time.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ * @param <T> Type of fact.
+ */
+public class StreamingEvaluator<T>
+{
+	/**
+	 * Default number of facts of each chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	/**
+	 * Interval to check whether the writer has failed while the reading is held.
+	 */
+	private static final long POLL_MILLIS = 100;
+	
+	private final FactParser<T> parser;
+	private final ChunkEvaluator evaluator;
+	/**
+	 * Number of facts of each chunk.
+	 */
+	private final int chunkSize;
+	/**
+	 * Number of threads evaluating chunks.
+	 */
+	private final int parallelism;
+	/**
+	 * Maximum number of chunks read and not written yet.
+	 */
+	private final int queueCapacity;
+	
+	/**
+	 * Creates an evaluator using all available cores and the default chunk size.
+	 * 
+	 * @param parser Parser of the lines.
+	 * @param evaluator Evaluation of each chunk.
+	 */
+	public StreamingEvaluator(FactParser<T> parser, ChunkEvaluator evaluator)
+	{
+		this(parser, evaluator, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors(), 2 * Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Creates an evaluator.
+	 * 
+	 * @param parser Parser of the lines.
+	 * @param evaluator Evaluation of each chunk, called by several threads at once.
+	 * @param chunkSize Number of facts of each chunk.
+	 * @param parallelism Number of threads evaluating chunks.
+	 * @param queueCapacity Maximum number of chunks read and not written yet.
+	 */
+	public StreamingEvaluator(FactParser<T> parser, ChunkEvaluator evaluator, int chunkSize, int parallelism, int queueCapacity)
+	{
+		if ((chunkSize < 1) || (parallelism < 1) || (queueCapacity < 1))
+		{
+			throw new IllegalArgumentException("The chunk size, parallelism and queue capacity must be positive.");
+		}
+		
+		this.parser = parser;
+		this.evaluator = evaluator;
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+		this.queueCapacity = queueCapacity;
+	}
+	
+	/**
+	 * Evaluation of chunks by a compiled rule engine.
+	 * 
+	 * @param engine Compiled rules.
+	 * @return Evaluation of chunks.
+	 */
+	public static ChunkEvaluator compiled(final CompiledRuleEngine engine)
+	{
+		return new ChunkEvaluator()
+		{
+			@Override
+			public int evaluate(List<?> facts)
+			{
+				return engine.evaluate(facts);
+			}
+		};
+	}
+	
+	/**
+	 * Evaluation of chunks by Drools, with a session for each thread.
+	 * 
+	 * @param base Compiled rule base.
+	 * @param parallelism Number of threads evaluating chunks.
+	 * @return Evaluation of chunks.
+	 */
+	public static ChunkEvaluator drools(KieBase base, int parallelism)
+	{
+		final SessionPool sessions = new SessionPool(base, parallelism);
+		
+		return new ChunkEvaluator()
+		{
+			@Override
+			public int evaluate(List<?> facts)
+			{
+				StatelessKieSession session;
+				try
+				{
+					session = sessions.acquire();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for a session.", e);
+				}
+				
+				try
+				{
+					return DroolsUtility.execute(session, facts, facts.size());
+				}
+				finally
+				{
+					sessions.release(session);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Chunk of facts and the number of rules fired over it.
+	 */
+	private static class Chunk<T>
+	{
+		private final List<T> facts;
+		private int fired;
+		
+		private Chunk(List<T> facts)
+		{
+			this.facts = facts;
+		}
+	}
+	
+	/**
+	 * Evaluates all facts of a file, waiting until all of them are written to the sink.<br>
+	 * The sink is not closed.
+	 * 
+	 * @param input File holding one fact per line.
+	 * @param sink Destination of the evaluated facts.
+	 * @return Summary of the evaluation.
+	 * @throws IOException Indicates the file could not be read or the sink could not be written.
+	 * @throws IllegalArgumentException Indicates a malformed line.
+	 * @throws InterruptedException Indicates the evaluation was interrupted.
+	 */
+	public StreamingResult evaluate(Path input, final ResultSink<T> sink) throws IOException, IllegalArgumentException, InterruptedException
+	{
+		long start = System.nanoTime();
+		final BlockingQueue<Future<Chunk<T>>> pending = new ArrayBlockingQueue<Future<Chunk<T>>>(queueCapacity);
+		final Future<Chunk<T>> end = new FutureTask<Chunk<T>>(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+			}
+		}, null);
+		ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		
+		try
+		{
+			//Chunks are written in the order they were read, waiting for the evaluation of each one
+			Future<long[]> written = writer.submit(new Callable<long[]>()
+			{
+				@Override
+				public long[] call() throws Exception
+				{
+					long chunks = 0;
+					long fired = 0;
+					for (Future<Chunk<T>> next = pending.take(); next != end; next = pending.take())
+					{
+						Chunk<T> chunk = next.get();
+						sink.write(chunk.facts, chunk.fired);
+						chunks++;
+						fired += chunk.fired;
+					}
+					
+					return new long[] {chunks, fired};
+				}
+			});
+			
+			long facts = 0;
+			long lines;
+			LineReader reader = new LineReader(input);
+			try
+			{
+				List<T> chunk = new ArrayList<T>(chunkSize);
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					T fact = parse(line, reader.getLineNumber());
+					if (fact == null)
+					{
+						continue;
+					}
+					
+					chunk.add(fact);
+					facts++;
+					if (chunk.size() == chunkSize)
+					{
+						enqueue(pending, workers.submit(new Evaluation(chunk)), written);
+						chunk = new ArrayList<T>(chunkSize);
+					}
+				}
+				
+				if (!chunk.isEmpty())
+				{
+					enqueue(pending, workers.submit(new Evaluation(chunk)), written);
+				}
+				enqueue(pending, end, written);
+				lines = reader.getLineNumber();
+			}
+			finally
+			{
+				reader.close();
+			}
+			
+			long[] totals = get(written);
+			return new StreamingResult(lines, facts, totals[0], totals[1], System.nanoTime() - start);
+		}
+		finally
+		{
+			workers.shutdownNow();
+			writer.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Parses a line, identifying it when malformed.
+	 */
+	private T parse(String line, long lineNumber) throws IllegalArgumentException
+	{
+		try
+		{
+			return parser.parse(line);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Evaluation of a chunk by a worker.
+	 */
+	private class Evaluation implements Callable<Chunk<T>>
+	{
+		private final Chunk<T> chunk;
+		
+		private Evaluation(List<T> facts)
+		{
+			this.chunk = new Chunk<T>(facts);
+		}
+		
+		@Override
+		public Chunk<T> call()
+		{
+			chunk.fired = evaluator.evaluate(chunk.facts);
+			
+			return chunk;
+		}
+	}
+	
+	/**
+	 * Queues a chunk for writing, holding the reading while the queue is full.<br>
+	 * A failure of the writer is raised instead of waiting for a queue which would never be emptied.
+	 */
+	private void enqueue(BlockingQueue<Future<Chunk<T>>> pending, Future<Chunk<T>> chunk, Future<long[]> written) throws IOException, InterruptedException
+	{
+		while (!pending.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS))
+		{
+			if (written.isDone())
+			{
+				get(written);
+				throw new IllegalStateException("The writer has stopped before the end of the input.");
+			}
+		}
+	}
+	
+	/**
+	 * Waits for the writer, raising its failure.
+	 */
+	private static long[] get(Future<long[]> written) throws IOException, InterruptedException
+	{
+		try
+		{
+			return written.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof ExecutionException)
+			{
+				//Failure of the evaluation of a chunk, raised by the writer
+				cause = cause.getCause();
+			}
+			if (cause instanceof IOException)
+			{
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error)cause;
+			}
+			
+			throw new IllegalStateException("The streaming evaluation has failed.", cause);
+		}
+	}
+	
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+	
+	public int getParallelism()
+	{
+		return parallelism;
+	}
+	
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+}
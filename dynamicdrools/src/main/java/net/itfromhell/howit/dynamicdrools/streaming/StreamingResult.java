@@ -0,0 +1,101 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.streaming;
+
+/**
+ * Summary of a streaming evaluation.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class StreamingResult
+{
+	/**
+	 * Number of lines read.
+	 */
+	private final long lines;
+	/**
+	 * Number of facts evaluated.
+	 */
+	private final long facts;
+	/**
+	 * Number of chunks evaluated.
+	 */
+	private final long chunks;
+	/**
+	 * Number of rules fired.
+	 */
+	private final long fired;
+	/**
+	 * Duration of the evaluation in nanoseconds.
+	 */
+	private final long elapsed;
+	
+	StreamingResult(long lines, long facts, long chunks, long fired, long elapsed)
+	{
+		this.lines = lines;
+		this.facts = facts;
+		this.chunks = chunks;
+		this.fired = fired;
+		this.elapsed = elapsed;
+	}
+	
+	public long getLines()
+	{
+		return lines;
+	}
+	
+	public long getFacts()
+	{
+		return facts;
+	}
+	
+	public long getChunks()
+	{
+		return chunks;
+	}
+	
+	public long getFired()
+	{
+		return fired;
+	}
+	
+	public long getElapsed()
+	{
+		return elapsed;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder me = new StringBuilder("[" + this.getClass().getName());
+		me.append(" | lines = ");
+		me.append(lines);
+		me.append(" | facts = ");
+		me.append(facts);
+		me.append(" | chunks = ");
+		me.append(chunks);
+		me.append(" | fired = ");
+		me.append(fired);
+		me.append(" | elapsed = ");
+		me.append(elapsed / 1000000);
+		me.append(" ms]");
+		
+		return me.toString();
+	}
+}
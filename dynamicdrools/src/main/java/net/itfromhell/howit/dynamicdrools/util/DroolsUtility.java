@@ -18,16 +18,49 @@
  */
 package net.itfromhell.howit.dynamicdrools.util;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.itfromhell.howit.dynamicdrools.EvaluationMode;
 import net.itfromhell.howit.dynamicdrools.Rule;
+import net.itfromhell.howit.dynamicdrools.cache.DiskKieBaseCache;
+import net.itfromhell.howit.dynamicdrools.cache.KieBaseCache;
+import net.itfromhell.howit.dynamicdrools.metrics.RuleMetrics;
+import net.itfromhell.howit.dynamicdrools.optimizer.ConditionStatistics;
+import net.itfromhell.howit.dynamicdrools.optimizer.RuleSetOptimizer;
+import org.drools.core.definitions.rule.impl.RuleImpl;
 import org.drools.core.spi.KnowledgeHelper;
-import org.drools.template.ObjectDataCompiler;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
-import org.kie.api.builder.KieFileSystem;
-import org.kie.api.runtime.KieContainer;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.ExecutionResults;
 import org.kie.api.runtime.StatelessKieSession;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.CompositeKnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.definition.KnowledgePackage;
+import org.kie.internal.io.ResourceFactory;
 
 /**
  * Utility to operate Drools on runtime.
@@ -38,7 +71,80 @@ import org.kie.api.runtime.StatelessKieSession;
 public class DroolsUtility
 {
 	/**
-	 * Loads a session to execute rules in memory using a template file.
+	 * Default number of facts evaluated by each batched execution.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	/**
+	 * Number of rules rendered into each resource of the compiled rule base.
+	 */
+	public static final int RENDER_CHUNK_SIZE = 1000;
+	/**
+	 * Identifier of the number of fired rules in the results of a batched execution.
+	 */
+	private static final String FIRED_RULES = "fired";
+	private static final Logger LOGGER = Logger.getLogger(DroolsUtility.class.getName());
+	
+	/**
+	 * Compiled rule bases already loaded by this utility.
+	 */
+	private final KieBaseCache cache;
+	/**
+	 * Compiled rule bases persisted by previous processes, null when not persisted.
+	 */
+	private final DiskKieBaseCache disk;
+	/**
+	 * Measurements of compilations and of the sessions loaded, null when not measured.
+	 */
+	private RuleMetrics metrics;
+	/**
+	 * Optimization pass run over the rules before they are compiled, null to compile them as they are.
+	 */
+	private RuleSetOptimizer optimizer;
+	/**
+	 * Statistics ordering the conditions of the rules before they are compiled, null to keep them as written.
+	 */
+	private ConditionStatistics statistics;
+	/**
+	 * Number of threads compiling a large rule set, one to compile it on the calling thread.
+	 */
+	private int compileThreads = 1;
+	
+	/**
+	 * Creates an utility keeping compiled rule bases in a cache with default bounds.
+	 */
+	public DroolsUtility()
+	{
+		this(new KieBaseCache());
+	}
+	
+	/**
+	 * Creates an utility keeping compiled rule bases in the specified cache.
+	 * 
+	 * @param cache Cache of compiled rule bases, which may be shared among utilities.
+	 */
+	public DroolsUtility(KieBaseCache cache)
+	{
+		this(cache, null);
+	}
+	
+	/**
+	 * Creates an utility keeping compiled rule bases in memory and on disk.<br>
+	 * A rule base not found in memory is loaded from disk before being compiled, and every compiled rule base is
+	 * stored on disk for the next processes. Storing is best-effort, a rule base that could not be written is logged
+	 * and still used from memory.
+	 * 
+	 * @param cache Cache of compiled rule bases, which may be shared among utilities.
+	 * @param disk Persistent cache of compiled rule bases, null to not persist them.
+	 */
+	public DroolsUtility(KieBaseCache cache, DiskKieBaseCache disk)
+	{
+		this.cache = cache;
+		this.disk = disk;
+	}
+	
+	/**
+	 * Loads a session to execute rules in memory using a template file.<br>
+	 * An unchanged set of rules compiled before is taken from the cache without compiling it again.
 	 * 
 	 * @param rules List of rules to be compiled.
 	 * @param templatePath Relative path to template file describing the rule's pattern.
@@ -47,46 +153,514 @@ public class DroolsUtility
 	 */
 	public StatelessKieSession loadSession(List<Rule> rules, String templatePath) throws Exception
 	{
-		List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(rules.size());
+		StatelessKieSession session = loadKieBase(rules, templatePath).newStatelessKieSession();
+		if (metrics != null)
+		{
+			metrics.attach(session);
+		}
 		
-		for (Rule rule : rules)
+		return session;
+	}
+	
+	/**
+	 * Loads the compiled rule base for the rules using a template file.<br>
+	 * An unchanged set of rules compiled before is taken from the cache without compiling it again. When an optimizer
+	 * is set, the rules are optimized before being compiled, and when statistics of the conditions are set, the
+	 * conditions are ordered by them.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @return Compiled rule base.
+	 * @throws Exception 
+	 */
+	public KieBase loadKieBase(List<Rule> rules, String templatePath) throws Exception
+	{
+		return loadKieBase(rules, templatePath, EvaluationMode.ALL);
+	}
+	
+	/**
+	 * Loads the compiled rule base for the rules using a template file, with the saliences of an evaluation mode.<br>
+	 * The template decides whether only one rule fires for each fact, exclusive modes need a template guarding the
+	 * rules with a {@link net.itfromhell.howit.dynamicdrools.Decision}, as <i>drools/templates/ProductExclusive.drl</i>
+	 * does.
+	 * 
+	 * @param rules List of rules to be compiled.
+	 * @param templatePath Relative path to template file describing the rule's pattern.
+	 * @param mode Mode deciding the salience of each rule.
+	 * @return Compiled rule base.
+	 * @throws Exception 
+	 */
+	public KieBase loadKieBase(List<Rule> rules, String templatePath, EvaluationMode mode) throws Exception
+	{
+		if (optimizer != null)
+		{
+			rules = optimizer.optimize(rules, mode).getRules();
+		}
+		if (statistics != null)
 		{
-			maps.add(rule.asMap());
+			rules = statistics.reorder(rules, true);
 		}
 		
-		return loadSession(templatePath, maps);
+		return loadKieBase(templatePath, new RuleParameters(rules, mode.saliences(rules)));
 	}
 	
 	/**
-	 * Loads a session to execute rules in memory using a template file.
+	 * View of the rules as the parameters of the template, building the map of each rule when it is requested.<br>
+	 * Hashing and rendering walk the rules one chunk at a time, so the maps of a large rule set are never held at once
+	 * and a lazy list of rules, as {@link net.itfromhell.howit.dynamicdrools.repository.RuleRepository#asList()}, is
+	 * never fully built. Each map is built twice on a miss of the cache, once to hash and once to render.
+	 */
+	private static class RuleParameters extends AbstractList<Map<String, Object>> implements RandomAccess
+	{
+		private final List<Rule> rules;
+		private final int[] saliences;
+		
+		private RuleParameters(List<Rule> rules, int[] saliences)
+		{
+			this.rules = rules;
+			this.saliences = saliences;
+		}
+		
+		@Override
+		public Map<String, Object> get(int position)
+		{
+			Map<String, Object> parameters = rules.get(position).asMap();
+			parameters.put(Rule.Attribute.SALIENCE.toString(), saliences[position]);
+			
+			return parameters;
+		}
+		
+		@Override
+		public int size()
+		{
+			return saliences.length;
+		}
+	}
+	
+	/**
+	 * Loads the compiled rule base for the rules using a template file.
 	 * 
 	 * @param templatePath Relative path to template file describing the rule's pattern.
 	 * @param rulesAsParameters List of maps representing each rule as a set of parameters.
-	 * @return Session for execution of rules.
+	 * @return Compiled rule base.
+	 * @throws Exception 
+	 */
+	private KieBase loadKieBase(String templatePath, List<Map<String, Object>> rulesAsParameters) throws Exception
+	{
+		ParsedTemplate template = ParsedTemplate.load(templatePath);
+		String key = KieBaseCache.hash(template.getContent(), rulesAsParameters);
+		
+		KieBase base = cache.get(key);
+		if (base != null)
+		{
+			return base;
+		}
+		
+		base = ((disk == null) ? null : disk.load(key));
+		if (base == null)
+		{
+			base = compile(template, rulesAsParameters);
+			if (disk != null)
+			{
+				try
+				{
+					disk.store(key, base);
+				}
+				catch (IOException e)
+				{
+					//Persisting is best-effort, the rule base is still served from memory
+					LOGGER.log(Level.WARNING, "Failure storing the rule base " + key + " on disk.", e);
+				}
+			}
+		}
+		cache.put(key, base, rulesAsParameters.size());
+		
+		return base;
+	}
+	
+	/**
+	 * Compiles the rules using the template.<br>
+	 * The rules are rendered in chunks of {@link #RENDER_CHUNK_SIZE}, each one added as its own resource, so the DRL of
+	 * a large rule set is never held as a single string. With more than one compile thread, a rule set larger than a
+	 * chunk is compiled in partitions by {@link #compileInParallel(ParsedTemplate, List, int)}. Either way the packages
+	 * are added in the order of the rules to a single rule base, only the assembly of its network runs on the calling
+	 * thread.
+	 * 
+	 * @param template Parsed template.
+	 * @param rulesAsParameters List of maps representing each rule as a set of parameters.
+	 * @return Compiled rule base.
+	 * @throws IllegalArgumentException Indicates rules which do not compile.
+	 * @throws Exception 
+	 */
+	private KieBase compile(ParsedTemplate template, List<Map<String, Object>> rulesAsParameters) throws IllegalArgumentException, Exception
+	{
+		boolean timed = RuleMetrics.isEnabled(metrics);
+		long start = (timed ? System.nanoTime() : 0L);
+		int size = rulesAsParameters.size();
+		int partitions = Math.min(compileThreads, (size + RENDER_CHUNK_SIZE - 1) / RENDER_CHUNK_SIZE);
+		
+		List<KnowledgePackage> packages;
+		if (partitions > 1)
+		{
+			packages = compileInParallel(template, rulesAsParameters, partitions);
+		}
+		else
+		{
+			packages = compilePartition(template, rulesAsParameters, 0, size);
+		}
+		KnowledgeBase base = KnowledgeBaseFactory.newKnowledgeBase();
+		base.addKnowledgePackages(packages);
+		
+		if (timed)
+		{
+			metrics.recordCompile(System.nanoTime() - start, size);
+		}
+		
+		return base;
+	}
+	
+	/**
+	 * Compiles the rules in partitions built at the same time, each one by its own thread.<br>
+	 * Each partition holds whole chunks of {@link #RENDER_CHUNK_SIZE} rules, rendered and compiled into its own
+	 * packages by its own builder. Rules keep the names and the load order they have in the whole set, so the rule base
+	 * breaks ties of salience exactly as when it is compiled by a single builder.
+	 * 
+	 * @param template Parsed template.
+	 * @param rulesAsParameters List of maps representing each rule as a set of parameters.
+	 * @param partitions Number of partitions, at most the number of chunks.
+	 * @return Compiled packages of all partitions, in the order of the rules.
+	 * @throws IllegalArgumentException Indicates a partition which does not compile.
+	 * @throws Exception 
+	 */
+	private static List<KnowledgePackage> compileInParallel(final ParsedTemplate template, final List<Map<String, Object>> rulesAsParameters, int partitions) throws IllegalArgumentException, Exception
+	{
+		int size = rulesAsParameters.size();
+		int chunks = (size + RENDER_CHUNK_SIZE - 1) / RENDER_CHUNK_SIZE;
+		
+		final AtomicInteger created = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(partitions, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "dynamicdrools-compiler-" + created.incrementAndGet());
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+		
+		try
+		{
+			List<Future<List<KnowledgePackage>>> futures = new ArrayList<Future<List<KnowledgePackage>>>(partitions);
+			for (int partition = 0; partition < partitions; partition++)
+			{
+				//Spreads the chunks evenly, some partitions taking one more when they do not divide exactly
+				final int from = ((chunks * partition) / partitions) * RENDER_CHUNK_SIZE;
+				final int to = Math.min(((chunks * (partition + 1)) / partitions) * RENDER_CHUNK_SIZE, size);
+				futures.add(executor.submit(new Callable<List<KnowledgePackage>>()
+				{
+					@Override
+					public List<KnowledgePackage> call() throws Exception
+					{
+						return compilePartition(template, rulesAsParameters, from, to);
+					}
+				}));
+			}
+			
+			List<KnowledgePackage> packages = new ArrayList<KnowledgePackage>();
+			for (Future<List<KnowledgePackage>> future : futures)
+			{
+				try
+				{
+					packages.addAll(future.get());
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof Exception)
+					{
+						throw (Exception)e.getCause();
+					}
+					throw e;
+				}
+			}
+			
+			return packages;
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Renders and compiles a range of rules into packages of their own.
+	 * 
+	 * @param template Parsed template.
+	 * @param rulesAsParameters List of maps representing each rule as a set of parameters.
+	 * @param from Index of the first rule of the range, the first of a chunk.
+	 * @param to Index after the last rule of the range.
+	 * @return Compiled packages of the range.
+	 * @throws IllegalArgumentException Indicates a range which does not compile.
+	 * @throws Exception 
+	 */
+	private static List<KnowledgePackage> compilePartition(ParsedTemplate template, List<Map<String, Object>> rulesAsParameters, int from, int to) throws IllegalArgumentException, Exception
+	{
+		//Adds the chunks as a single batch, so the builder numbers the rules of the range as a whole
+		KnowledgeBuilder builder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		CompositeKnowledgeBuilder batch = builder.batch();
+		List<Map<String, Object>> range = rulesAsParameters.subList(0, to);
+		for (int first = from; first < to; first += RENDER_CHUNK_SIZE)
+		{
+			batch.add(ResourceFactory.newReaderResource(new StringReader(render(template, range, first)), StandardCharsets.UTF_8.name()), ResourceType.DRL);
+		}
+		batch.build();
+		if (builder.hasErrors())
+		{
+			throw new IllegalArgumentException("The rules " + from + " to " + (to - 1) + " do not compile: " + builder.getErrors());
+		}
+		
+		//The builder numbers the rules of the range from zero, shifts them to their position in the whole set
+		List<KnowledgePackage> packages = new ArrayList<KnowledgePackage>(builder.getKnowledgePackages());
+		for (KnowledgePackage pack : packages)
+		{
+			for (org.kie.api.definition.rule.Rule rule : pack.getRules())
+			{
+				RuleImpl impl = (RuleImpl)rule;
+				impl.setLoadOrder(impl.getLoadOrder() + from);
+			}
+		}
+		
+		return packages;
+	}
+	
+	/**
+	 * Renders the chunk of rules starting at an index.
+	 * 
+	 * @param template Parsed template.
+	 * @param rulesAsParameters List of maps representing each rule as a set of parameters.
+	 * @param first Index of the first rule of the chunk.
+	 * @return Drools Rules Language of the chunk.
 	 * @throws Exception 
 	 */
-	private StatelessKieSession loadSession(String templatePath, List<Map<String, Object>> rulesAsParameters) throws Exception
-  {
-    ObjectDataCompiler compiler = new ObjectDataCompiler();
-		//Compiles the list of rules using the template to create a readable Drools Rules Language
-    String drl = compiler.compile(rulesAsParameters, Thread.currentThread().getContextClassLoader().getResourceAsStream(templatePath));
-    
-		System.out.println("drl:\n" + drl);
-		
-    KieServices services = KieServices.Factory.get();
-    KieFileSystem system = services.newKieFileSystem();
-    system.write("src/main/resources/drools/templates/rule.drl", drl);
-    services.newKieBuilder(system).buildAll();
-    
-    KieContainer container = services.newKieContainer(services.getRepository().getDefaultReleaseId());
-    StatelessKieSession session = container.getKieBase().newStatelessKieSession();
-    
-    return session;
-  }
+	private static String render(ParsedTemplate template, List<Map<String, Object>> rulesAsParameters, int first) throws Exception
+	{
+		String drl = template.render(rulesAsParameters.subList(first, Math.min(first + RENDER_CHUNK_SIZE, rulesAsParameters.size())), first);
+		if (LOGGER.isLoggable(Level.FINEST))
+		{
+			LOGGER.finest("drl:\n" + drl);
+		}
+		
+		return drl;
+	}
+	
+	/**
+	 * Evaluates all facts using batched executions of the session, instead of one execution per fact.<br>
+	 * The facts are evaluated in batches of {@link #DEFAULT_BATCH_SIZE} to keep the working memory bounded.
+	 * 
+	 * @param session Session for execution of rules.
+	 * @param facts Facts to be evaluated.
+	 * @return Number of rules fired.
+	 */
+	public static int execute(StatelessKieSession session, Iterable<?> facts)
+	{
+		return execute(session, facts, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * Evaluates all facts using batched executions of the session, instead of one execution per fact.<br>
+	 * Each batch inserts its facts in a single working memory and fires all rules once, the rules of the template must
+	 * bind the fact they act on rather than using a global.
+	 * 
+	 * @param session Session for execution of rules.
+	 * @param facts Facts to be evaluated.
+	 * @param batchSize Maximum number of facts evaluated by each execution.
+	 * @return Number of rules fired.
+	 */
+	public static int execute(StatelessKieSession session, Iterable<?> facts, int batchSize)
+	{
+		return execute(session, facts, batchSize, null);
+	}
+	
+	/**
+	 * Evaluates all facts using batched executions of the session, timing each batch.<br>
+	 * Firings are only counted when the session has the listeners of the metrics attached.
+	 * 
+	 * @param session Session for execution of rules.
+	 * @param facts Facts to be evaluated.
+	 * @param batchSize Maximum number of facts evaluated by each execution.
+	 * @param metrics Measurements receiving the duration of each batch, null when not measured.
+	 * @return Number of rules fired.
+	 */
+	public static int execute(StatelessKieSession session, Iterable<?> facts, int batchSize, RuleMetrics metrics)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("The batch size must be positive.");
+		}
+		
+		KieCommands commands = KieServices.Factory.get().getCommands();
+		int fired = 0;
+		List<Object> batch = new ArrayList<Object>();
+		for (Object fact : facts)
+		{
+			batch.add(fact);
+			if (batch.size() == batchSize)
+			{
+				fired += executeBatch(session, commands, batch, metrics);
+				batch = new ArrayList<Object>();
+			}
+		}
+		
+		if (!batch.isEmpty())
+		{
+			fired += executeBatch(session, commands, batch, metrics);
+		}
+		
+		return fired;
+	}
+	
+	/**
+	 * Executes the session once over a batch of facts.
+	 * 
+	 * @param session Session for execution of rules.
+	 * @param commands Factory of commands.
+	 * @param batch Facts to be evaluated.
+	 * @param metrics Measurements receiving the duration of the batch, null when not measured.
+	 * @return Number of rules fired.
+	 */
+	private static int executeBatch(StatelessKieSession session, KieCommands commands, List<Object> batch, RuleMetrics metrics)
+	{
+		boolean timed = RuleMetrics.isEnabled(metrics);
+		long start = (timed ? System.nanoTime() : 0L);
+		List<Command<?>> execution = Arrays.<Command<?>>asList(commands.newInsertElements(batch), commands.newFireAllRules(FIRED_RULES));
+		ExecutionResults results = session.execute(commands.newBatchExecution(execution));
+		
+		if (timed)
+		{
+			metrics.recordBatch(System.nanoTime() - start, batch.size());
+		}
+		
+		return (Integer)results.getValue(FIRED_RULES);
+	}
+	
+	/**
+	 * Reads the whole content of a template file.
+	 * 
+	 * @param templatePath Relative path to template file.
+	 * @return Content of the template.
+	 * @throws IOException Indicates the template could not be read.
+	 */
+	public static byte[] readTemplate(String templatePath) throws IOException
+	{
+		InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream(templatePath);
+		if (input == null)
+		{
+			throw new IllegalArgumentException("The template " + templatePath + " was not found.");
+		}
+		
+		try
+		{
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+			{
+				content.write(buffer, 0, read);
+			}
+			
+			return content.toByteArray();
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+	
+	/**
+	 * @return Cache of compiled rule bases, exposing its hit, miss and eviction counters.
+	 */
+	public KieBaseCache getCache()
+	{
+		return cache;
+	}
+	
+	public RuleMetrics getMetrics()
+	{
+		return metrics;
+	}
+	
+	/**
+	 * Measures the compilations and the sessions loaded from now on.
+	 * 
+	 * @param metrics Measurements, null to stop measuring.
+	 */
+	public void setMetrics(RuleMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	public RuleSetOptimizer getOptimizer()
+	{
+		return optimizer;
+	}
+	
+	/**
+	 * Optimizes the rules loaded from now on before compiling them, merging their conditions and dropping the rules
+	 * which can never be satisfied. Rules repeating a previous one are dropped only when loaded for an exclusive
+	 * {@link EvaluationMode}, since every repetition applies its action again when all matched rules fire.
+	 * 
+	 * @param optimizer Optimization pass, null to compile the rules as they are.
+	 */
+	public void setOptimizer(RuleSetOptimizer optimizer)
+	{
+		this.optimizer = optimizer;
+	}
+	
+	public ConditionStatistics getStatistics()
+	{
+		return statistics;
+	}
+	
+	/**
+	 * Orders the conditions of the rules loaded from now on by their selectivity and cost, so the conditions
+	 * discarding most facts for the least time are evaluated first. Rules are registered to be measured by the next
+	 * refreshes of the statistics, so a rule set loaded again after a refresh may be compiled in another order.
+	 * 
+	 * @param statistics Statistics of the conditions, null to compile the conditions as written.
+	 */
+	public void setStatistics(ConditionStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+	
+	public int getCompileThreads()
+	{
+		return compileThreads;
+	}
+	
+	/**
+	 * Compiles the rule sets loaded from now on with several threads, each one rendering and building a partition of
+	 * the rules. Rule sets of a single chunk of {@link #RENDER_CHUNK_SIZE} rules are always compiled on the calling
+	 * thread.
+	 * 
+	 * @param compileThreads Number of threads, one to compile on the calling thread.
+	 * @throws IllegalArgumentException Indicates a number of threads lower than one.
+	 */
+	public void setCompileThreads(int compileThreads) throws IllegalArgumentException
+	{
+		if (compileThreads < 1)
+		{
+			throw new IllegalArgumentException("The number of compile threads must be positive.");
+		}
+		
+		this.compileThreads = compileThreads;
+	}
 	
 	/**
 	 * Debug tool to show what is happening over each triggered execution.<br>
-	 * Name of rule trigger as well the object inspected are printed.
+	 * Name of rule trigger as well the object inspected are printed. It is meant to be called from the consequence of a
+	 * template while developing it, {@link RuleMetrics} counts the firings at a fraction of the cost.
 	 * 
 	 * @param helper Injected when a consequence is fired.
 	 */
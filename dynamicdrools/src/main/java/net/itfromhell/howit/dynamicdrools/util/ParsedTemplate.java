@@ -0,0 +1,174 @@
+/**
+ * Copyright 2018 Gabriel Stelmach
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated 
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation 
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the 
+ * Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR 
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * Licensed under the MIT license: https://opensource.org/licenses/MIT
+ */
+package net.itfromhell.howit.dynamicdrools.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.drools.template.objects.ObjectDataProvider;
+import org.drools.template.parser.DataListener;
+import org.drools.template.parser.DefaultGenerator;
+import org.drools.template.parser.DefaultTemplateContainer;
+import org.drools.template.parser.DefaultTemplateRuleBase;
+import org.drools.template.parser.TemplateContainer;
+import org.drools.template.parser.TemplateDataListener;
+import org.drools.template.parser.TemplateRuleBase;
+
+/**
+ * Template read and parsed once, rendering rules in chunks.<br>
+ * <b>ObjectDataCompiler</b> parses the template and compiles the rule base driving the expansion on every call, then
+ * renders all rules in a single string. A parsed template keeps both and renders any slice of the rules by itself,
+ * numbering the rows from the position of the slice, so the rules of a large set can be rendered chunk by chunk with
+ * the same names they would have in a single rendering.<br>
+ * Templates are cached by path for the life of the process.
+ * 
+ * @author Gabriel Stelmach <gabriel_stelmach@hotmail.com>
+ */
+public class ParsedTemplate
+{
+	/**
+	 * Templates already read, by path.
+	 */
+	private static final ConcurrentMap<String, ParsedTemplate> CACHE = new ConcurrentHashMap<String, ParsedTemplate>();
+	
+	/**
+	 * Relative path to the template file.
+	 */
+	private final String path;
+	/**
+	 * Content of the template file.
+	 */
+	private final byte[] content;
+	/**
+	 * Parsed template.
+	 */
+	private final TemplateContainer container;
+	/**
+	 * Rule base expanding the template, compiled on the first rendering.
+	 */
+	private volatile TemplateRuleBase ruleBase;
+	
+	private ParsedTemplate(String path, byte[] content)
+	{
+		this.path = path;
+		this.content = content;
+		this.container = new DefaultTemplateContainer(new ByteArrayInputStream(content));
+	}
+	
+	/**
+	 * Gets a template, reading and parsing it on the first request.
+	 * 
+	 * @param templatePath Relative path to template file.
+	 * @return Parsed template.
+	 * @throws IOException Indicates the template could not be read.
+	 */
+	public static ParsedTemplate load(String templatePath) throws IOException
+	{
+		ParsedTemplate template = CACHE.get(templatePath);
+		if (template == null)
+		{
+			ParsedTemplate parsed = new ParsedTemplate(templatePath, DroolsUtility.readTemplate(templatePath));
+			template = CACHE.putIfAbsent(templatePath, parsed);
+			if (template == null)
+			{
+				template = parsed;
+			}
+		}
+		
+		return template;
+	}
+	
+	/**
+	 * Discards all cached templates, so changed template files are read again.
+	 */
+	public static void clearCache()
+	{
+		CACHE.clear();
+	}
+	
+	/**
+	 * Renders a slice of the rules.<br>
+	 * The expansion emits the rows from the last to the first, so they are fed from the last to the first and the rules
+	 * are rendered in the order of the slice, which is the load order Drools breaks ties of salience with.
+	 * 
+	 * @param rulesAsParameters Maps representing each rule of the slice as a set of parameters.
+	 * @param firstRow Position of the first rule of the slice in the whole rule set, used as its row number.
+	 * @return DRL with the header of the template and the rules of the slice.
+	 */
+	public String render(List<Map<String, Object>> rulesAsParameters, int firstRow)
+	{
+		TemplateDataListener listener = new TemplateDataListener(1, 1, container, getRuleBase(), new DefaultGenerator(container.getTemplates()));
+		ObjectDataProvider provider = new ObjectDataProvider(container, rulesAsParameters);
+		
+		List<String[]> rows = new ArrayList<String[]>(rulesAsParameters.size());
+		while (provider.hasNext())
+		{
+			rows.add(provider.next());
+		}
+		for (int index = rows.size() - 1; index >= 0; index--)
+		{
+			String[] values = rows.get(index);
+			int row = firstRow + index;
+			listener.newRow(row, values.length);
+			for (int column = 0; column < values.length; column++)
+			{
+				listener.newCell(row, column, values[column], DataListener.NON_MERGED);
+			}
+		}
+		listener.finishSheet();
+		
+		return listener.renderDRL();
+	}
+	
+	private TemplateRuleBase getRuleBase()
+	{
+		TemplateRuleBase current = ruleBase;
+		if (current == null)
+		{
+			synchronized (this)
+			{
+				current = ruleBase;
+				if (current == null)
+				{
+					current = new DefaultTemplateRuleBase(container);
+					ruleBase = current;
+				}
+			}
+		}
+		
+		return current;
+	}
+	
+	public String getPath()
+	{
+		return path;
+	}
+	
+	/**
+	 * @return Content of the template file, which must not be changed.
+	 */
+	public byte[] getContent()
+	{
+		return content;
+	}
+}